@@ -0,0 +1,133 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RCON-сервер в том же процессе, отвечающий как Minecraft: авторизация,
+ * ответ {@code ok: <команда>} на команды и {@code Unknown request} на пакеты прочих типов.
+ * Перед ответом на команду выдерживается задержка из {@link Faults}, а отказ выглядит
+ * как обрыв соединения без ответа.
+ * <p>
+ * Как и Minecraft, сервер читает пакет одним {@code read} и рвёт соединение, если прочитано
+ * не ровно столько байт, сколько указано в заголовке, например когда клиент отправил
+ * несколько пакетов одной записью. Такие обрывы считает {@link #framingErrors()}.
+ */
+public class FakeRconServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final String password;
+    private final Faults faults;
+    private final Thread acceptor;
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder framingErrors = new LongAdder();
+
+    public FakeRconServer(String password) throws IOException {
+        this(password, Faults.NONE);
+    }
+
+    public FakeRconServer(String password, Faults faults) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.password = password;
+        this.faults = faults;
+        this.acceptor = new Thread(this::acceptLoop, "fake-rcon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Сколько команд получил сервер, включая отказанные. */
+    public long commands() {
+        return commands.sum();
+    }
+
+    /** Сколько соединений закрыто из-за пакета, прочитанного не целиком или вместе с другими. */
+    public long framingErrors() {
+        return framingErrors.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "fake-rcon-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = socket.getInputStream();
+            var out = new BufferedOutputStream(socket.getOutputStream());
+            byte[] buf = new byte[1460];
+            while (true) {
+                int read = in.read(buf, 0, buf.length);
+                if (read < 0) {
+                    return;
+                }
+                if (read < 14 || readIntLE(buf, 0) != read - 4) {
+                    framingErrors.increment();
+                    return;
+                }
+                int id = readIntLE(buf, 4);
+                int type = readIntLE(buf, 8);
+                String payload = new String(buf, 12, read - 14, StandardCharsets.UTF_8);
+                if (type == 2) {
+                    commands.increment();
+                    if (faults.apply()) {
+                        return;
+                    }
+                }
+                switch (type) {
+                    case 3 -> writePacket(out, payload.equals(password) ? id : -1, 2, "");
+                    case 2 -> writePacket(out, id, 0, "ok: " + payload);
+                    default -> writePacket(out, id, 0, "Unknown request " + Integer.toHexString(type));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // клиент отключился
+        }
+    }
+
+    private static void writePacket(OutputStream out, int id, int type, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        writeIntLE(out, 10 + bytes.length);
+        writeIntLE(out, id);
+        writeIntLE(out, type);
+        out.write(bytes);
+        out.write(0);
+        out.write(0);
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static int readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xFF)
+                | (b[offset + 1] & 0xFF) << 8
+                | (b[offset + 2] & 0xFF) << 16
+                | (b[offset + 3] & 0xFF) << 24;
+    }
+}
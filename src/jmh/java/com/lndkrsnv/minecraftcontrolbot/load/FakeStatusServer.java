@@ -0,0 +1,95 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayersInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.ServerInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.VersionInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP status-сервис в том же процессе: на {@code /status/<сервер>} отвечает JSON в формате
+ * {@link StatusResponse} со случайным числом игроков. Отказ из {@link Faults} — ответ {@code 503}.
+ */
+public class FakeStatusServer implements AutoCloseable {
+    private static final int MAX_PLAYERS = 20;
+
+    private final Faults faults;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "fake-status");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ObjectMapper json = JsonMapper.builder().build();
+    private final LongAdder requests = new LongAdder();
+
+    public FakeStatusServer(Faults faults) throws IOException {
+        this.faults = faults;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/status/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** Значение для {@code status.servers.<сервер>.url}. */
+    public String url(String serverId) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/status/" + serverId;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            exchange.getRequestBody().readAllBytes();
+            if (faults.apply()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = json.writeValueAsBytes(status(path.substring(path.lastIndexOf('/') + 1)));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static StatusResponse status(String serverId) {
+        int online = ThreadLocalRandom.current().nextInt(MAX_PLAYERS + 1);
+        List<PlayerSample> sample = new ArrayList<>(online);
+        for (int i = 0; i < online; i++) {
+            sample.add(new PlayerSample("player" + i, new UUID(0, i).toString()));
+        }
+        return new StatusResponse(
+                new ServerInfo(serverId, serverId, "127.0.0.1", 25565, 25565),
+                new VersionInfo("1.21.4", 769),
+                new PlayersInfo(MAX_PLAYERS, online, sample),
+                "Сервер " + serverId);
+    }
+}
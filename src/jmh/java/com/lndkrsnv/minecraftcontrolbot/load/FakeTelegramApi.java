@@ -0,0 +1,221 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Telegram Bot API в том же процессе: отдаёт через {@code getUpdates} апдейты, положенные
+ * {@link #sendText} и {@link #sendCallback}, и передаёт слушателю сообщения из {@code sendMessage}.
+ * Остальные методы просто отвечают успехом.
+ * <p>
+ * Задержка и отказы из {@link Faults} действуют на все методы, кроме {@code getUpdates}
+ * и вызовов при запуске бота. Отказ — ответ {@code 502} в формате Bot API.
+ */
+public class FakeTelegramApi implements AutoCloseable {
+    private static final Set<String> SETUP_METHODS = Set.of("getupdates", "deletewebhook", "setmycommands", "getme");
+    private static final long MAX_POLL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    /** Получатель сообщений, отправленных ботом. */
+    @FunctionalInterface
+    public interface Listener {
+        void onMessage(long chatId, String text);
+    }
+
+    private final Faults faults;
+    private final HttpServer server;
+    // Не виртуальные потоки: бот в том же процессе может занять все их носители блокирующими вызовами
+    private final ExecutorService handlers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "fake-telegram");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ObjectMapper json = JsonMapper.builder().build();
+    private final ArrayDeque<PendingUpdate> updates = new ArrayDeque<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private volatile Listener listener = (chatId, text) -> {};
+    private long nextUpdateId = 1;
+    private boolean closed;
+
+    private record PendingUpdate(long id, String json) {}
+
+    public FakeTelegramApi(String token, Faults faults) throws IOException {
+        this.faults = faults;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/bot" + token + "/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /** Значение для {@code bot.api-url}. */
+    public String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    public void listener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Кладёт в очередь апдейтов текстовое сообщение пользователя {@code userId} в личном чате. */
+    public void sendText(long chatId, long userId, String text) {
+        enqueue(id -> Map.of(
+                "update_id", id,
+                "message", Map.of(
+                        "message_id", messageIds.incrementAndGet(),
+                        "date", System.currentTimeMillis() / 1000,
+                        "chat", chat(chatId),
+                        "from", user(userId),
+                        "text", text)));
+    }
+
+    /** Кладёт в очередь апдейтов нажатие inline-кнопки с {@code data} под сообщением {@code messageId}. */
+    public void sendCallback(long chatId, long userId, int messageId, String data) {
+        enqueue(id -> Map.of(
+                "update_id", id,
+                "callback_query", Map.of(
+                        "id", Long.toString(id),
+                        "from", user(userId),
+                        "message", Map.of(
+                                "message_id", messageId,
+                                "date", System.currentTimeMillis() / 1000,
+                                "chat", chat(chatId)),
+                        "chat_instance", Long.toString(chatId),
+                        "data", data)));
+    }
+
+    /** Сколько запросов пришло по каждому методу. */
+    public Map<String, Long> requests() {
+        Map<String, Long> result = new TreeMap<>();
+        requests.forEach((method, count) -> result.put(method, count.sum()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        synchronized (updates) {
+            closed = true;
+            updates.notifyAll();
+        }
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void enqueue(LongFunction<Map<String, Object>> update) {
+        synchronized (updates) {
+            long id = nextUpdateId++;
+            updates.add(new PendingUpdate(id, json.writeValueAsString(update.apply(id))));
+            updates.notifyAll();
+        }
+    }
+
+    private static Map<String, Object> chat(long chatId) {
+        return Map.of("id", chatId, "type", "private");
+    }
+
+    private static Map<String, Object> user(long userId) {
+        return Map.of("id", userId, "is_bot", false, "first_name", "user" + userId, "username", "user" + userId);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            // Библиотека бота пишет методы в пути строчными буквами
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            requests.computeIfAbsent(method, m -> new LongAdder()).increment();
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] bytes = body.readAllBytes();
+                request = bytes.length == 0 ? json.createObjectNode() : json.readTree(bytes);
+            }
+            if (!SETUP_METHODS.contains(method) && faults.apply()) {
+                respond(exchange, 502, "{\"ok\":false,\"error_code\":502,\"description\":\"Bad Gateway\"}");
+                return;
+            }
+            String result = switch (method) {
+                case "getupdates" -> getUpdates(request);
+                case "getme" -> json.writeValueAsString(Map.of("id", 1, "is_bot", true, "first_name", "bot", "username", "bot"));
+                case "sendmessage" -> sendMessage(request);
+                default -> "true";
+            };
+            respond(exchange, 200, "{\"ok\":true,\"result\":" + result + "}");
+        }
+    }
+
+    /**
+     * Отдаёт апдейты начиная с {@code offset}, а если их нет — ждёт, но не дольше секунды,
+     * чтобы остановка бота не ждала полный {@code timeout} long polling.
+     */
+    private String getUpdates(JsonNode request) {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(100);
+        long waitMillis = Math.min(MAX_POLL_MILLIS, TimeUnit.SECONDS.toMillis(request.path("timeout").asLong(0)));
+        StringJoiner result = new StringJoiner(",", "[", "]");
+        synchronized (updates) {
+            while (!updates.isEmpty() && updates.peekFirst().id() < offset) {
+                updates.pollFirst();
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            long remaining = waitMillis;
+            while (updates.isEmpty() && !closed && remaining > 0) {
+                try {
+                    updates.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+            int count = 0;
+            for (PendingUpdate update : updates) {
+                if (count++ == limit) {
+                    break;
+                }
+                result.add(update.json());
+            }
+        }
+        return result.toString();
+    }
+
+    private String sendMessage(JsonNode request) {
+        long chatId = Long.parseLong(request.path("chat_id").asString());
+        String text = request.path("text").asString("");
+        int messageId = messageIds.incrementAndGet();
+        listener.onMessage(chatId, text);
+        return json.writeValueAsString(Map.of(
+                "message_id", messageId,
+                "date", System.currentTimeMillis() / 1000,
+                "chat", chat(chatId)));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
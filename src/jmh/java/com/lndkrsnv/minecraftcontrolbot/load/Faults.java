@@ -0,0 +1,37 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Искусственные задержка и отказы фейкового сервера.
+ *
+ * @param latency     задержка перед каждым ответом
+ * @param failureRate доля запросов от 0 до 1, на которые сервер отвечает ошибкой
+ */
+public record Faults(Duration latency, double failureRate) {
+    public static final Faults NONE = new Faults(Duration.ZERO, 0);
+
+    public Faults {
+        if (latency == null) latency = Duration.ZERO;
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failure-rate должен быть от 0 до 1: " + failureRate);
+        }
+    }
+
+    /**
+     * Выдерживает задержку и решает, отвечать ли ошибкой.
+     *
+     * @return {@code true}, если на запрос нужно ответить ошибкой
+     */
+    public boolean apply() {
+        if (latency.isPositive()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+    }
+}
@@ -0,0 +1,267 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Синтетические чаты, которые шлют боту команды через {@link FakeTelegramApi}.
+ * <p>
+ * Каждый чат работает по замкнутому циклу: выбирает сервер нажатием кнопки, затем отправляет
+ * команду, ждёт первого ответа бота в этот чат, выжидает случайную паузу около
+ * {@code thinkTime} и отправляет следующую. Задержка — время от появления апдейта
+ * в {@code getUpdates} до {@code sendMessage} в тот же чат, то есть включает и long polling,
+ * и очередь исходящих сообщений. Команда без ответа за {@code replyTimeout} считается потерянной.
+ */
+final class LoadDriver implements AutoCloseable {
+    static final long FIRST_CHAT_ID = 1_000_000;
+    static final String SELECT_SERVER = "select_server";
+
+    private final FakeTelegramApi telegram;
+    private final LoadProperties props;
+    private final Chat[] chats;
+    private final String[] commands;
+    private final int[] weights;
+    private final int totalWeight;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "load-driver");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Window window = new Window();
+    private volatile boolean stopped;
+
+    LoadDriver(FakeTelegramApi telegram, LoadProperties props, List<String> serverIds) {
+        this.telegram = telegram;
+        this.props = props;
+        this.chats = new Chat[props.chats()];
+        for (int i = 0; i < chats.length; i++) {
+            chats[i] = new Chat(FIRST_CHAT_ID + i, serverIds.get(i % serverIds.size()));
+        }
+        List<Map.Entry<String, Integer>> mix = props.mix().entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .toList();
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("В load.mix нет ни одной команды с положительным весом");
+        }
+        this.commands = new String[mix.size()];
+        this.weights = new int[mix.size()];
+        int total = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            commands[i] = mix.get(i).getKey();
+            total += mix.get(i).getValue();
+            weights[i] = total;
+        }
+        this.totalWeight = total;
+    }
+
+    /** Идентификаторы всех чатов; в личном чате он же идентификатор пользователя. */
+    long[] chatIds() {
+        return Arrays.stream(chats).mapToLong(chat -> chat.id).toArray();
+    }
+
+    /** Запускает чаты, равномерно распределяя первые команды по {@code thinkTime}. */
+    void start() {
+        telegram.listener(this::onMessage);
+        long spreadMillis = Math.max(1, props.thinkTime().toMillis());
+        for (Chat chat : chats) {
+            scheduler.schedule(() -> send(chat, SELECT_SERVER),
+                    ThreadLocalRandom.current().nextLong(spreadMillis), TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::expire, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Начинает новый замер, отбрасывая всё записанное до этого. Ответы и потери команд,
+     * отправленных до начала замера, в него не попадают.
+     */
+    void reset() {
+        window = new Window();
+    }
+
+    /** Итоги текущего замера по командам. */
+    Map<String, Samples> samples() {
+        return new TreeMap<>(window.samples);
+    }
+
+    /** Сколько длится текущий замер. */
+    long elapsedNanos() {
+        return System.nanoTime() - window.startedAt;
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        scheduler.shutdownNow();
+        telegram.listener((chatId, text) -> {});
+    }
+
+    private void send(Chat chat, String command) {
+        if (stopped) {
+            return;
+        }
+        chat.command = command;
+        window.samples(command).sent();
+        chat.sentAt.set(System.nanoTime());
+        if (command.equals(SELECT_SERVER)) {
+            telegram.sendCallback(chat.id, chat.id, 0, "set_server:" + chat.serverId);
+        } else {
+            telegram.sendText(chat.id, chat.id, "/" + command);
+        }
+    }
+
+    private void onMessage(long chatId, String text) {
+        long index = chatId - FIRST_CHAT_ID;
+        if (index < 0 || index >= chats.length) {
+            return;
+        }
+        Chat chat = chats[(int) index];
+        long sentAt = chat.sentAt.getAndSet(0);
+        // Второе сообщение на ту же команду не считается
+        if (sentAt == 0) {
+            return;
+        }
+        boolean error = text.startsWith("❌");
+        Window current = window;
+        if (current.includes(sentAt)) {
+            current.samples(chat.command).replied(System.nanoTime() - sentAt, error);
+        }
+        if (chat.command.equals(SELECT_SERVER) && !error) {
+            chat.selected = true;
+        }
+        scheduleNext(chat);
+    }
+
+    private void expire() {
+        long timeoutNanos = props.replyTimeout().toNanos();
+        long now = System.nanoTime();
+        for (Chat chat : chats) {
+            long sentAt = chat.sentAt.get();
+            if (sentAt != 0 && now - sentAt > timeoutNanos && chat.sentAt.compareAndSet(sentAt, 0)) {
+                Window current = window;
+                if (current.includes(sentAt)) {
+                    current.samples(chat.command).timedOut();
+                }
+                scheduleNext(chat);
+            }
+        }
+    }
+
+    private void scheduleNext(Chat chat) {
+        if (stopped) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Пока выбор сервера не подтверждён, чат пробует выбрать его снова
+        String next = chat.selected ? nextCommand(random) : SELECT_SERVER;
+        long thinkMillis = props.thinkTime().toMillis();
+        long delay = thinkMillis <= 0 ? 0 : thinkMillis / 2 + random.nextLong(thinkMillis + 1);
+        scheduler.schedule(() -> send(chat, next), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private String nextCommand(ThreadLocalRandom random) {
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < weights.length; i++) {
+            if (pick < weights[i]) {
+                return commands[i];
+            }
+        }
+        return commands[commands.length - 1];
+    }
+
+    private static final class Chat {
+        private final long id;
+        private final String serverId;
+        private final AtomicLong sentAt = new AtomicLong();
+        private volatile String command;
+        private volatile boolean selected;
+
+        private Chat(long id, String serverId) {
+            this.id = id;
+            this.serverId = serverId;
+        }
+    }
+
+    private static final class Window {
+        private final long startedAt = System.nanoTime();
+        private final ConcurrentHashMap<String, Samples> samples = new ConcurrentHashMap<>();
+
+        private Samples samples(String command) {
+            return samples.computeIfAbsent(command, c -> new Samples());
+        }
+
+        /** Отправлена ли команда уже во время этого замера. */
+        private boolean includes(long sentAt) {
+            return sentAt - startedAt >= 0;
+        }
+    }
+
+    /** Задержки ответов на одну команду за время замера. */
+    static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long sent;
+        private long errors;
+        private long timeouts;
+
+        synchronized void sent() {
+            sent++;
+        }
+
+        synchronized void replied(long latencyNanos, boolean error) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        synchronized void timedOut() {
+            timeouts++;
+        }
+
+        synchronized long sentCount() {
+            return sent;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+
+        synchronized long timeouts() {
+            return timeouts;
+        }
+
+        /** Отсортированные задержки ответов в наносекундах. */
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        /** Объединяет замеры нескольких команд. */
+        static Samples merge(List<Samples> parts) {
+            Samples merged = new Samples();
+            List<long[]> sorted = new ArrayList<>(parts.size());
+            for (Samples part : parts) {
+                sorted.add(part.sorted());
+                merged.sent += part.sentCount();
+                merged.errors += part.errors();
+                merged.timeouts += part.timeouts();
+            }
+            merged.nanos = sorted.stream().flatMapToLong(Arrays::stream).toArray();
+            merged.size = merged.nanos.length;
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import com.lndkrsnv.minecraftcontrolbot.telegram.ChatCommand;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Параметры нагрузочного теста, передаются аргументами {@code --load.*}.
+ *
+ * @param chats        сколько синтетических чатов, в каждом свой пользователь
+ * @param servers      сколько фейковых Minecraft-серверов, чаты выбирают их по кругу
+ * @param warmup       сколько гонять нагрузку до начала замера
+ * @param duration     длительность замера
+ * @param thinkTime    средняя пауза чата между ответом бота и следующей командой
+ * @param replyTimeout через сколько команда без ответа считается потерянной
+ * @param mix          веса команд по имени без {@code /}; каждый чат выбирает следующую команду случайно.
+ *                     Команды, ждущие продолжения следующим сообщением ({@code /say} и подобные), не поддерживаются
+ * @param telegram     задержка и отказы Telegram Bot API
+ * @param rcon         задержка и отказы RCON
+ * @param status       задержка и отказы status-сервиса
+ * @param report       файл с результатами в JSON
+ */
+public record LoadProperties(
+        int chats,
+        int servers,
+        Duration warmup,
+        Duration duration,
+        Duration thinkTime,
+        Duration replyTimeout,
+        Map<String, Integer> mix,
+        Faults telegram,
+        Faults rcon,
+        Faults status,
+        String report
+) {
+    private static final Set<ChatCommand> MULTI_STEP = EnumSet.of(
+            ChatCommand.SAY, ChatCommand.CUSTOM_COMMAND, ChatCommand.BATCH, ChatCommand.BROADCAST);
+
+    public LoadProperties {
+        if (chats <= 0) chats = 1000;
+        if (servers <= 0) servers = 3;
+        if (warmup == null) warmup = Duration.ofSeconds(10);
+        if (duration == null) duration = Duration.ofSeconds(60);
+        if (thinkTime == null) thinkTime = Duration.ofSeconds(2);
+        if (replyTimeout == null) replyTimeout = Duration.ofSeconds(30);
+        if (mix == null) mix = Map.of("status", 5, "save", 2, "toggledownfall", 2, "stats", 1);
+        if (telegram == null) telegram = new Faults(Duration.ofMillis(30), 0);
+        if (rcon == null) rcon = new Faults(Duration.ofMillis(5), 0);
+        if (status == null) status = new Faults(Duration.ofMillis(50), 0);
+        if (report == null || report.isBlank()) report = "build/reports/load/results.json";
+        mix.forEach((name, weight) -> {
+            ChatCommand command = ChatCommand.of("/" + name);
+            if (command == ChatCommand.UNKNOWN || MULTI_STEP.contains(command)) {
+                throw new IllegalArgumentException("Команда не поддерживается в load.mix: " + name);
+            }
+            if (weight == null || weight < 0) {
+                throw new IllegalArgumentException("Вес команды в load.mix не может быть отрицательным: " + name);
+            }
+        });
+    }
+}
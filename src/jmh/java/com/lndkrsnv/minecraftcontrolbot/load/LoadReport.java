@@ -0,0 +1,91 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Итоги нагрузочного теста.
+ *
+ * @param chats          синтетических чатов
+ * @param servers        фейковых серверов
+ * @param seconds        длительность замера
+ * @param throughput     ответов бота в секунду
+ * @param latency        задержки по командам и по всем вместе под ключом {@code all}
+ * @param resources      куча, потоки и сборки мусора
+ * @param telegramCalls  запросов к Telegram Bot API по методам
+ * @param rconCommands   команд, дошедших до RCON-серверов
+ * @param statusRequests запросов к status-сервису
+ */
+record LoadReport(
+        int chats,
+        int servers,
+        double seconds,
+        double throughput,
+        Map<String, Latency> latency,
+        ResourceSampler.Usage resources,
+        Map<String, Long> telegramCalls,
+        long rconCommands,
+        long statusRequests
+) {
+    static final String ALL = "all";
+
+    /**
+     * @param sent     отправленных команд
+     * @param replied  команд, на которые бот ответил
+     * @param errors   ответов с ошибкой
+     * @param timeouts команд без ответа
+     */
+    record Latency(long sent, long replied, long errors, long timeouts,
+                   double p50Ms, double p90Ms, double p99Ms, double maxMs) {
+
+        static Latency of(LoadDriver.Samples samples) {
+            long[] sorted = samples.sorted();
+            return new Latency(samples.sentCount(), sorted.length, samples.errors(), samples.timeouts(),
+                    percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : millis(sorted[sorted.length - 1]));
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return millis(sorted[Math.clamp(index, 0, sorted.length - 1)]);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /** Задержки по каждой команде и по всем командам, кроме выбора сервера. */
+    static Map<String, Latency> latency(Map<String, LoadDriver.Samples> byCommand) {
+        Map<String, Latency> result = new LinkedHashMap<>();
+        List<LoadDriver.Samples> commands = byCommand.entrySet().stream()
+                .filter(e -> !e.getKey().equals(LoadDriver.SELECT_SERVER))
+                .map(Map.Entry::getValue)
+                .toList();
+        result.put(ALL, Latency.of(LoadDriver.Samples.merge(commands)));
+        byCommand.forEach((command, samples) -> result.put(command, Latency.of(samples)));
+        return result;
+    }
+
+    String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Load test: %d chats, %d servers, %.1f s%n", chats, servers, seconds));
+        out.append(String.format("Throughput: %.1f replies/s%n", throughput));
+        out.append(String.format("%-16s %8s %8s %7s %8s %9s %9s %9s %9s%n",
+                "command", "sent", "replied", "errors", "timeouts", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        latency.forEach((command, l) -> out.append(String.format("%-16s %8d %8d %7d %8d %9.1f %9.1f %9.1f %9.1f%n",
+                command, l.sent(), l.replied(), l.errors(), l.timeouts(), l.p50Ms(), l.p90Ms(), l.p99Ms(), l.maxMs())));
+        out.append(String.format("Heap: max %d MB, live %d MB, committed %d MB; GC: %d collections, %d ms%n",
+                resources.heapMaxMb(), resources.heapLiveMb(), resources.heapCommittedMb(),
+                resources.gcCount(), resources.gcMillis()));
+        out.append(String.format("Threads: max %d, at end %d%n", resources.threadsMax(), resources.threads()));
+        out.append(String.format("Telegram calls: %s; RCON commands: %d; status requests: %d%n",
+                telegramCalls, rconCommands, statusRequests));
+        return out.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import com.lndkrsnv.minecraftcontrolbot.MinecraftControlBotApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Нагрузочный тест: поднимает фейковые Telegram Bot API, RCON- и status-серверы, запускает
+ * против них приложение целиком и гоняет через него {@link LoadDriver} с тысячами чатов.
+ * <p>
+ * Параметры теста — аргументы {@code --load.*} ({@link LoadProperties}), остальные аргументы
+ * передаются приложению как есть, например {@code --bot.outbound.senders=16}.
+ * Лимит исходящих сообщений Telegram по умолчанию снят, чтобы мерить бота, а не лимит;
+ * вернуть его можно через {@code --bot.outbound.global-rate=30}.
+ */
+public final class LoadTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadTest.class);
+    private static final String TOKEN = "load-test";
+    private static final String PASSWORD = "load-test";
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        LoadProperties props = Binder.get(environment).bindOrCreate("load", LoadProperties.class);
+
+        List<FakeRconServer> rconServers = new ArrayList<>();
+        try (var telegram = new FakeTelegramApi(TOKEN, props.telegram());
+             var status = new FakeStatusServer(props.status())) {
+            List<String> serverIds = new ArrayList<>();
+            for (int i = 1; i <= props.servers(); i++) {
+                serverIds.add("S" + i);
+                rconServers.add(new FakeRconServer(PASSWORD, props.rcon()));
+            }
+            var driver = new LoadDriver(telegram, props, serverIds);
+
+            SpringApplication app = new SpringApplication(MinecraftControlBotApplication.class);
+            app.setDefaultProperties(appProperties(props, telegram, status, rconServers, serverIds, driver.chatIds()));
+            ConfigurableApplicationContext context = app.run(args);
+
+            LoadReport report;
+            try (driver; var sampler = new ResourceSampler()) {
+                log.info("Warming up {} chats for {} s", props.chats(), props.warmup().toSeconds());
+                driver.start();
+                Thread.sleep(props.warmup());
+
+                Map<String, Long> telegramBefore = telegram.requests();
+                long rconBefore = rconCommands(rconServers);
+                long statusBefore = status.requests();
+                driver.reset();
+                sampler.start();
+                log.info("Measuring for {} s", props.duration().toSeconds());
+                Thread.sleep(props.duration());
+
+                var samples = driver.samples();
+                double seconds = driver.elapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+                Map<String, LoadReport.Latency> latency = LoadReport.latency(samples);
+                Map<String, Long> telegramCalls = new TreeMap<>();
+                telegram.requests().forEach((method, count) ->
+                        telegramCalls.put(method, count - telegramBefore.getOrDefault(method, 0L)));
+                report = new LoadReport(props.chats(), props.servers(), seconds,
+                        latency.get(LoadReport.ALL).replied() / seconds,
+                        latency, sampler.finish(), telegramCalls,
+                        rconCommands(rconServers) - rconBefore, status.requests() - statusBefore);
+            }
+
+            System.out.print(report.format());
+            Path file = Path.of(props.report());
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build().writeValue(file.toFile(), report);
+            log.info("Results written to {}", file.toAbsolutePath());
+            SpringApplication.exit(context);
+        } finally {
+            for (FakeRconServer server : rconServers) {
+                server.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static Map<String, Object> appProperties(LoadProperties props, FakeTelegramApi telegram,
+                                                     FakeStatusServer status, List<FakeRconServer> rconServers,
+                                                     List<String> serverIds, long[] chatIds) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("server.port", 0);
+        properties.put("logging.level.MinecraftControlBot", "WARN");
+        properties.put("logging.level.com.lndkrsnv.minecraftcontrolbot", "WARN");
+        properties.put("logging.level.com.lndkrsnv.minecraftcontrolbot.load", "INFO");
+        properties.put("bot.token", TOKEN);
+        properties.put("bot.username", "load_test_bot");
+        properties.put("bot.api-url", telegram.apiUrl());
+        properties.put("bot.authorized-users", LongStream.of(chatIds).mapToObj(Long::toString).collect(Collectors.joining(",")));
+        properties.put("bot.outbound.global-rate", 1_000_000);
+        for (int i = 0; i < serverIds.size(); i++) {
+            String id = serverIds.get(i);
+            properties.put("rcon.servers." + id + ".host", "127.0.0.1");
+            properties.put("rcon.servers." + id + ".port", rconServers.get(i).port());
+            properties.put("rcon.servers." + id + ".password", PASSWORD);
+            properties.put("status.servers." + id + ".url", status.url(id));
+        }
+        return properties;
+    }
+
+    private static long rconCommands(List<FakeRconServer> servers) {
+        return servers.stream().mapToLong(FakeRconServer::commands).sum();
+    }
+}
@@ -0,0 +1,108 @@
+package com.lndkrsnv.minecraftcontrolbot.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раз в {@code 200} мс снимает занятую кучу и число потоков, чтобы поймать пики между
+ * сборками мусора. Фейковые серверы работают в том же процессе, поэтому куча включает и их,
+ * а потоки фейков и самого теста ({@code fake-*}, {@code load-*}) из подсчёта исключены.
+ * Виртуальные потоки не считаются.
+ */
+final class ResourceSampler implements AutoCloseable {
+    private static final long PERIOD_MILLIS = 200;
+    private static final long MB = 1024 * 1024;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "load-sampler");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long maxHeapUsed;
+    private volatile int maxThreads;
+    private long gcCountAtStart;
+    private long gcMillisAtStart;
+
+    void start() {
+        maxHeapUsed = 0;
+        maxThreads = 0;
+        gcCountAtStart = gcCount();
+        gcMillisAtStart = gcMillis();
+        scheduler.scheduleAtFixedRate(this::sample, 0, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает замер. Живая куча меряется после принудительной сборки, поэтому
+     * вызывать нужно, пока бот ещё держит своё состояние.
+     */
+    Usage finish() {
+        scheduler.shutdownNow();
+        sample();
+        long gcCount = gcCount() - gcCountAtStart;
+        long gcMillis = gcMillis() - gcMillisAtStart;
+        int threadsNow = botThreads();
+        System.gc();
+        return new Usage(
+                maxHeapUsed / MB,
+                memory.getHeapMemoryUsage().getUsed() / MB,
+                memory.getHeapMemoryUsage().getCommitted() / MB,
+                maxThreads,
+                threadsNow,
+                gcCount,
+                gcMillis);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        maxHeapUsed = Math.max(maxHeapUsed, memory.getHeapMemoryUsage().getUsed());
+        maxThreads = Math.max(maxThreads, botThreads());
+    }
+
+    private int botThreads() {
+        int count = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && !isHarness(info.getThreadName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isHarness(String name) {
+        return name.startsWith("fake-") || name.startsWith("load-") || name.equals("HTTP-Dispatcher");
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    /**
+     * @param heapMaxMb       наибольшая занятая куча за замер
+     * @param heapLiveMb      занятая куча после полной сборки в конце замера
+     * @param heapCommittedMb выделенная JVM куча в конце замера
+     * @param threadsMax      наибольшее число потоков бота за замер
+     * @param threads         потоков бота в конце замера
+     * @param gcCount         сборок мусора за замер
+     * @param gcMillis        суммарное время сборок за замер
+     */
+    record Usage(long heapMaxMb, long heapLiveMb, long heapCommittedMb, int threadsMax, int threads,
+                 long gcCount, long gcMillis) {}
+}
@@ -0,0 +1,78 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.CircuitBreakerProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import com.lndkrsnv.minecraftcontrolbot.load.FakeRconServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный путь RCON-команды через {@link RconService} (очередь, пул, протокол)
+ * против того же обмена напрямую по {@link RconConnection}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RconServiceBenchmark {
+    private static final String PASSWORD = "secret";
+    private static final List<String> RESTART_SEQUENCE = List.of("say Перезапуск через минуту", "save-all", "list");
+
+    private FakeRconServer server;
+    private RconService service;
+    private ServerHandle handle;
+    private RconConnection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new FakeRconServer(PASSWORD);
+        var rconServer = new RconProperties.Server("127.0.0.1", server.port(), PASSWORD, null, null);
+        var props = new RconProperties("BENCH", Map.of("BENCH", rconServer), null, null, null);
+        var meterRegistry = new SimpleMeterRegistry();
+        var breakers = new CircuitBreakers(new CircuitBreakerProperties(0, null), meterRegistry);
+        handle = new ServerHandle("BENCH", "BENCH", rconServer, null, breakers.forServer("BENCH"));
+        service = new RconService(props, meterRegistry);
+        connection = RconConnection.open("127.0.0.1", server.port(), PASSWORD, Duration.ofSeconds(2));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+        service.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public String serviceCommand() {
+        return service.command(handle, "list");
+    }
+
+    @Benchmark
+    public List<RconReply> serviceBatch() {
+        return service.batch(handle, CommandSource.BACKGROUND, RESTART_SEQUENCE);
+    }
+
+    @Benchmark
+    public String connectionCommand() throws IOException {
+        return connection.command("list");
+    }
+}
@@ -0,0 +1,69 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор JSON от status-сервиса в {@link StatusResponse}: из строки, как раньше делал
+ * {@link StatusClient}, из байтов и потоком через {@link StatusDecoder}.
+ * Разницу в аллокациях видно с профилировщиком {@code gc}: {@code gradle jmh -PjmhProfilers=gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusDecodeBenchmark {
+
+    @Param({"0", "12", "100", "1000"})
+    public int players;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final StatusDecoder decoder = new StatusDecoder(objectMapper);
+    private String json;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        json = objectMapper.writeValueAsString(StatusFormatterBenchmark.StatusPayloads.status(players));
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public StatusResponse decodeString() {
+        return objectMapper.readValue(json, StatusResponse.class);
+    }
+
+    /** Как было: тело целиком в строку, затем разбор. */
+    @Benchmark
+    public StatusResponse decodeBodyAsString() {
+        return objectMapper.readValue(new String(bytes, StandardCharsets.UTF_8), StatusResponse.class);
+    }
+
+    @Benchmark
+    public StatusResponse decodeStream() {
+        return decoder.decode(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public StatusResponse decodeBytes() {
+        return objectMapper.readValue(bytes, StatusResponse.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayersInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.ServerInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.VersionInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusFormatterBenchmark {
+
+    @Param({"0", "12", "100", "1000"})
+    public int players;
+
+    private final StatusFormatter formatter = new StatusFormatter();
+    private StatusResponse status;
+
+    @Setup
+    public void setUp() {
+        status = StatusPayloads.status(players);
+    }
+
+    @Benchmark
+    public String format() {
+        return formatter.format(status);
+    }
+
+    static final class StatusPayloads {
+        private StatusPayloads() {}
+
+        static StatusResponse status(int players) {
+            List<PlayerSample> sample = new ArrayList<>(players);
+            for (int i = 0; i < players; i++) {
+                sample.add(new PlayerSample("Player_" + i, UUID.nameUUIDFromBytes(("p" + i).getBytes()).toString()));
+            }
+            return new StatusResponse(
+                    new ServerInfo("mc.example.org", "mc.example.org", "10.0.0.1", 25565, 25565),
+                    new VersionInfo("NeoForge 1.21.1", 767),
+                    new PlayersInfo(Math.max(players, 20), players, sample),
+                    "All the Mods 10 — добро пожаловать!");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь текста сообщения до команды: проверка, что это команда, отрезание имени бота
+ * и выбор ветки обработки.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParsingBenchmark {
+
+    @Param({"/status", "/status@MinecraftControlBot", "/custom_command@MinecraftControlBot", "/unknown", "просто текст в чате"})
+    public String text;
+
+    @Benchmark
+    public boolean isCommandForBot() {
+        return CommandParser.isCommandForBot(text);
+    }
+
+    @Benchmark
+    public String stripBotUsername() {
+        return CommandParser.stripBotUsername(text);
+    }
+
+    @Benchmark
+    public ChatCommand parseAndDispatch() {
+        if (!CommandParser.isCommandForBot(text)) {
+            return null;
+        }
+        return ChatCommand.of(CommandParser.stripBotUsername(text));
+    }
+}
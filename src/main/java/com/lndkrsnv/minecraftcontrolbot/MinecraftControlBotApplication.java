@@ -3,11 +3,17 @@ package com.lndkrsnv.minecraftcontrolbot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Map;
+
 @SpringBootApplication
 public class MinecraftControlBotApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(MinecraftControlBotApplication.class, args);
+		SpringApplication app = new SpringApplication(MinecraftControlBotApplication.class);
+		app.setDefaultProperties(Map.of(
+				"management.endpoints.web.exposure.include", "health,prometheus"
+		));
+		app.run(args);
 	}
 
 }
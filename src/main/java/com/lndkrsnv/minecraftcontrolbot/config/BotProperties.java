@@ -2,10 +2,121 @@ package com.lndkrsnv.minecraftcontrolbot.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "bot")
 public record BotProperties(
         String token,
         String username,
         long superUser,
-        String authorizedUsers
-) {}
+        String authorizedUsers,
+        String apiUrl,
+        Dispatch dispatch,
+        Outbound outbound,
+        Webhook webhook,
+        Persistence persistence,
+        Cluster cluster
+) {
+    public BotProperties {
+        if (dispatch == null) dispatch = new Dispatch(0, 0);
+        if (outbound == null) outbound = new Outbound(0, 0, 0, 0, 0);
+        if (webhook == null) webhook = new Webhook(false, null, null, null, 0, false);
+        if (persistence == null) persistence = new Persistence(null, null, 0);
+        if (cluster == null) cluster = new Cluster(false, null, null, null);
+    }
+
+    /**
+     * Обработка входящих апдейтов. Апдейты одного чата обрабатываются по порядку,
+     * разные чаты обрабатываются параллельно.
+     *
+     * @param workers       сколько чатов обрабатывается одновременно, по потоку на чат
+     * @param queueCapacity сколько апдейтов может ждать в очереди одного чата
+     */
+    public record Dispatch(int workers, int queueCapacity) {
+        public Dispatch {
+            if (workers <= 0) workers = 16;
+            if (queueCapacity <= 0) queueCapacity = 64;
+        }
+    }
+
+    /**
+     * Очередь исходящих сообщений с учётом лимитов Telegram.
+     *
+     * @param perChatRate      сообщений в секунду в один чат
+     * @param perChatBurst     сколько сообщений в чат можно отправить подряд без паузы
+     * @param globalRate       сообщений в секунду суммарно
+     * @param maxQueuedPerChat сколько сообщений может ждать отправки в один чат, старые отбрасываются
+     * @param senders          потоков отправки
+     */
+    public record Outbound(double perChatRate, int perChatBurst, double globalRate, int maxQueuedPerChat, int senders) {
+        public Outbound {
+            if (perChatRate <= 0) perChatRate = 1;
+            if (perChatBurst <= 0) perChatBurst = 3;
+            if (globalRate <= 0) globalRate = 25;
+            if (maxQueuedPerChat <= 0) maxQueuedPerChat = 50;
+            if (senders <= 0) senders = 4;
+        }
+    }
+
+    /**
+     * Получение апдейтов через вебхук вместо long polling. Апдейты принимает встроенный
+     * веб-сервер по адресу {@code path}, Telegram отправляет их на {@code url}.
+     *
+     * @param enabled            включить вебхук
+     * @param url                внешний адрес вебхука, который передаётся в Telegram
+     * @param path               путь, на котором веб-сервер принимает апдейты
+     * @param secretToken        секрет из заголовка {@code X-Telegram-Bot-Api-Secret-Token}, обязателен
+     * @param maxConnections     сколько одновременных соединений может открыть Telegram
+     * @param dropPendingUpdates отбросить апдейты, накопившиеся до запуска
+     */
+    public record Webhook(boolean enabled, String url, String path, String secretToken,
+                          int maxConnections, boolean dropPendingUpdates) {
+        public Webhook {
+            if (path == null || path.isBlank()) path = "/telegram/webhook";
+            if (maxConnections <= 0) maxConnections = 40;
+        }
+    }
+
+    /**
+     * Сохранение состояния чатов (выбранный сервер, подписки, кулдауны, ожидающие действия)
+     * между перезапусками. Если {@code file} не задан, состояние живёт только в памяти.
+     *
+     * @param file              файл журнала
+     * @param flushInterval     как часто журнал сбрасывается на диск
+     * @param compactAfterBytes размер журнала, после которого он переписывается одним снимком
+     */
+    public record Persistence(String file, Duration flushInterval, long compactAfterBytes) {
+        public Persistence {
+            if (flushInterval == null) flushInterval = Duration.ofSeconds(1);
+            if (compactAfterBytes <= 0) compactAfterBytes = 1024 * 1024;
+        }
+    }
+
+    /**
+     * Работа нескольких экземпляров бота. Апдейты принимает и фоновые задачи выполняет только
+     * ведущий экземпляр, держащий аренду в {@code leaseDir}; если он не продлил аренду за
+     * {@code leaseTtl}, её забирает другой. Журнал {@code persistence.file} должен лежать
+     * на том же общем томе, чтобы новый ведущий продолжил с того же состояния.
+     *
+     * @param enabled    включить выбор ведущего
+     * @param instanceId имя экземпляра, по умолчанию имя хоста и pid
+     * @param leaseDir   общий каталог с файлами аренды
+     * @param leaseTtl   срок аренды, продлевается втрое чаще
+     */
+    public record Cluster(boolean enabled, String instanceId, String leaseDir, Duration leaseTtl) {
+        public Cluster {
+            if (instanceId == null || instanceId.isBlank()) instanceId = ProcessHandle.current().pid() + "@" + hostName();
+            if (leaseTtl == null) leaseTtl = Duration.ofSeconds(10);
+        }
+
+        private static String hostName() {
+            try {
+                return InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                return "localhost";
+            }
+        }
+    }
+}
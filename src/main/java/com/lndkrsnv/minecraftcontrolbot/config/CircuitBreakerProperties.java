@@ -0,0 +1,19 @@
+package com.lndkrsnv.minecraftcontrolbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Автомат отключения для каждого сервера, общий для RCON и запросов статуса.
+ *
+ * @param failureThreshold сколько ошибок подряд переводят сервер в состояние «недоступен»
+ * @param openDuration     сколько запросы к недоступному серверу отклоняются сразу, до пробного запроса
+ */
+@ConfigurationProperties(prefix = "circuit-breaker")
+public record CircuitBreakerProperties(int failureThreshold, Duration openDuration) {
+    public CircuitBreakerProperties {
+        if (failureThreshold <= 0) failureThreshold = 3;
+        if (openDuration == null) openDuration = Duration.ofSeconds(30);
+    }
+}
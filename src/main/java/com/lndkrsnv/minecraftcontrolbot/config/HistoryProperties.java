@@ -0,0 +1,18 @@
+package com.lndkrsnv.minecraftcontrolbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * История числа игроков и TPS для {@code /stats}.
+ *
+ * @param enabled  собирать ли историю
+ * @param interval как часто снимать значения с каждого сервера
+ */
+@ConfigurationProperties(prefix = "history")
+public record HistoryProperties(boolean enabled, Duration interval) {
+    public HistoryProperties {
+        if (interval == null) interval = Duration.ofMinutes(1);
+    }
+}
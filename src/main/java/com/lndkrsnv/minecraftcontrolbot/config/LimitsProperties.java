@@ -0,0 +1,55 @@
+package com.lndkrsnv.minecraftcontrolbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ограничения частоты команд бота.
+ *
+ * @param commands правила по имени команды без {@code /}, например {@code sleep}; команда
+ *                 проходит, только если её пропускают все её правила
+ */
+@ConfigurationProperties(prefix = "limits")
+public record LimitsProperties(Map<String, List<Rule>> commands) {
+    public LimitsProperties {
+        if (commands == null) commands = Map.of(
+                "sleep", List.of(new Rule(Scope.CHAT_SERVER, 1, Duration.ofMinutes(20))),
+                "toggledownfall", List.of(new Rule(Scope.CHAT_SERVER, 1, Duration.ofMinutes(1))),
+                "say", List.of(new Rule(Scope.USER, 5, Duration.ofMinutes(1))));
+    }
+
+    /** По чему считаются вызовы команды. */
+    public enum Scope {
+        /** пользователь во всех чатах */
+        USER,
+        /** чат */
+        CHAT,
+        /** сервер, выбранный в чате, по всем чатам */
+        SERVER,
+        /** пара чат и сервер */
+        CHAT_SERVER,
+        /** все вызовы команды */
+        GLOBAL
+    }
+
+    /**
+     * Не больше {@code permits} вызовов за любые {@code period}. При {@code permits = 1}
+     * это обычный кулдаун: следующий вызов возможен через {@code period} после предыдущего.
+     *
+     * @param scope   по чему считаются вызовы
+     * @param permits сколько вызовов разрешено за окно
+     * @param period  длина скользящего окна
+     */
+    public record Rule(Scope scope, int permits, Duration period) {
+        public Rule {
+            if (scope == null) scope = Scope.CHAT_SERVER;
+            if (permits <= 0) permits = 1;
+            if (period == null || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Для ограничения команды нужно указать period больше нуля");
+            }
+        }
+    }
+}
@@ -4,5 +4,6 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableConfigurationProperties({BotProperties.class, RconProperties.class, StatusProperties.class})
+@EnableConfigurationProperties({BotProperties.class, RconProperties.class, StatusProperties.class,
+        CircuitBreakerProperties.class, ServersProperties.class, HistoryProperties.class, LimitsProperties.class})
 public class PropertiesConfig {}
@@ -1,12 +1,62 @@
 package com.lndkrsnv.minecraftcontrolbot.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 @ConfigurationProperties(prefix = "rcon")
 public record RconProperties(
         String defaultServer,
-        Map<String, Server> servers
+        Map<String, Server> servers,
+        Pool pool,
+        Executor executor,
+        Duration broadcastDeadline
 ) {
-    public record Server(String host, int port, String password) {}
-}
\ No newline at end of file
+    public RconProperties {
+        if (pool == null) pool = new Pool(0, null, null, null);
+        if (executor == null) executor = new Executor(0, 0, null);
+        if (broadcastDeadline == null) broadcastDeadline = Duration.ofSeconds(5);
+    }
+
+    /**
+     * @param title      название на кнопке выбора сервера, по умолчанию идентификатор сервера
+     * @param tpsCommand команда, ответ которой содержит TPS, например {@code tps} или {@code neoforge tps};
+     *                   если не задана, TPS сервера не собирается
+     */
+    public record Server(String host, int port, String password, String title, String tpsCommand) {}
+
+    /**
+     * Настройки пула RCON-соединений (на каждый сервер отдельно).
+     *
+     * @param maxSessions    максимум соединений на сервер
+     * @param idleTimeout    через сколько простаивающее соединение закрывается
+     * @param acquireTimeout сколько ждать свободное соединение
+     * @param validateAfter  соединение, простоявшее дольше, перед выдачей проверяется на обрыв
+     */
+    public record Pool(int maxSessions, Duration idleTimeout, Duration acquireTimeout, Duration validateAfter) {
+        public Pool {
+            if (maxSessions <= 0) maxSessions = 2;
+            if (idleTimeout == null) idleTimeout = Duration.ofMinutes(5);
+            if (acquireTimeout == null) acquireTimeout = Duration.ofSeconds(2);
+            if (validateAfter == null) validateAfter = Duration.ofSeconds(1);
+        }
+    }
+
+    /**
+     * Потоки, выполняющие RCON-команды (на каждый сервер отдельно).
+     *
+     * @param threads            сколько команд к серверу выполняется одновременно
+     * @param queueCapacity      сколько команд может ждать в очереди, остальные отклоняются
+     * @param idempotentCommands команды, которые можно не повторять: пока такая команда ждёт
+     *                           в очереди, такие же вызовы получают её ответ
+     */
+    public record Executor(int threads, int queueCapacity, List<String> idempotentCommands) {
+        public Executor {
+            if (threads <= 0) threads = 2;
+            if (queueCapacity <= 0) queueCapacity = 16;
+            if (idempotentCommands == null) idempotentCommands = List.of("save-all", "list", "weather clear", "time set day");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.lndkrsnv.minecraftcontrolbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Реестр серверов, собранный из {@code rcon.servers} и {@code status.servers}.
+ *
+ * @param file           YAML-файл с разделами {@code rcon.servers} и {@code status.servers},
+ *                       при изменении которого список серверов перечитывается без перезапуска.
+ *                       Можно указать тот же {@code application.yaml}
+ * @param reloadInterval как часто проверять, изменился ли файл
+ * @param pickerPageSize сколько серверов показывать на одной странице выбора
+ */
+@ConfigurationProperties(prefix = "servers")
+public record ServersProperties(String file, Duration reloadInterval, int pickerPageSize) {
+    public ServersProperties {
+        if (reloadInterval == null) reloadInterval = Duration.ofSeconds(10);
+        if (pickerPageSize <= 0) pickerPageSize = 6;
+    }
+}
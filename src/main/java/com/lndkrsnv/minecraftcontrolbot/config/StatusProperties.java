@@ -2,11 +2,70 @@ package com.lndkrsnv.minecraftcontrolbot.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.Map;
 
 @ConfigurationProperties(prefix = "status")
 public record StatusProperties(
-        Map<String, Server> servers
+        Map<String, Server> servers,
+        Cache cache,
+        Poll poll,
+        Duration fanOutDeadline
 ) {
-    public record Server(String url) {}
+    public StatusProperties {
+        if (fanOutDeadline == null) fanOutDeadline = Duration.ofSeconds(3);
+        if (cache == null) cache = new Cache(null, false, null);
+        if (poll == null) poll = new Poll(false, null, 0, null);
+    }
+
+    /**
+     * @param url     адрес HTTP status-сервиса, для {@link Backend#HTTP}
+     * @param backend откуда брать статус
+     * @param host    адрес Minecraft-сервера, для {@link Backend#PING}
+     * @param port    порт Minecraft-сервера, для {@link Backend#PING}
+     */
+    public record Server(String url, Backend backend, String host, int port) {
+        public Server {
+            if (backend == null) backend = Backend.HTTP;
+            if (port <= 0) port = 25565;
+        }
+    }
+
+    public enum Backend {
+        /** JSON от внешнего status-сервиса по {@code url}. */
+        HTTP,
+        /** Напрямую у Minecraft-сервера по протоколу Server List Ping. */
+        PING
+    }
+
+    /**
+     * Кеш ответов status-сервера.
+     *
+     * @param ttl                  сколько ответ считается свежим
+     * @param staleWhileRevalidate отдавать устаревший ответ сразу, обновляя его в фоне
+     * @param maxStale             насколько устаревший ответ ещё можно отдать
+     */
+    public record Cache(Duration ttl, boolean staleWhileRevalidate, Duration maxStale) {
+        public Cache {
+            if (ttl == null) ttl = Duration.ofSeconds(10);
+            if (maxStale == null) maxStale = Duration.ofMinutes(1);
+        }
+    }
+
+    /**
+     * Фоновый опрос серверов. Когда включён, {@code /status} отвечает из последнего снимка,
+     * а подписанные чаты получают уведомления об изменениях.
+     *
+     * @param enabled    включить опрос
+     * @param interval   интервал между опросами сервера
+     * @param jitter     случайное отклонение интервала, доля от 0 до 1
+     * @param maxBackoff максимальный интервал для недоступного сервера
+     */
+    public record Poll(boolean enabled, Duration interval, double jitter, Duration maxBackoff) {
+        public Poll {
+            if (interval == null) interval = Duration.ofSeconds(30);
+            if (jitter <= 0 || jitter >= 1) jitter = 0.2;
+            if (maxBackoff == null) maxBackoff = Duration.ofMinutes(5);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.time.Duration;
+
+/**
+ * Результат команды на одном сервере при рассылке по нескольким серверам.
+ *
+ * @param server   сервер
+ * @param outcome  итог
+ * @param response ответ сервера, если команда выполнена
+ * @param error    текст ошибки, если не выполнена
+ * @param took     время от начала рассылки до ответа
+ */
+public record BroadcastResult(
+        ServerHandle server,
+        Outcome outcome,
+        String response,
+        String error,
+        Duration took
+) {
+    public enum Outcome {
+        SUCCESS,
+        FAILED,
+        TIMEOUT
+    }
+}
@@ -0,0 +1,125 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Автомат отключения одного сервера.
+ * <p>
+ * После {@code failureThreshold} ошибок подряд переходит в {@link State#OPEN} и отклоняет
+ * запросы сразу, не занимая потоки ожиданием таймаута. Через {@code openDuration} пропускает
+ * ровно один пробный запрос ({@link State#HALF_OPEN}): успех закрывает автомат, ошибка снова
+ * открывает его на тот же срок. Если о пробном запросе не сообщили за {@code openDuration}
+ * (например, он завершился {@link Error}), пропускается следующий.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String serverId;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Listener listener;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    // В OPEN — время пробного запроса, в HALF_OPEN — когда пробный запрос считается потерянным
+    private long openUntil;
+    private final LongAdder rejected = new LongAdder();
+
+    CircuitBreaker(String serverId, int failureThreshold, long openNanos, Listener listener) {
+        this.serverId = serverId;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+        this.listener = listener;
+    }
+
+    /**
+     * @return {@code true}, если запрос можно выполнять; после него нужно вызвать
+     * {@link #onSuccess()}, {@link #onFailure()} или {@link #onIgnored()}
+     */
+    public boolean tryAcquire() {
+        State from;
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if (now < openUntil) {
+                rejected.increment();
+                return false;
+            }
+            from = state;
+            state = State.HALF_OPEN;
+            openUntil = now + openNanos;
+        }
+        if (from != State.HALF_OPEN) {
+            listener.onTransition(serverId, from, State.HALF_OPEN);
+        }
+        return true;
+    }
+
+    /** Исключение для запроса, отклонённого {@link #tryAcquire()}. */
+    public RuntimeException openException(String backend) {
+        return new RuntimeException(backend + " сервер недоступен: последние запросы завершились ошибкой, "
+                + "следующая проверка через " + secondsUntilProbe() + " сек.");
+    }
+
+    public void onSuccess() {
+        State from;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state == State.CLOSED) {
+                return;
+            }
+            from = state;
+            state = State.CLOSED;
+        }
+        listener.onTransition(serverId, from, State.CLOSED);
+    }
+
+    public void onFailure() {
+        State from;
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.OPEN || (state == State.CLOSED && consecutiveFailures < failureThreshold)) {
+                return;
+            }
+            from = state;
+            state = State.OPEN;
+            openUntil = System.nanoTime() + openNanos;
+        }
+        listener.onTransition(serverId, from, State.OPEN);
+    }
+
+    /** Запрос завершился без ответа сервера (например, отклонён очередью): пробу можно повторить. */
+    public void onIgnored() {
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                state = State.OPEN;
+                openUntil = System.nanoTime();
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Сколько секунд осталось до пробного запроса, 0 если автомат не открыт. */
+    public synchronized long secondsUntilProbe() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(openUntil - System.nanoTime() + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @FunctionalInterface
+    interface Listener {
+        void onTransition(String serverId, State from, State to);
+    }
+}
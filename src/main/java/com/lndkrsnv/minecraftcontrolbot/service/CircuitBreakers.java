@@ -0,0 +1,61 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.CircuitBreakerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Автоматы отключения по серверам. Один и тот же автомат используют {@link RconService}
+ * и {@link StatusClient}, так что недоступность, замеченная одним путём, сразу видна другому.
+ */
+@Service
+public class CircuitBreakers {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakers.class);
+
+    private final CircuitBreakerProperties props;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakers(CircuitBreakerProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public CircuitBreaker forServer(String serverId) {
+        return breakers.computeIfAbsent(serverId, this::create);
+    }
+
+    private CircuitBreaker create(String serverId) {
+        CircuitBreaker breaker = new CircuitBreaker(serverId, props.failureThreshold(),
+                props.openDuration().toNanos(), this::onTransition);
+        Gauge.builder("circuit.breaker.state", breaker, b -> b.state().ordinal())
+                .description("Состояние автомата: 0 — закрыт, 1 — пробный запрос, 2 — открыт")
+                .tag("server", serverId)
+                .register(meterRegistry);
+        FunctionCounter.builder("circuit.breaker.rejected", breaker, CircuitBreaker::rejected)
+                .description("Запросы, отклонённые без обращения к серверу")
+                .tag("server", serverId)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    private void onTransition(String serverId, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit breaker for server {} opened ({} -> {})", serverId, from, to);
+        } else {
+            log.info("Circuit breaker for server {}: {} -> {}", serverId, from, to);
+        }
+        Counter.builder("circuit.breaker.transitions")
+                .tag("server", serverId)
+                .tag("to", to.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+}
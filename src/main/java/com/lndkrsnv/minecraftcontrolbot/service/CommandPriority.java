@@ -0,0 +1,16 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+/**
+ * Класс приоритета RCON-команды. Очередь сервера всегда сначала отдаёт команды
+ * более высокого класса, порядок констант — от высшего к низшему.
+ */
+public enum CommandPriority {
+    /** Супер-пользователь. */
+    ADMIN,
+    /** Пользователи из {@code bot.authorized-users}. */
+    OPERATOR,
+    /** Остальные участники чатов. */
+    PLAYER,
+    /** Фоновые задачи бота: прогрев, сбор истории. */
+    BACKGROUND
+}
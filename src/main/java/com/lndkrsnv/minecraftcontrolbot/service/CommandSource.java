@@ -0,0 +1,11 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+/**
+ * Откуда пришла RCON-команда: внутри класса приоритета очередь сервера обходит чаты по кругу.
+ *
+ * @param chatId   чат, из которого пришла команда
+ * @param priority класс приоритета
+ */
+public record CommandSource(long chatId, CommandPriority priority) {
+    public static final CommandSource BACKGROUND = new CommandSource(0, CommandPriority.BACKGROUND);
+}
@@ -0,0 +1,174 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь команд одного сервера.
+ * <p>
+ * Между классами приоритета действует строгий порядок: команда класса ниже берётся, только
+ * если в классах выше ничего нет. Внутри класса у каждого чата своя очередь, и чаты
+ * обслуживаются по кругу по одной команде, так что один шумный чат не задерживает остальных.
+ */
+final class FairCommandQueue<E extends FairCommandQueue.Entry> {
+    /** Элемент очереди, класс может меняться только под блокировкой очереди. */
+    interface Entry {
+        long chatId();
+
+        CommandPriority priority();
+
+        void priority(CommandPriority priority);
+    }
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<Long, ArrayDeque<E>>[] classes;
+    private int size;
+    private boolean closed;
+
+    @SuppressWarnings("unchecked")
+    FairCommandQueue(int capacity) {
+        this.capacity = capacity;
+        this.classes = new Map[CommandPriority.values().length];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new LinkedHashMap<>();
+        }
+    }
+
+    /** @return {@code false}, если очередь заполнена или закрыта */
+    boolean offer(E entry) {
+        lock.lock();
+        try {
+            if (closed || size >= capacity) {
+                return false;
+            }
+            add(entry);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Следующая команда: первая из очереди очередного чата в самом приоритетном непустом классе.
+     *
+     * @return {@code null}, если очередь закрыта
+     */
+    E take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            for (Map<Long, ArrayDeque<E>> chats : classes) {
+                Iterator<Map.Entry<Long, ArrayDeque<E>>> it = chats.entrySet().iterator();
+                if (!it.hasNext()) {
+                    continue;
+                }
+                Map.Entry<Long, ArrayDeque<E>> next = it.next();
+                ArrayDeque<E> queue = next.getValue();
+                E entry = queue.poll();
+                it.remove();
+                if (!queue.isEmpty()) {
+                    // Чат уходит в конец круга
+                    chats.put(next.getKey(), queue);
+                }
+                size--;
+                return entry;
+            }
+            throw new IllegalStateException("Queue size is " + size + " but all classes are empty");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Убирает ещё не взятую команду. */
+    boolean remove(E entry) {
+        lock.lock();
+        try {
+            if (!removeFromClass(entry)) {
+                return false;
+            }
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Переносит ждущую команду в более высокий класс, если {@code priority} выше текущего. */
+    void promote(E entry, CommandPriority priority) {
+        lock.lock();
+        try {
+            if (priority.ordinal() >= entry.priority().ordinal() || !removeFromClass(entry)) {
+                return;
+            }
+            entry.priority(priority);
+            add(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Количество ждущих команд по классам, в порядке {@link CommandPriority}. */
+    int[] sizes() {
+        lock.lock();
+        try {
+            int[] sizes = new int[classes.length];
+            for (int i = 0; i < classes.length; i++) {
+                for (ArrayDeque<E> queue : classes[i].values()) {
+                    sizes[i] += queue.size();
+                }
+            }
+            return sizes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Будит ждущие потоки; после опустошения {@link #take()} возвращает {@code null}. */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(E entry) {
+        classes[entry.priority().ordinal()].computeIfAbsent(entry.chatId(), k -> new ArrayDeque<>()).add(entry);
+    }
+
+    private boolean removeFromClass(E entry) {
+        Map<Long, ArrayDeque<E>> chats = classes[entry.priority().ordinal()];
+        ArrayDeque<E> queue = chats.get(entry.chatId());
+        if (queue == null || !queue.remove(entry)) {
+            return false;
+        }
+        if (queue.isEmpty()) {
+            chats.remove(entry.chatId());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.HistoryProperties;
+import com.lndkrsnv.minecraftcontrolbot.state.LeaderElection;
+import com.lndkrsnv.minecraftcontrolbot.state.LeadershipChangedEvent;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Собирает историю числа игроков и TPS каждого сервера для {@code /stats}.
+ * <p>
+ * Раз в {@code history.interval} с каждого сервера снимается число игроков (из статуса)
+ * и TPS (ответ {@code tpsCommand} по RCON). Значения сразу раскладываются в агрегаты
+ * окон {@link #WINDOWS}, так что ответ на {@code /stats} не пересчитывает сырые значения.
+ * Снимает значения только ведущий экземпляр бота, см. {@link LeaderElection}.
+ */
+@Service
+public class HistorySampler {
+    private static final Logger log = LoggerFactory.getLogger(HistorySampler.class);
+
+    /** Окна истории, каждое делится на {@link #BUCKETS} интервалов. */
+    public static final List<Duration> WINDOWS = List.of(Duration.ofHours(1), Duration.ofHours(6), Duration.ofHours(24));
+    static final int BUCKETS = 24;
+
+    private static final Pattern COLOR_CODES = Pattern.compile("§.");
+    private static final Pattern MEAN_TPS = Pattern.compile("(?i)mean\\s+tps:\\s*([0-9]+(?:[.,][0-9]+)?)");
+    private static final Pattern NUMBER = Pattern.compile("([0-9]+(?:[.,][0-9]+)?)");
+
+    private final HistoryProperties props;
+    private final ServerRegistry registry;
+    private final StatusClient statusClient;
+    private final StatusPoller statusPoller;
+    private final RconService rcon;
+    private final LeaderElection election;
+    private final ConcurrentHashMap<String, ServerHistory> history = new ConcurrentHashMap<>();
+    private final Set<String> sampling = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile ScheduledExecutorService scheduler;
+
+    public HistorySampler(
+            HistoryProperties props,
+            ServerRegistry registry,
+            StatusClient statusClient,
+            StatusPoller statusPoller,
+            RconService rcon,
+            LeaderElection election
+    ) {
+        this.props = props;
+        this.registry = registry;
+        this.statusClient = statusClient;
+        this.statusPoller = statusPoller;
+        this.rcon = rcon;
+        this.election = election;
+    }
+
+    /**
+     * История одного сервера: по кольцу агрегатов на каждое окно из {@link #WINDOWS}.
+     */
+    public static final class ServerHistory {
+        private final RollingSeries[] players = newSeries();
+        private final RollingSeries[] tps = newSeries();
+
+        private static RollingSeries[] newSeries() {
+            RollingSeries[] series = new RollingSeries[WINDOWS.size()];
+            for (int i = 0; i < series.length; i++) {
+                series[i] = new RollingSeries(WINDOWS.get(i), BUCKETS);
+            }
+            return series;
+        }
+
+        private static void add(RollingSeries[] series, long now, double value) {
+            for (RollingSeries s : series) {
+                s.add(now, value);
+            }
+        }
+
+        private static List<RollingSeries.Summary> summaries(RollingSeries[] series, long now) {
+            return Arrays.stream(series).map(s -> s.summary(now)).toList();
+        }
+
+        public List<RollingSeries.Summary> players(long now) {
+            return summaries(players, now);
+        }
+
+        public List<RollingSeries.Summary> tps(long now) {
+            return summaries(tps, now);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (election.isLeader()) {
+            start();
+        }
+    }
+
+    @EventListener
+    public void onLeadershipChanged(LeadershipChangedEvent event) {
+        if (election.isLeader()) {
+            start();
+        } else if (scheduler != null) {
+            stopSampling();
+        }
+    }
+
+    public synchronized void start() {
+        if (!props.enabled() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "history-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMs = props.interval().toMillis();
+        scheduler.scheduleAtFixedRate(this::sampleAll, 0, periodMs, TimeUnit.MILLISECONDS);
+        log.info("History sampler started, interval={}", props.interval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopSampling();
+        workers.shutdownNow();
+    }
+
+    private synchronized void stopSampling() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public boolean enabled() {
+        return scheduler != null;
+    }
+
+    /** История сервера или {@code null}, если по нему ещё ничего не собрано. */
+    public ServerHistory history(String serverId) {
+        return history.get(serverId);
+    }
+
+    @EventListener
+    public void onServersReloaded(ServersReloadedEvent event) {
+        event.removed().forEach(history::remove);
+    }
+
+    private void sampleAll() {
+        for (ServerHandle server : registry.all()) {
+            // Медленный сервер не должен копить очередь из снятий: следующее начнётся после текущего
+            if (sampling.add(server.id())) {
+                workers.execute(() -> {
+                    try {
+                        sample(server);
+                    } finally {
+                        sampling.remove(server.id());
+                    }
+                });
+            }
+        }
+    }
+
+    private void sample(ServerHandle server) {
+        long now = System.currentTimeMillis();
+        ServerHistory serverHistory = history.computeIfAbsent(server.id(), k -> new ServerHistory());
+        if (server.hasStatus()) {
+            Integer online = playersOnline(server);
+            if (online != null) {
+                ServerHistory.add(serverHistory.players, now, online);
+            }
+        }
+        if (server.hasRcon() && server.rcon().tpsCommand() != null && !server.rcon().tpsCommand().isBlank()) {
+            try {
+                double tps = parseTps(rcon.command(server, server.rcon().tpsCommand()));
+                if (!Double.isNaN(tps)) {
+                    ServerHistory.add(serverHistory.tps, now, tps);
+                }
+            } catch (RuntimeException e) {
+                log.debug("TPS sample failed for serverId={}", server.id(), e);
+            }
+        }
+    }
+
+    private Integer playersOnline(ServerHandle server) {
+        try {
+            StatusResponse response;
+            var polled = statusPoller.current(server.id());
+            if (polled != null) {
+                if (!polled.online() || polled.snapshot() == null) {
+                    return null;
+                }
+                response = polled.snapshot().response();
+            } else {
+                response = statusClient.fetchCached(server).response();
+            }
+            return response.players() != null ? response.players().online() : 0;
+        } catch (RuntimeException e) {
+            log.debug("Players sample failed for serverId={}", server.id(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Достаёт TPS из ответа команды. Понимает формат Forge/NeoForge ({@code Mean TPS: 19.87})
+     * и Paper/Spigot ({@code TPS from last 1m, 5m, 15m: 20.0, ...}, берётся значение за 1 минуту).
+     *
+     * @return TPS или {@link Double#NaN}, если в ответе его нет
+     */
+    static double parseTps(String response) {
+        if (response == null) {
+            return Double.NaN;
+        }
+        String text = COLOR_CODES.matcher(response).replaceAll("");
+        String value = null;
+        // Forge выводит строку на каждое измерение и итоговую Overall
+        for (String line : text.split("\n")) {
+            Matcher mean = MEAN_TPS.matcher(line);
+            if (mean.find()) {
+                value = mean.group(1);
+                if (line.toLowerCase().contains("overall")) {
+                    break;
+                }
+            }
+        }
+        if (value == null) {
+            for (String line : text.split("\n")) {
+                int colon = line.lastIndexOf(':');
+                if (line.toLowerCase().contains("tps") && colon >= 0) {
+                    Matcher number = NUMBER.matcher(line.substring(colon + 1));
+                    if (number.find()) {
+                        value = number.group(1);
+                        break;
+                    }
+                }
+            }
+        }
+        if (value == null) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+}
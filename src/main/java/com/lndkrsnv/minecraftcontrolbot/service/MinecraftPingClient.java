@@ -0,0 +1,255 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayersInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.ServerInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.VersionInfo;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Клиент протокола Minecraft Server List Ping: handshake и status request в пакетах
+ * с длиной в формате VarInt, ответ — JSON со статусом.
+ * <p>
+ * Буферы переиспользуются между вызовами, JSON разбирается прямо из буфера без копирования в строку.
+ */
+public class MinecraftPingClient {
+    private static final int PROTOCOL_VERSION = -1;
+    private static final int STATE_STATUS = 1;
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PACKET_SIZE = 2 * 1024 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final long timeoutNanos;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    public MinecraftPingClient(ObjectMapper objectMapper, Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    public StatusResponse ping(String host, int port) throws IOException {
+        ByteBuffer buf = acquireBuffer();
+        try (SocketChannel channel = SocketChannel.open(); Selector selector = Selector.open()) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+            if (!channel.connect(new InetSocketAddress(host, port))) {
+                while (!channel.finishConnect()) {
+                    await(selector, deadline);
+                }
+            }
+
+            buf.clear();
+            writeRequest(buf, host, port);
+            buf.flip();
+            key.interestOps(SelectionKey.OP_WRITE);
+            while (buf.hasRemaining()) {
+                if (channel.write(buf) == 0) {
+                    await(selector, deadline);
+                }
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+            buf = readPacket(channel, selector, deadline, buf);
+
+            int packetId = readVarInt(buf);
+            if (packetId != 0x00) {
+                throw new IOException("Unexpected status packet id: " + packetId);
+            }
+            int jsonLength = readVarInt(buf);
+            if (jsonLength < 0 || jsonLength > buf.remaining()) {
+                throw new IOException("Invalid status payload length: " + jsonLength);
+            }
+            JsonNode json = objectMapper.readTree(buf.array(), buf.arrayOffset() + buf.position(), jsonLength);
+            return toStatus(json, host, port);
+        } finally {
+            releaseBuffer(buf);
+        }
+    }
+
+    private ByteBuffer readPacket(SocketChannel channel, Selector selector, long deadline, ByteBuffer buf)
+            throws IOException {
+        buf.clear();
+        int packetLength = -1;
+        int headerLength = 0;
+        while (true) {
+            if (channel.read(buf) < 0) {
+                throw new EOFException("Server closed connection before sending status");
+            }
+            if (packetLength < 0) {
+                ByteBuffer view = buf.duplicate().flip();
+                packetLength = tryReadVarInt(view);
+                if (packetLength >= 0) {
+                    if (packetLength > MAX_PACKET_SIZE) {
+                        throw new IOException("Status packet too large: " + packetLength);
+                    }
+                    headerLength = view.position();
+                    if (headerLength + packetLength > buf.capacity()) {
+                        ByteBuffer larger = ByteBuffer.allocate(headerLength + packetLength);
+                        buf.flip();
+                        larger.put(buf);
+                        buf = larger;
+                    }
+                }
+            }
+            if (packetLength >= 0 && buf.position() >= headerLength + packetLength) {
+                buf.flip();
+                buf.position(headerLength);
+                buf.limit(headerLength + packetLength);
+                return buf;
+            }
+            await(selector, deadline);
+        }
+    }
+
+    private static void writeRequest(ByteBuffer buf, String host, int port) {
+        byte[] hostBytes = host.getBytes(StandardCharsets.UTF_8);
+        int handshakeLength = varIntSize(0x00) + varIntSize(PROTOCOL_VERSION)
+                + varIntSize(hostBytes.length) + hostBytes.length + 2 + varIntSize(STATE_STATUS);
+        writeVarInt(buf, handshakeLength);
+        writeVarInt(buf, 0x00);
+        writeVarInt(buf, PROTOCOL_VERSION);
+        writeVarInt(buf, hostBytes.length);
+        buf.put(hostBytes);
+        buf.putShort((short) port);
+        writeVarInt(buf, STATE_STATUS);
+
+        writeVarInt(buf, 1);
+        writeVarInt(buf, 0x00);
+    }
+
+    private static void await(Selector selector, long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Server List Ping timed out");
+        }
+        selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        selector.selectedKeys().clear();
+    }
+
+    private StatusResponse toStatus(JsonNode json, String host, int port) {
+        JsonNode version = json.path("version");
+        JsonNode players = json.path("players");
+
+        List<PlayerSample> sample = null;
+        JsonNode sampleNode = players.path("sample");
+        if (sampleNode.isArray()) {
+            sample = new ArrayList<>(sampleNode.size());
+            for (JsonNode p : sampleNode) {
+                sample.add(new PlayerSample(p.path("name").asString(null), p.path("id").asString(null)));
+            }
+        }
+
+        StringBuilder description = new StringBuilder();
+        appendText(json.path("description"), description);
+
+        return new StatusResponse(
+                new ServerInfo(host, host, null, port, 0),
+                version.isMissingNode() ? null : new VersionInfo(version.path("name").asString(null), version.path("protocol").asInt()),
+                players.isMissingNode() ? null : new PlayersInfo(players.path("max").asInt(), players.path("online").asInt(), sample),
+                stripFormatting(description));
+    }
+
+    /** Описание сервера приходит строкой или текстовым компонентом с вложенными {@code extra}. */
+    private static void appendText(JsonNode node, StringBuilder out) {
+        if (node.isString()) {
+            out.append(node.asString());
+        } else if (node.isObject()) {
+            out.append(node.path("text").asString(""));
+            for (JsonNode extra : node.path("extra")) {
+                appendText(extra, out);
+            }
+        } else if (node.isArray()) {
+            for (JsonNode part : node) {
+                appendText(part, out);
+            }
+        }
+    }
+
+    private static String stripFormatting(CharSequence s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '§' && i + 1 < s.length()) {
+                i++;
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString().trim();
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buf = buffers.poll();
+        return buf != null ? buf : ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buf) {
+        if (buf.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+            buf.clear();
+            buffers.offer(buf);
+        }
+    }
+
+    static void writeVarInt(ByteBuffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    static int readVarInt(ByteBuffer buf) throws IOException {
+        int value = tryReadVarInt(buf);
+        if (value < 0) {
+            throw new IOException("Truncated VarInt");
+        }
+        return value;
+    }
+
+    /** Читает неотрицательный VarInt, возвращает -1, если в буфере ещё не все его байты. */
+    private static int tryReadVarInt(ByteBuffer buf) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative VarInt length");
+                }
+                return value;
+            }
+        }
+        throw new IOException("VarInt too long");
+    }
+}
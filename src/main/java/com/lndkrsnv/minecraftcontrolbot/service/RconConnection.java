@@ -0,0 +1,321 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Авторизованное соединение по протоколу Source RCON, который использует Minecraft.
+ * <p>
+ * Пакет: длина, id запроса, тип, тело в UTF-8 и два нулевых байта, числа в little-endian.
+ * Длинный ответ сервер режет на несколько пакетов с одним id, а признака последней части
+ * в протоколе нет. Поэтому, получив первую часть ответа, клиент отправляет пустой пакет типа 0:
+ * Minecraft обрабатывает пакеты соединения по одному и читает следующий, только отправив
+ * весь ответ на предыдущий, так что id ответа на этот пакет служит признаком конца ответа.
+ * <p>
+ * Пакеты отправляются строго по одному: Minecraft читает пакет одним {@code read}
+ * и закрывает соединение, если прочитанное не совпадает с длиной из заголовка.
+ */
+public final class RconConnection implements Closeable {
+    /** Максимальная длина команды, которую принимает сервер Minecraft. */
+    public static final int MAX_COMMAND_BYTES = 1446;
+
+    private static final int TYPE_RESPONSE = 0;
+    private static final int TYPE_COMMAND = 2;
+    private static final int TYPE_AUTH = 3;
+    private static final int MAX_PACKET_LENGTH = 1024 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final byte[] header = new byte[12];
+    private byte[] body = new byte[4096 + 2];
+    private int bodyLength;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer undecoded = ByteBuffer.allocate(4096 + 16);
+    private final CharBuffer decoded = CharBuffer.allocate(4096);
+    private int nextId = 1;
+    private long connectNanos;
+    private long authNanos;
+
+    private RconConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    public static RconConnection open(String host, int port, String password, Duration connectTimeout)
+            throws IOException {
+        Socket socket = new Socket();
+        try {
+            long started = System.nanoTime();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), (int) connectTimeout.toMillis());
+            RconConnection connection = new RconConnection(socket);
+            long connected = System.nanoTime();
+            connection.authenticate(password);
+            connection.connectNanos = connected - started;
+            connection.authNanos = System.nanoTime() - connected;
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public String command(String cmd) throws IOException {
+        StringBuilder response = new StringBuilder();
+        stream(cmd, response::append);
+        return response.toString();
+    }
+
+    /**
+     * Выполняет команду и отдаёт ответ частями по мере прихода пакетов, не собирая его целиком.
+     */
+    public void stream(String cmd, RconOutput output) throws IOException {
+        int commandId = nextId();
+        writePacket(commandId, TYPE_COMMAND, cmd);
+        out.flush();
+
+        decoder.reset();
+        undecoded.clear();
+        int id = readPacket();
+        if (id != commandId) {
+            throw new IOException("Unexpected RCON response id " + id);
+        }
+        decodeBody(output, false);
+
+        int terminatorId = nextId();
+        writePacket(terminatorId, TYPE_RESPONSE, "");
+        out.flush();
+        while (true) {
+            id = readPacket();
+            if (id == commandId) {
+                decodeBody(output, false);
+            } else if (id == terminatorId) {
+                decodeBody(output, true);
+                return;
+            } else {
+                throw new IOException("Unexpected RCON response id " + id);
+            }
+        }
+    }
+
+    /**
+     * Выполняет команды по порядку, каждую после ответа на предыдущую.
+     * <p>
+     * Если соединение оборвалось после хотя бы одного ответа (например, после {@code stop}),
+     * соединение закрывается, а полученные ответы вместе с оставшимися командами
+     * ({@link RconReply#completed()} = {@code false}) приходят в {@link PartialReplyException}.
+     *
+     * @throws PartialReplyException если соединение оборвалось после хотя бы одного ответа
+     * @throws IOException           если не удалось отправить команды или не пришло ни одного ответа
+     */
+    public List<RconReply> batch(List<String> commands) throws IOException {
+        // Слишком длинная команда отклоняется до отправки первой, а не посреди пакета
+        commands.forEach(RconConnection::checkLength);
+        List<RconReply> replies = new ArrayList<>(commands.size());
+        StringBuilder response = new StringBuilder();
+        try {
+            for (String cmd : commands) {
+                long started = System.nanoTime();
+                stream(cmd, response::append);
+                replies.add(new RconReply(cmd, response.toString(), Duration.ofNanos(System.nanoTime() - started), true));
+                response.setLength(0);
+            }
+        } catch (IOException e) {
+            if (replies.isEmpty()) {
+                throw e;
+            }
+            for (int i = replies.size(); i < commands.size(); i++) {
+                replies.add(new RconReply(commands.get(i), response.toString(), Duration.ZERO, false));
+                response.setLength(0);
+            }
+            close();
+            throw new PartialReplyException(replies, e);
+        }
+        return replies;
+    }
+
+    /**
+     * Проверяет, не закрыл ли сервер соединение, пока оно простаивало, ничего ему не отправляя:
+     * закрытое соединение сразу читается как конец потока, а живое ждёт данных не дольше миллисекунды.
+     */
+    public boolean alive() {
+        if (socket.isClosed()) {
+            return false;
+        }
+        try {
+            socket.setSoTimeout(1);
+            // Конец потока или непрошеные данные: в обоих случаях соединением пользоваться нельзя
+            in.read();
+            return false;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.setSoTimeout(0);
+            } catch (SocketException ignored) {
+                // сокет уже закрыт
+            }
+        }
+    }
+
+    /** Время установки TCP-соединения при открытии. */
+    public Duration connectTime() {
+        return Duration.ofNanos(connectNanos);
+    }
+
+    /** Время авторизации при открытии. */
+    public Duration authTime() {
+        return Duration.ofNanos(authNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void authenticate(String password) throws IOException {
+        int id = nextId();
+        writePacket(id, TYPE_AUTH, password);
+        out.flush();
+        int responseId = readPacket();
+        if (responseId != id) {
+            throw new RconAuthenticationException("RCON авторизация не пройдена: неверный пароль");
+        }
+    }
+
+    private int nextId() {
+        int id = nextId;
+        nextId = id == Integer.MAX_VALUE ? 1 : id + 1;
+        return id;
+    }
+
+    private void writePacket(int id, int type, String payload) throws IOException {
+        if (type == TYPE_COMMAND) {
+            checkLength(payload);
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        writeIntLE(10 + bytes.length);
+        writeIntLE(id);
+        writeIntLE(type);
+        out.write(bytes);
+        out.write(0);
+        out.write(0);
+    }
+
+    private static void checkLength(String cmd) {
+        if (cmd.getBytes(StandardCharsets.UTF_8).length > MAX_COMMAND_BYTES) {
+            throw new IllegalArgumentException("RCON команда длиннее " + MAX_COMMAND_BYTES + " байт");
+        }
+    }
+
+    /** Читает пакет в {@link #body}, возвращает его id. */
+    private int readPacket() throws IOException {
+        in.readFully(header, 0, 12);
+        int length = readIntLE(header, 0);
+        int id = readIntLE(header, 4);
+        if (length < 10 || length > MAX_PACKET_LENGTH) {
+            throw new IOException("Invalid RCON packet length " + length);
+        }
+        int payloadLength = length - 8;
+        if (body.length < payloadLength) {
+            body = new byte[payloadLength];
+        }
+        in.readFully(body, 0, payloadLength);
+        bodyLength = payloadLength - 2;
+        return id;
+    }
+
+    /**
+     * Декодирует тело последнего пакета. Многобайтовый символ на границе пакетов
+     * дожидается следующего пакета в {@link #undecoded}.
+     */
+    private void decodeBody(RconOutput output, boolean endOfInput) {
+        if (!endOfInput) {
+            if (undecoded.remaining() < bodyLength) {
+                ByteBuffer larger = ByteBuffer.allocate(undecoded.position() + bodyLength);
+                undecoded.flip();
+                larger.put(undecoded);
+                undecoded = larger;
+            }
+            undecoded.put(body, 0, bodyLength);
+        }
+        undecoded.flip();
+        while (true) {
+            var result = decoder.decode(undecoded, decoded, endOfInput);
+            if (endOfInput && !result.isOverflow()) {
+                result = decoder.flush(decoded);
+            }
+            drain(output);
+            if (!result.isOverflow()) {
+                break;
+            }
+        }
+        undecoded.compact();
+    }
+
+    private void drain(RconOutput output) {
+        decoded.flip();
+        if (decoded.hasRemaining()) {
+            output.append(decoded);
+        }
+        decoded.clear();
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static int readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xFF)
+                | (b[offset + 1] & 0xFF) << 8
+                | (b[offset + 2] & 0xFF) << 16
+                | (b[offset + 3] & 0xFF) << 24;
+    }
+
+    public static final class RconAuthenticationException extends IOException {
+        public RconAuthenticationException(String message) {
+            super(message);
+        }
+    }
+
+    /** Соединение оборвалось посреди {@link #batch(List)}; часть команд уже выполнена. */
+    public static final class PartialReplyException extends IOException {
+        private final transient List<RconReply> replies;
+
+        public PartialReplyException(List<RconReply> replies, IOException cause) {
+            super("RCON соединение оборвалось после " + replies.stream().filter(RconReply::completed).count()
+                    + " из " + replies.size() + " команд", cause);
+            this.replies = List.copyOf(replies);
+        }
+
+        /** Ответы на все команды пакета, невыполненные — с {@link RconReply#completed()} = {@code false}. */
+        public List<RconReply> replies() {
+            return replies;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Пул долгоживущих авторизованных RCON-сессий, по одному пулу на сервер.
+ * <p>
+ * Количество сессий на сервер ограничено {@link RconProperties.Pool#maxSessions()}:
+ * новая сессия создаётся только под выданное разрешение и только когда свободных нет,
+ * поэтому занятые и простаивающие вместе никогда не превышают лимит.
+ */
+public class RconConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RconConnectionPool.class);
+
+    private final RconProperties.Pool config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ServerPool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService healthChecker;
+    private volatile boolean closed;
+
+    public RconConnectionPool(RconProperties.Pool config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rcon-pool-health");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMs = Math.max(1000, config.idleTimeout().toMillis() / 2);
+        healthChecker.scheduleAtFixedRate(this::evictIdle, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдаёт сессию для сервера: свободную из пула или новую, если свободных нет.
+     * Простоявшие дольше {@code idleTimeout} сессии закрываются и заменяются новыми, а простоявшие
+     * дольше {@code validateAfter} перед выдачей проверяются: если сервер успел закрыть соединение,
+     * команда на нём упала бы уже после отправки, и повторить её было бы небезопасно.
+     */
+    public Session acquire(String serverId, RconProperties.Server server)
+            throws IOException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("RCON pool is closed");
+        }
+        ServerPool pool = pools.computeIfAbsent(serverId, this::newServerPool);
+
+        long waitStart = System.nanoTime();
+        boolean acquired = pool.permits.tryAcquire(config.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        pool.waitNanos.add(System.nanoTime() - waitStart);
+        if (!acquired) {
+            pool.exhausted.increment();
+            throw new RuntimeException("RCON сервер недоступен: все соединения заняты");
+        }
+
+        try {
+            Session session;
+            while ((session = pool.idle.pollFirst()) != null) {
+                // Сессии, открытые до смены адреса или пароля сервера, не переиспользуются
+                if (session.server.equals(server) && session.idleNanos() < config.idleTimeout().toNanos()
+                        && (session.idleNanos() < config.validateAfter().toNanos() || session.rcon.alive())) {
+                    pool.hits.increment();
+                    session.reused = true;
+                    return session;
+                }
+                pool.evictions.increment();
+                session.closeQuietly();
+            }
+            return open(serverId, server, pool);
+        } catch (IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Закрывает сломанную сессию и открывает вместо неё новую, не отдавая разрешение.
+     */
+    public Session reconnect(Session broken, RconProperties.Server server) throws IOException {
+        ServerPool pool = pools.get(broken.serverId);
+        broken.closeQuietly();
+        pool.reconnects.increment();
+        try {
+            return open(broken.serverId, server, pool);
+        } catch (IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /** Возвращает исправную сессию в пул. */
+    public void release(Session session) {
+        ServerPool pool = pools.get(session.serverId);
+        session.lastUsedNanos = System.nanoTime();
+        if (closed || session.aborted) {
+            session.closeQuietly();
+        } else {
+            pool.idle.offerFirst(session);
+        }
+        pool.permits.release();
+    }
+
+    /** Закрывает сессию, которой больше нельзя пользоваться. */
+    public void invalidate(Session session) {
+        ServerPool pool = pools.get(session.serverId);
+        session.closeQuietly();
+        pool.permits.release();
+    }
+
+    /** Закрывает свободные сессии сервера, например после изменения или удаления его настроек. */
+    public void evict(String serverId) {
+        ServerPool pool = pools.get(serverId);
+        if (pool == null) {
+            return;
+        }
+        Session session;
+        while ((session = pool.idle.pollFirst()) != null) {
+            pool.evictions.increment();
+            session.closeQuietly();
+        }
+    }
+
+    public Map<String, Stats> stats() {
+        return pools.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().stats()));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.shutdownNow();
+        pools.values().forEach(pool -> {
+            Session session;
+            while ((session = pool.idle.pollFirst()) != null) {
+                session.closeQuietly();
+            }
+        });
+    }
+
+    private Session open(String serverId, RconProperties.Server server, ServerPool pool) throws IOException {
+        pool.misses.increment();
+        var connection = RconConnection.open(server.host(), server.port(), server.password(), config.acquireTimeout());
+        pool.connectTimer.record(connection.connectTime());
+        pool.authTimer.record(connection.authTime());
+        return new Session(serverId, server, connection);
+    }
+
+    private ServerPool newServerPool(String serverId) {
+        var pool = new ServerPool(config.maxSessions(),
+                Timer.builder("rcon.connect").tag("server", serverId).register(meterRegistry),
+                Timer.builder("rcon.auth").tag("server", serverId).register(meterRegistry));
+        counter("hits", serverId, pool.hits);
+        counter("misses", serverId, pool.misses);
+        counter("reconnects", serverId, pool.reconnects);
+        counter("evictions", serverId, pool.evictions);
+        counter("exhausted", serverId, pool.exhausted);
+        Gauge.builder("rcon.pool.sessions", pool.idle, ConcurrentLinkedDeque::size)
+                .tag("server", serverId).tag("state", "idle").register(meterRegistry);
+        Gauge.builder("rcon.pool.sessions", pool, p -> p.maxSessions - p.permits.availablePermits())
+                .tag("server", serverId).tag("state", "busy").register(meterRegistry);
+        FunctionCounter.builder("rcon.pool.wait", pool.waitNanos, w -> w.sum() / 1e9)
+                .baseUnit("seconds").tag("server", serverId).register(meterRegistry);
+        return pool;
+    }
+
+    private void counter(String event, String serverId, LongAdder adder) {
+        FunctionCounter.builder("rcon.pool.events", adder, LongAdder::sum)
+                .tag("server", serverId).tag("event", event).register(meterRegistry);
+    }
+
+    private void evictIdle() {
+        long idleTimeoutNanos = config.idleTimeout().toNanos();
+        pools.forEach((serverId, pool) -> pool.idle.removeIf(session -> {
+            if (session.idleNanos() >= idleTimeoutNanos) {
+                log.debug("Closing idle RCON session for serverId={}", serverId);
+                pool.evictions.increment();
+                session.closeQuietly();
+                return true;
+            }
+            return false;
+        }));
+    }
+
+    public static final class Session {
+        private final String serverId;
+        private final RconProperties.Server server;
+        private final RconConnection rcon;
+        private volatile long lastUsedNanos = System.nanoTime();
+        private volatile boolean aborted;
+        private boolean reused;
+        private boolean broken;
+
+        private Session(String serverId, RconProperties.Server server, RconConnection rcon) {
+            this.serverId = serverId;
+            this.server = server;
+            this.rcon = rcon;
+        }
+
+        public String command(String cmd) throws IOException {
+            return rcon.command(cmd);
+        }
+
+        public void stream(String cmd, RconOutput output) throws IOException {
+            rcon.stream(cmd, output);
+        }
+
+        /**
+         * Как {@link RconConnection#batch(List)}, но при обрыве посреди пакета возвращает
+         * полученные ответы и помечает сессию сломанной.
+         */
+        public List<RconReply> batch(List<String> commands) throws IOException {
+            try {
+                return rcon.batch(commands);
+            } catch (RconConnection.PartialReplyException e) {
+                broken = true;
+                return e.replies();
+            }
+        }
+
+        /** {@code true}, если соединение оборвалось, но команда вернула результат; в пул такую сессию не возвращают. */
+        public boolean broken() {
+            return broken;
+        }
+
+        /** {@code true}, если сессия взята из пула, а не открыта только что. */
+        public boolean reused() {
+            return reused;
+        }
+
+        /** {@code true}, если сессия закрыта принудительно через {@link #abort()}. */
+        public boolean aborted() {
+            return aborted;
+        }
+
+        /**
+         * Закрывает сокет из другого потока, чтобы прервать зависшую команду.
+         * Поток, владеющий сессией, получит {@link IOException} и должен вызвать {@link #invalidate(Session)}.
+         */
+        public void abort() {
+            aborted = true;
+            closeQuietly();
+        }
+
+        private long idleNanos() {
+            return System.nanoTime() - lastUsedNanos;
+        }
+
+        private void closeQuietly() {
+            try {
+                rcon.close();
+            } catch (IOException e) {
+                log.debug("Failed to close RCON session for serverId={}", serverId, e);
+            }
+        }
+    }
+
+    /**
+     * @param hits       сколько раз выдана уже открытая сессия
+     * @param misses     сколько сессий открыто с нуля
+     * @param reconnects сколько сломанных сессий переоткрыто прозрачно для вызывающего
+     * @param evictions  сколько сессий закрыто по простою или потому, что их закрыл сервер
+     * @param exhausted  сколько раз не дождались свободной сессии
+     * @param idle       простаивающие сессии сейчас
+     * @param busy       занятые сессии сейчас
+     * @param waitMillis суммарное время ожидания сессии
+     */
+    public record Stats(long hits, long misses, long reconnects, long evictions, long exhausted,
+                        int idle, int busy, long waitMillis) {}
+
+    private static final class ServerPool {
+        private final int maxSessions;
+        private final Semaphore permits;
+        private final ConcurrentLinkedDeque<Session> idle = new ConcurrentLinkedDeque<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder reconnects = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final Timer connectTimer;
+        private final Timer authTimer;
+
+        private ServerPool(int maxSessions, Timer connectTimer, Timer authTimer) {
+            this.maxSessions = maxSessions;
+            this.permits = new Semaphore(maxSessions, true);
+            this.connectTimer = connectTimer;
+            this.authTimer = authTimer;
+        }
+
+        private Stats stats() {
+            return new Stats(hits.sum(), misses.sum(), reconnects.sum(), evictions.sum(), exhausted.sum(),
+                    idle.size(), maxSessions - permits.availablePermits(),
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()));
+        }
+    }
+}
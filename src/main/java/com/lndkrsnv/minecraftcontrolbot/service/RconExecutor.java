@@ -0,0 +1,230 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Отдельные ограниченные пулы потоков для RCON, по одному на сервер.
+ * Зависший сервер занимает только свои потоки и не мешает ни другим серверам,
+ * ни остальному приложению.
+ * <p>
+ * Команды сервера ждут в {@link FairCommandQueue}: сначала выполняются команды более
+ * высокого {@link CommandPriority}, а внутри класса чаты обслуживаются по кругу.
+ * Время ожидания в очереди пишется в {@code rcon.queue.wait} по классам.
+ */
+public class RconExecutor implements AutoCloseable {
+    private final RconProperties.Executor config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    public RconExecutor(RconProperties.Executor config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @throws RejectedExecutionException если очередь сервера заполнена
+     */
+    public <T> Future<T> submit(String serverId, Callable<T> task) {
+        return submit(serverId, CommandSource.BACKGROUND, task);
+    }
+
+    /**
+     * @throws RejectedExecutionException если очередь сервера заполнена
+     */
+    public <T> Future<T> submit(String serverId, CommandSource source, Callable<T> task) {
+        Lane lane = lanes.computeIfAbsent(serverId, this::newLane);
+        Job<T> job = new Job<>(task, source);
+        if (!lane.queue.offer(job)) {
+            lane.rejected.increment();
+            throw new RejectedExecutionException("RCON queue of " + serverId + " is full");
+        }
+        return job;
+    }
+
+    /** Поднимает ещё не начатую команду в класс {@code priority}, если он выше текущего. */
+    public void promote(String serverId, Future<?> future, CommandPriority priority) {
+        Lane lane = lanes.get(serverId);
+        if (lane != null && future instanceof Job<?> job) {
+            lane.queue.promote(job, priority);
+        }
+    }
+
+    /** Отменяет задачу по таймауту: убирает её из очереди или прерывает выполняющийся поток. */
+    public void cancel(String serverId, Future<?> future) {
+        future.cancel(true);
+        Lane lane = lanes.get(serverId);
+        if (lane != null) {
+            lane.timedOut.increment();
+            if (future instanceof Job<?> job) {
+                lane.queue.remove(job);
+            }
+        }
+    }
+
+    /**
+     * Закрывает очередь сервера после его удаления или изменения настроек: уже принятые команды
+     * выполняются, после чего потоки очереди завершаются, а её метрики снимаются. Следующая
+     * команда сервера создаёт новую очередь.
+     */
+    public void retire(String serverId) {
+        Lane lane = lanes.remove(serverId);
+        if (lane != null) {
+            lane.queue.close();
+            lane.meters.forEach(meterRegistry::remove);
+        }
+    }
+
+    public Map<String, Stats> stats() {
+        return lanes.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().stats()));
+    }
+
+    @Override
+    public void close() {
+        lanes.values().forEach(Lane::close);
+    }
+
+    private Lane newLane(String serverId) {
+        var lane = new Lane(new FairCommandQueue<>(config.queueCapacity()));
+        for (CommandPriority priority : CommandPriority.values()) {
+            Timer waitTimer = Timer.builder("rcon.queue.wait")
+                    .description("Время ожидания RCON-команды в очереди сервера")
+                    .tag("server", serverId)
+                    .tag("priority", priority.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            lane.waitTimers.put(priority, waitTimer);
+            lane.meters.add(waitTimer);
+            lane.meters.add(Gauge.builder("rcon.executor.queued", lane.queue, q -> q.sizes()[priority.ordinal()])
+                    .tag("server", serverId)
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        for (int i = 1; i <= config.threads(); i++) {
+            Thread t = new Thread(lane::work, "rcon-" + serverId + "-" + i);
+            t.setDaemon(true);
+            lane.workers.add(t);
+            t.start();
+        }
+        lane.meters.add(Gauge.builder("rcon.executor.in_flight", lane.inFlight, AtomicInteger::get)
+                .tag("server", serverId).register(meterRegistry));
+        lane.meters.add(FunctionCounter.builder("rcon.executor.rejected", lane.rejected, LongAdder::sum)
+                .tag("server", serverId).register(meterRegistry));
+        lane.meters.add(FunctionCounter.builder("rcon.executor.timed_out", lane.timedOut, LongAdder::sum)
+                .tag("server", serverId).register(meterRegistry));
+        return lane;
+    }
+
+    /**
+     * @param queueDepth команды, ждущие свободного потока
+     * @param inFlight   команды, выполняющиеся сейчас
+     * @param completed  выполненные команды (включая завершившиеся ошибкой)
+     * @param rejected   отклонённые из-за переполнения очереди
+     * @param timedOut   отменённые по таймауту
+     */
+    public record Stats(int queueDepth, int inFlight, long completed, long rejected, long timedOut) {}
+
+    private static final class Job<T> extends FutureTask<T> implements FairCommandQueue.Entry {
+        private final long chatId;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile CommandPriority priority;
+
+        private Job(Callable<T> task, CommandSource source) {
+            super(task);
+            this.chatId = source.chatId();
+            this.priority = source.priority();
+        }
+
+        @Override
+        public long chatId() {
+            return chatId;
+        }
+
+        @Override
+        public CommandPriority priority() {
+            return priority;
+        }
+
+        @Override
+        public void priority(CommandPriority priority) {
+            this.priority = priority;
+        }
+    }
+
+    private static final class Lane {
+        private final FairCommandQueue<Job<?>> queue;
+        private final List<Thread> workers = new ArrayList<>();
+        private final List<Meter> meters = new ArrayList<>();
+        private final Map<CommandPriority, Timer> waitTimers = new EnumMap<>(CommandPriority.class);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private volatile boolean closing;
+
+        private Lane(FairCommandQueue<Job<?>> queue) {
+            this.queue = queue;
+        }
+
+        private void work() {
+            while (true) {
+                Job<?> job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    // Прерывание от отмены по таймауту могло прийти уже после конца команды;
+                    // поток выходит только при закрытии, иначе очередь сервера теряла бы исполнителей
+                    if (closing) {
+                        return;
+                    }
+                    continue;
+                }
+                if (job == null) {
+                    return;
+                }
+                if (job.isCancelled()) {
+                    continue;
+                }
+                waitTimers.get(job.priority()).record(System.nanoTime() - job.enqueuedAt, TimeUnit.NANOSECONDS);
+                inFlight.incrementAndGet();
+                try {
+                    job.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    completed.increment();
+                    // Прерывание, оставшееся от отмены по таймауту, не должно достаться следующей команде
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        private void close() {
+            closing = true;
+            queue.close();
+            workers.forEach(Thread::interrupt);
+        }
+
+        private Stats stats() {
+            return new Stats(queue.size(), inFlight.get(), completed.sum(), rejected.sum(), timedOut.sum());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+/**
+ * Получатель ответа RCON-команды по частям, по мере чтения пакетов.
+ * <p>
+ * Переданный фрагмент действителен только во время вызова: буфер переиспользуется
+ * для следующего пакета, поэтому сохранять нужно копию.
+ */
+@FunctionalInterface
+public interface RconOutput {
+    void append(CharSequence chunk);
+}
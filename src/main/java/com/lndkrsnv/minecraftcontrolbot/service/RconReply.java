@@ -0,0 +1,18 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.time.Duration;
+
+/**
+ * Ответ на одну команду из пакета.
+ *
+ * @param command   команда
+ * @param response  ответ сервера, целиком
+ * @param took      время от отправки команды до конца ответа на неё
+ * @param completed {@code false}, если соединение оборвалось раньше, чем пришёл ответ
+ */
+public record RconReply(
+        String command,
+        String response,
+        Duration took,
+        boolean completed
+) {}
@@ -1,12 +1,23 @@
 package com.lndkrsnv.minecraftcontrolbot.service;
 
 import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
-import org.glavo.rcon.AuthenticationException;
-import org.glavo.rcon.Rcon;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.concurrent.CompletableFuture;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -14,38 +25,384 @@ import java.util.concurrent.TimeoutException;
 public class RconService {
     private static final int TIMEOUT_SECONDS = 2;
     private final RconProperties props;
+    private final RconConnectionPool pool;
+    private final RconExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CommandTimers> timers = new ConcurrentHashMap<>();
+    private final Set<String> idempotentCommands;
+    private final Map<String, PendingCall<?>> queuedIdempotent = new ConcurrentHashMap<>();
 
-    public RconService(RconProperties props) {
+    public RconService(RconProperties props, MeterRegistry meterRegistry) {
         this.props = props;
+        this.meterRegistry = meterRegistry;
+        this.pool = new RconConnectionPool(props.pool(), meterRegistry);
+        this.executor = new RconExecutor(props.executor(), meterRegistry);
+        this.idempotentCommands = Set.copyOf(props.executor().idempotentCommands());
     }
 
-    public void command(String serverId, String cmd) {
-        var server = props.servers().get(serverId);
+    /** Команда от фоновой задачи бота, с низшим приоритетом. */
+    public String command(ServerHandle server, String cmd) {
+        return command(server, CommandSource.BACKGROUND, cmd);
+    }
+
+    /**
+     * Выполняет команду в очереди сервера с приоритетом {@code source}. Если такая же команда
+     * из {@code rcon.executor.idempotent-commands} уже ждёт в очереди, новая не ставится:
+     * вызывающий получает ответ той же команды, а ждущая команда поднимается до его приоритета.
+     */
+    public String command(ServerHandle server, CommandSource source, String cmd) {
+        String dedupeKey = idempotent(cmd) ? cmd.strip() : null;
+        return await(start(server, source, dedupeKey, dedupeKey != null, session -> session.command(cmd)),
+                TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS), TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Выполняет команду на нескольких серверах одновременно. Команда ставится в очереди
+     * всех серверов сразу, и каждый сервер ждёт не дольше {@code rcon.broadcast-deadline}
+     * от общего старта, поэтому общее время ограничено самым медленным сервером, а не их числом.
+     *
+     * @return результаты в порядке {@code servers}
+     */
+    public List<BroadcastResult> broadcast(List<ServerHandle> servers, CommandSource source, String cmd) {
+        long started = System.nanoTime();
+        long deadline = started + props.broadcastDeadline().toNanos();
+        List<PendingCall<String>> calls = new ArrayList<>(servers.size());
+        List<BroadcastResult> results = new ArrayList<>(servers.size());
+        for (ServerHandle server : servers) {
+            try {
+                calls.add(start(server, source, null, idempotent(cmd), session -> session.command(cmd)));
+                results.add(null);
+            } catch (RuntimeException e) {
+                calls.add(null);
+                results.add(new BroadcastResult(server, BroadcastResult.Outcome.FAILED, null, e.getMessage(), Duration.ZERO));
+            }
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            PendingCall<String> call = calls.get(i);
+            if (call == null) {
+                continue;
+            }
+            ServerHandle server = servers.get(i);
+            try {
+                String response = await(call, Math.max(0, deadline - System.nanoTime()), props.broadcastDeadline().toSeconds());
+                results.set(i, new BroadcastResult(server, BroadcastResult.Outcome.SUCCESS, response, null,
+                        Duration.ofNanos(System.nanoTime() - started)));
+            } catch (CallTimeoutException e) {
+                results.set(i, new BroadcastResult(server, BroadcastResult.Outcome.TIMEOUT, null, e.getMessage(),
+                        Duration.ofNanos(System.nanoTime() - started)));
+            } catch (RuntimeException e) {
+                results.set(i, new BroadcastResult(server, BroadcastResult.Outcome.FAILED, null, e.getMessage(),
+                        Duration.ofNanos(System.nanoTime() - started)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Выполняет команду, отдавая ответ в {@code output} частями по мере получения.
+     * {@code output} вызывается из потока RCON и не должен блокироваться.
+     */
+    public void stream(ServerHandle server, CommandSource source, String cmd, RconOutput output) {
+        run(server, source, TIMEOUT_SECONDS, false, session -> {
+            session.stream(cmd, output);
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет команды по порядку в одной сессии, каждую после ответа на предыдущую.
+     * Время ожидания — {@value #TIMEOUT_SECONDS} сек. на каждую команду.
+     */
+    public List<RconReply> batch(ServerHandle server, CommandSource source, List<String> commands) {
+        if (commands.isEmpty()) {
+            return List.of();
+        }
+        return run(server, source, TIMEOUT_SECONDS * commands.size(), commands.stream().allMatch(this::idempotent),
+                session -> session.batch(commands));
+    }
+
+    /**
+     * Открывает и авторизует соединение с сервером заранее и оставляет его в пуле,
+     * чтобы первая команда пользователя не ждала подключения.
+     */
+    public void warmUp(ServerHandle server) {
+        run(server, CommandSource.BACKGROUND, TIMEOUT_SECONDS, true, session -> null);
+    }
+
+    public Map<String, RconConnectionPool.Stats> poolStats() {
+        return pool.stats();
+    }
+
+    public Map<String, RconExecutor.Stats> executorStats() {
+        return executor.stats();
+    }
+
+    @EventListener
+    public void onServersReloaded(ServersReloadedEvent event) {
+        event.removed().forEach(pool::evict);
+        event.changed().forEach(pool::evict);
+        event.removed().forEach(executor::retire);
+        event.changed().forEach(executor::retire);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+        pool.close();
+    }
+
+    private <T> T run(ServerHandle handle, CommandSource source, int timeoutSeconds, boolean retryable,
+                      SessionAction<T> action) {
+        return await(start(handle, source, null, retryable, action), TimeUnit.SECONDS.toNanos(timeoutSeconds), timeoutSeconds);
+    }
+
+    private boolean idempotent(String cmd) {
+        return idempotentCommands.contains(cmd.strip());
+    }
+
+    /**
+     * Ставит команду в очередь сервера, не дожидаясь ответа.
+     *
+     * @param dedupeKey если задан, вызов присоединяется к ещё не начатой команде с тем же ключом
+     * @param retryable можно ли выполнить команду ещё раз, если соединение оборвалось во время неё
+     */
+    @SuppressWarnings("unchecked")
+    private <T> PendingCall<T> start(ServerHandle handle, CommandSource source, String dedupeKey, boolean retryable,
+                                     SessionAction<T> action) {
+        var server = handle.rcon();
         if (server == null) {
-            throw new IllegalArgumentException("Unknown serverId: " + serverId);
+            throw new IllegalArgumentException("RCON для сервера " + handle.title() + " не настроен");
         }
-        
+
+        String serverId = handle.id();
+        var commandTimers = timers.computeIfAbsent(serverId, this::newTimers);
+        String key = dedupeKey != null ? serverId + '\n' + dedupeKey : null;
+        if (key != null) {
+            PendingCall<?> queued = queuedIdempotent.get(key);
+            if (queued != null && queued.call().join()) {
+                executor.promote(serverId, queued.future(), source.priority());
+                commandTimers.deduplicated().increment();
+                return (PendingCall<T>) queued.joined();
+            }
+        }
+        var breaker = handle.breaker();
+        long started = System.nanoTime();
+        if (!breaker.tryAcquire()) {
+            commandTimers.circuitOpen().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw breaker.openException("RCON");
+        }
+        var call = new Call();
+        Future<T> future;
         try {
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                try (Rcon rcon = new Rcon(server.host(), server.port(), server.password())) {
-                    rcon.command(cmd);
-                } catch (IOException | AuthenticationException e) {
+            future = executor.submit(serverId, source, () -> {
+                if (key != null) {
+                    // Начатая команда больше не принимает присоединившихся
+                    call.begin();
+                    queuedIdempotent.computeIfPresent(key, (k, p) -> p.call() == call ? null : p);
+                }
+                try {
+                    return execute(serverId, server, call, retryable, action);
+                } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             });
-            
-            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            throw new RuntimeException("RCON сервер недоступен: превышено время ожидания (" + TIMEOUT_SECONDS + " сек)", e);
+        } catch (RejectedExecutionException e) {
+            breaker.onIgnored();
+            commandTimers.rejected().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw new RuntimeException("RCON сервер недоступен: слишком много команд в очереди", e);
+        }
+        var pending = new PendingCall<>(serverId, key, future, call, breaker, commandTimers, started, true);
+        if (key != null) {
+            queuedIdempotent.put(key, pending);
+        }
+        return pending;
+    }
+
+    private <T> T await(PendingCall<T> pending, long timeoutNanos, long timeoutSeconds) {
+        String serverId = pending.serverId();
+        Future<T> future = pending.future();
+        Call call = pending.call();
+        CircuitBreaker breaker = pending.breaker();
+        CommandTimers commandTimers = pending.timers();
+        // Автомат и метрики ведёт только тот, кто поставил команду в очередь
+        boolean owner = pending.owner();
+        long started = pending.started();
+        try {
+            T result = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (owner) {
+                breaker.onSuccess();
+                commandTimers.success().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            return result;
+        } catch (TimeoutException | CancellationException e) {
+            if (call.release()) {
+                call.cancel();
+                executor.cancel(serverId, future);
+            }
+            if (owner) {
+                breaker.onFailure();
+                commandTimers.timeout().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            throw new CallTimeoutException("RCON сервер недоступен: превышено время ожидания (" + timeoutSeconds + " сек)", e);
         } catch (java.util.concurrent.ExecutionException e) {
+            if (owner) {
+                breaker.onFailure();
+                commandTimers.error().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
             Throwable cause = e.getCause();
             if (cause instanceof RuntimeException) {
                 throw (RuntimeException) cause;
             }
             throw new RuntimeException("Ошибка выполнения RCON команды", cause);
         } catch (InterruptedException e) {
+            if (call.release()) {
+                call.cancel();
+                executor.cancel(serverId, future);
+            }
+            if (owner) {
+                breaker.onIgnored();
+            }
             Thread.currentThread().interrupt();
             throw new RuntimeException("RCON команда прервана", e);
+        } finally {
+            if (owner && pending.key() != null) {
+                queuedIdempotent.remove(pending.key(), pending);
+            }
+        }
+    }
+
+    private <T> T execute(String serverId, RconProperties.Server server, Call call, boolean retryable,
+                          SessionAction<T> action) throws IOException, InterruptedException {
+        var session = pool.acquire(serverId, server);
+        if (!call.attach(session)) {
+            pool.release(session);
+            throw new CancellationException("RCON command cancelled before start");
+        }
+        try {
+            T result = action.apply(session);
+            releaseOrInvalidate(session);
+            return result;
+        } catch (IOException e) {
+            // Обрыв мог случиться уже после того, как сервер выполнил команду, поэтому повторяются
+            // только команды, которые можно выполнить дважды; закрытые на простое сессии пул отсеивает сам
+            if (!retryable || !session.reused() || session.aborted()) {
+                pool.invalidate(session);
+                throw e;
+            }
+            // Сессия из пула могла быть закрыта сервером между проверкой и командой: переподключаемся один раз
+            session = pool.reconnect(session, server);
+            if (!call.attach(session)) {
+                pool.invalidate(session);
+                throw new CancellationException("RCON command cancelled before retry");
+            }
+            try {
+                T result = action.apply(session);
+                releaseOrInvalidate(session);
+                return result;
+            } catch (IOException | RuntimeException retryError) {
+                pool.invalidate(session);
+                throw retryError;
+            }
+        } catch (RuntimeException e) {
+            pool.invalidate(session);
+            throw e;
+        }
+    }
+
+    private void releaseOrInvalidate(RconConnectionPool.Session session) {
+        if (session.broken()) {
+            pool.invalidate(session);
+        } else {
+            pool.release(session);
+        }
+    }
+
+    private CommandTimers newTimers(String serverId) {
+        return new CommandTimers(
+                commandTimer(serverId, "success"),
+                commandTimer(serverId, "error"),
+                commandTimer(serverId, "timeout"),
+                commandTimer(serverId, "rejected"),
+                commandTimer(serverId, "circuit_open"),
+                Counter.builder("rcon.command.deduplicated")
+                        .description("Вызовы, присоединившиеся к такой же ждущей команде")
+                        .tag("server", serverId)
+                        .register(meterRegistry));
+    }
+
+    private Timer commandTimer(String serverId, String outcome) {
+        return Timer.builder("rcon.command")
+                .description("Время RCON-команды от постановки в очередь до ответа")
+                .tag("server", serverId)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record CommandTimers(Timer success, Timer error, Timer timeout, Timer rejected, Timer circuitOpen,
+                                 Counter deduplicated) {}
+
+    /**
+     * Команда, поставленная в очередь сервера и ещё не дождавшаяся ответа.
+     *
+     * @param owner {@code false} у вызова, присоединившегося к чужой команде
+     */
+    private record PendingCall<T>(String serverId, String key, Future<T> future, Call call, CircuitBreaker breaker,
+                                  CommandTimers timers, long started, boolean owner) {
+        private PendingCall<T> joined() {
+            return new PendingCall<>(serverId, key, future, call, breaker, timers, System.nanoTime(), false);
+        }
+    }
+
+    private static final class CallTimeoutException extends RuntimeException {
+        CallTimeoutException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionAction<T> {
+        T apply(RconConnectionPool.Session session) throws IOException;
+    }
+
+    /**
+     * Связывает ожидающие потоки с сессией, на которой выполняется команда,
+     * чтобы по таймауту можно было закрыть именно её сокет. Команду отменяет
+     * только последний из ожидающих.
+     */
+    private static final class Call {
+        private RconConnectionPool.Session session;
+        private boolean cancelled;
+        private boolean started;
+        private int waiters = 1;
+
+        synchronized void begin() {
+            started = true;
+        }
+
+        /** @return {@code false}, если команда уже начата или отменена */
+        synchronized boolean join() {
+            if (started || cancelled) return false;
+            waiters++;
+            return true;
+        }
+
+        /** @return {@code true}, если ждать больше некому */
+        synchronized boolean release() {
+            return --waiters == 0;
+        }
+
+        synchronized boolean attach(RconConnectionPool.Session session) {
+            if (cancelled) return false;
+            this.session = session;
+            return true;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (session != null) {
+                session.abort();
+            }
         }
     }
 }
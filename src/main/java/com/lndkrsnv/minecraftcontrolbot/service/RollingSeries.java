@@ -0,0 +1,100 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Кольцо агрегатов фиксированного размера за скользящее окно.
+ * <p>
+ * Окно делится на {@code buckets} одинаковых интервалов, для каждого хранятся минимум,
+ * максимум, сумма и число значений в примитивных массивах. Значение сразу добавляется
+ * в свой интервал, а устаревший интервал переиспользуется, когда время доходит до него
+ * снова. Память не зависит от частоты и длительности сбора, а чтение обходит только
+ * {@code buckets} ячеек, а не исходные значения.
+ */
+public final class RollingSeries {
+    private final Duration window;
+    private final long bucketMillis;
+    private final long[] bucketIndex;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sum;
+    private final int[] count;
+
+    public RollingSeries(Duration window, int buckets) {
+        this.window = window;
+        this.bucketMillis = Math.max(1, window.toMillis() / buckets);
+        this.bucketIndex = new long[buckets];
+        this.min = new double[buckets];
+        this.max = new double[buckets];
+        this.sum = new double[buckets];
+        this.count = new int[buckets];
+        Arrays.fill(bucketIndex, -1);
+    }
+
+    public Duration window() {
+        return window;
+    }
+
+    public synchronized void add(long timeMillis, double value) {
+        long index = timeMillis / bucketMillis;
+        int slot = (int) Math.floorMod(index, (long) count.length);
+        if (bucketIndex[slot] != index) {
+            bucketIndex[slot] = index;
+            min[slot] = value;
+            max[slot] = value;
+            sum[slot] = value;
+            count[slot] = 1;
+            return;
+        }
+        min[slot] = Math.min(min[slot], value);
+        max[slot] = Math.max(max[slot], value);
+        sum[slot] += value;
+        count[slot]++;
+    }
+
+    /**
+     * Агрегаты по интервалам окна, заканчивающегося в {@code nowMillis}, от старых к новым.
+     * Интервалы без значений содержат {@link Double#NaN}.
+     */
+    public synchronized Summary summary(long nowMillis) {
+        int buckets = count.length;
+        long last = nowMillis / bucketMillis;
+        double[] avg = new double[buckets];
+        double windowMin = Double.POSITIVE_INFINITY;
+        double windowMax = Double.NEGATIVE_INFINITY;
+        double windowSum = 0;
+        long windowCount = 0;
+        for (int i = 0; i < buckets; i++) {
+            long index = last - buckets + 1 + i;
+            int slot = (int) Math.floorMod(index, (long) buckets);
+            if (bucketIndex[slot] != index || count[slot] == 0) {
+                avg[i] = Double.NaN;
+                continue;
+            }
+            avg[i] = sum[slot] / count[slot];
+            windowMin = Math.min(windowMin, min[slot]);
+            windowMax = Math.max(windowMax, max[slot]);
+            windowSum += sum[slot];
+            windowCount += count[slot];
+        }
+        if (windowCount == 0) {
+            return new Summary(window, avg, Double.NaN, Double.NaN, Double.NaN, 0);
+        }
+        return new Summary(window, avg, windowMin, windowMax, windowSum / windowCount, windowCount);
+    }
+
+    /**
+     * @param window  длительность окна
+     * @param buckets среднее по каждому интервалу от старых к новым, {@link Double#NaN} если значений не было
+     * @param min     минимум за окно
+     * @param max     максимум за окно
+     * @param avg     среднее за окно
+     * @param samples сколько значений попало в окно
+     */
+    public record Summary(Duration window, double[] buckets, double min, double max, double avg, long samples) {
+        public boolean isEmpty() {
+            return samples == 0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+
+import java.util.Objects;
+
+/**
+ * Сервер из {@link ServerRegistry} со всеми настройками, нужными для команд и статуса.
+ * Чат хранит ссылку на handle и не ищет сервер по имени при каждой команде.
+ *
+ * @param id      идентификатор сервера, ключ в {@code rcon.servers} и {@code status.servers}
+ * @param title   название для пользователя
+ * @param rcon    настройки RCON, {@code null} если для сервера доступен только статус
+ * @param status  настройки статуса, {@code null} если статус сервера не опрашивается
+ * @param breaker автомат отключения, общий для RCON и статуса
+ */
+public record ServerHandle(
+        String id,
+        String title,
+        RconProperties.Server rcon,
+        StatusProperties.Server status,
+        CircuitBreaker breaker
+) {
+    public boolean hasRcon() {
+        return rcon != null;
+    }
+
+    public boolean hasStatus() {
+        return status != null;
+    }
+
+    /** Совпадают ли настройки, без учёта автомата отключения. */
+    boolean sameSettings(ServerHandle other) {
+        return other != null && Objects.equals(title, other.title)
+                && Objects.equals(rcon, other.rcon) && Objects.equals(status, other.status);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
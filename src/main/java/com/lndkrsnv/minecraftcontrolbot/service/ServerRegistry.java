@@ -0,0 +1,211 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.ServersProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Список серверов, собранный из {@code rcon.servers} и {@code status.servers}.
+ * <p>
+ * Серверы хранятся в неизменяемом снимке, который целиком заменяется при перезагрузке,
+ * поэтому чтение не требует блокировок. Если задан {@code servers.file}, файл проверяется
+ * каждые {@code reloadInterval} и при изменении перечитывается; после этого публикуется
+ * {@link ServersReloadedEvent}.
+ */
+@Service
+public class ServerRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ServerRegistry.class);
+
+    private final ServersProperties props;
+    private final CircuitBreakers breakers;
+    private final ConfigurableEnvironment environment;
+    private final ApplicationEventPublisher events;
+    private final ScheduledExecutorService reloader;
+
+    private volatile Map<String, ServerHandle> servers;
+    private volatile List<ServerHandle> ordered;
+    private FileTime loadedModified;
+
+    public ServerRegistry(
+            RconProperties rconProps,
+            StatusProperties statusProps,
+            ServersProperties props,
+            CircuitBreakers breakers,
+            ConfigurableEnvironment environment,
+            ApplicationEventPublisher events
+    ) {
+        this.props = props;
+        this.breakers = breakers;
+        this.environment = environment;
+        this.events = events;
+
+        if (props.file() == null || props.file().isBlank()) {
+            apply(build(rconProps.servers(), statusProps.servers()));
+            this.reloader = null;
+            return;
+        }
+        Path file = Path.of(props.file());
+        this.loadedModified = lastModified(file);
+        apply(loadedModified != null ? load(file) : build(rconProps.servers(), statusProps.servers()));
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "server-registry-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMs = props.reloadInterval().toMillis();
+        reloader.scheduleWithFixedDelay(this::reloadIfModified, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Сервер по идентификатору или {@code null}, если такого нет. */
+    public ServerHandle get(String serverId) {
+        return serverId == null ? null : servers.get(serverId);
+    }
+
+    /** Все серверы в порядке конфигурации. */
+    public List<ServerHandle> all() {
+        return ordered;
+    }
+
+    /** Серверы, для которых настроен статус. */
+    public List<ServerHandle> withStatus() {
+        return ordered.stream().filter(ServerHandle::hasStatus).toList();
+    }
+
+    /**
+     * Перечитывает {@code servers.file}.
+     *
+     * @return описание изменений для пользователя
+     */
+    public synchronized String reload() {
+        if (props.file() == null || props.file().isBlank()) {
+            throw new IllegalStateException("Файл серверов не задан (servers.file)");
+        }
+        Path file = Path.of(props.file());
+        loadedModified = lastModified(file);
+        ServersReloadedEvent event = apply(load(file));
+        if (event.added().isEmpty() && event.removed().isEmpty() && event.changed().isEmpty()) {
+            return "Список серверов не изменился";
+        }
+        log.info("Servers reloaded from {}: added={}, removed={}, changed={}",
+                file, event.added(), event.removed(), event.changed());
+        events.publishEvent(event);
+        return "Добавлены: " + describe(event.added())
+                + "\nУдалены: " + describe(event.removed())
+                + "\nИзменены: " + describe(event.changed());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    private void reloadIfModified() {
+        try {
+            FileTime modified = lastModified(Path.of(props.file()));
+            synchronized (this) {
+                if (modified == null || modified.equals(loadedModified)) {
+                    return;
+                }
+            }
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload servers from {}", props.file(), e);
+        }
+    }
+
+    private Map<String, ServerHandle> load(Path file) {
+        try {
+            var sources = new YamlPropertySourceLoader().load("servers-file", new FileSystemResource(file));
+            Binder binder = new Binder(ConfigurationPropertySources.from(sources),
+                    new PropertySourcesPlaceholdersResolver(environment));
+            Map<String, RconProperties.Server> rcon = binder
+                    .bind("rcon.servers", Bindable.mapOf(String.class, RconProperties.Server.class))
+                    .orElse(Map.of());
+            Map<String, StatusProperties.Server> status = binder
+                    .bind("status.servers", Bindable.mapOf(String.class, StatusProperties.Server.class))
+                    .orElse(Map.of());
+            return build(rcon, status);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать файл серверов " + file, e);
+        }
+    }
+
+    private Map<String, ServerHandle> build(Map<String, RconProperties.Server> rcon,
+                                            Map<String, StatusProperties.Server> status) {
+        Map<String, ServerHandle> result = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>();
+        if (rcon != null) ids.addAll(rcon.keySet());
+        if (status != null) status.keySet().stream().filter(id -> !ids.contains(id)).forEach(ids::add);
+        for (String id : ids) {
+            RconProperties.Server rconServer = rcon != null ? rcon.get(id) : null;
+            String title = rconServer != null && rconServer.title() != null && !rconServer.title().isBlank()
+                    ? rconServer.title() : id;
+            result.put(id, new ServerHandle(id, title, rconServer,
+                    status != null ? status.get(id) : null, breakers.forServer(id)));
+        }
+        return result;
+    }
+
+    private ServersReloadedEvent apply(Map<String, ServerHandle> next) {
+        Map<String, ServerHandle> previous = servers != null ? servers : Map.of();
+        Map<String, ServerHandle> merged = new LinkedHashMap<>();
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        next.forEach((id, handle) -> {
+            ServerHandle old = previous.get(id);
+            if (old == null) {
+                added.add(id);
+            } else if (handle.sameSettings(old)) {
+                // Неизменившиеся серверы сохраняют прежний handle, ссылки из чатов остаются актуальными
+                handle = old;
+            } else {
+                changed.add(id);
+            }
+            merged.put(id, handle);
+        });
+        List<String> removed = previous.keySet().stream().filter(id -> !next.containsKey(id)).toList();
+
+        this.servers = Collections.unmodifiableMap(merged);
+        this.ordered = List.copyOf(merged.values());
+        return new ServersReloadedEvent(List.copyOf(added), removed, List.copyOf(changed));
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String describe(List<String> ids) {
+        return ids.isEmpty() ? "нет" : String.join(", ", ids);
+    }
+}
@@ -0,0 +1,16 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.util.List;
+
+/**
+ * Публикуется {@link ServerRegistry} после того, как список серверов перечитан.
+ *
+ * @param added   новые серверы
+ * @param removed удалённые серверы
+ * @param changed серверы, у которых изменились настройки
+ */
+public record ServersReloadedEvent(
+        List<String> added,
+        List<String> removed,
+        List<String> changed
+) {}
@@ -0,0 +1,14 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import java.util.List;
+
+/**
+ * Публикуется {@link StatusPoller}, когда очередной опрос сервера отличается от предыдущего.
+ *
+ * @param serverId сервер
+ * @param changes  описания изменений, готовые для отправки пользователю
+ */
+public record StatusChangedEvent(
+        String serverId,
+        List<String> changes
+) {}
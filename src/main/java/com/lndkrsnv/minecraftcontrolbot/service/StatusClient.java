@@ -2,23 +2,56 @@ package com.lndkrsnv.minecraftcontrolbot.service;
 
 import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
 import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
+import tools.jackson.core.exc.JacksonIOException;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class StatusClient {
     private static final int TIMEOUT_SECONDS = 2;
     private final RestClient client;
     private final StatusProperties props;
-    private final ObjectMapper objectMapper;
+    private final MinecraftPingClient pingClient;
+    private final StatusDecoder decoder;
 
-    public StatusClient(StatusProperties props, ObjectMapper objectMapper) {
+    private final ConcurrentHashMap<String, StatusSnapshot> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<StatusSnapshot>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, FetchTimers> timers = new ConcurrentHashMap<>();
+
+    public StatusClient(StatusProperties props, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.props = props;
-        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.pingClient = new MinecraftPingClient(objectMapper, Duration.ofSeconds(TIMEOUT_SECONDS));
+        this.decoder = new StatusDecoder(objectMapper);
         
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS));
@@ -27,32 +60,231 @@ public class StatusClient {
         this.client = RestClient.builder()
                 .requestFactory(factory)
                 .build();
+
+        cacheCounter("hit", hits);
+        cacheCounter("stale", staleHits);
+        cacheCounter("miss", misses);
+        cacheCounter("coalesced", coalesced);
+    }
+
+    /**
+     * Статус из кеша, если он свежее {@code status.cache.ttl}, иначе запрос к серверу.
+     * Одновременные промахи по одному серверу объединяются в один запрос.
+     * При включённом {@code stale-while-revalidate} устаревший ответ отдаётся сразу,
+     * а обновление идёт в фоне.
+     */
+    public StatusSnapshot fetchCached(ServerHandle server) {
+        String serverId = server.id();
+        var cacheProps = props.cache();
+        long now = System.currentTimeMillis();
+        StatusSnapshot cached = cache.get(serverId);
+        if (cached != null) {
+            long age = cached.ageMillis(now);
+            if (age < cacheProps.ttl().toMillis()) {
+                hits.increment();
+                return cached;
+            }
+            if (cacheProps.staleWhileRevalidate() && age < cacheProps.ttl().plus(cacheProps.maxStale()).toMillis()) {
+                staleHits.increment();
+                refresh(server, true);
+                return cached;
+            }
+        }
+        misses.increment();
+        try {
+            return refresh(server, false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
-    public StatusResponse fetchStatus(String serverId) {
-        var server = props.servers().get(serverId);
+    /**
+     * Запрашивает переданные серверы параллельно и ждёт не дольше {@code deadline}.
+     * Серверы, не успевшие ответить, возвращаются с пустым {@link FetchResult}.
+     */
+    public Map<String, FetchResult> fetchAll(Collection<ServerHandle> servers, Duration deadline) {
+        Map<String, CompletableFuture<StatusSnapshot>> futures = new LinkedHashMap<>();
+        for (ServerHandle server : servers) {
+            futures.put(server.id(), CompletableFuture.supplyAsync(() -> fetchCached(server), refreshExecutor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+                    .get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | java.util.concurrent.ExecutionException e) {
+            // Итог по каждому серверу разбирается ниже
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<String, FetchResult> results = new LinkedHashMap<>();
+        futures.forEach((serverId, future) -> {
+            if (!future.isDone()) {
+                results.put(serverId, new FetchResult(null, null));
+            } else if (future.isCompletedExceptionally()) {
+                Throwable error = future.exceptionNow();
+                results.put(serverId, new FetchResult(null,
+                        error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName()));
+            } else {
+                results.put(serverId, new FetchResult(future.resultNow(), null));
+            }
+        });
+        return results;
+    }
+
+    public StatusResponse fetchStatus(ServerHandle handle) {
+        var server = handle.status();
         if (server == null) {
-            throw new IllegalArgumentException("Unknown status serverId: " + serverId);
+            throw new IllegalArgumentException("Статус для сервера " + handle.title() + " не настроен");
         }
 
+        var breaker = handle.breaker();
+        if (!breaker.tryAcquire()) {
+            throw breaker.openException("Status");
+        }
+
+        String backend = server.backend().name().toLowerCase();
+        var fetchTimers = timers.computeIfAbsent(handle.id() + '/' + backend, key -> newTimers(handle.id(), backend));
+        long started = System.nanoTime();
         try {
-            String raw = client.get()
+            StatusResponse status = server.backend() == StatusProperties.Backend.PING
+                    ? ping(server)
+                    : fetchHttp(server, fetchTimers.parse());
+            breaker.onSuccess();
+            fetchTimers.success().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return status;
+        } catch (RuntimeException | Error e) {
+            breaker.onFailure();
+            fetchTimers.error().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private StatusResponse fetchHttp(StatusProperties.Server server, Timer parseTimer) {
+        try {
+            return client.get()
                     .uri(server.url())
-                    .retrieve()
-                    .body(String.class);
-
-            try {
-                return objectMapper.readValue(raw, StatusResponse.class);
-            } catch (Exception e) {
-                assert raw != null;
-                throw new IllegalStateException("Invalid status payload (first 200 chars): "
-                        + raw.substring(0, Math.min(raw.length(), 200)), e);
-            }
-        } catch (org.springframework.web.client.ResourceAccessException e) {
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new RuntimeException("Status сервер недоступен: HTTP " + response.getStatusCode().value());
+                        }
+                        // Разбор идёт по мере чтения тела, поэтому время включает и дочитывание ответа
+                        long parseStarted = System.nanoTime();
+                        try (var body = response.getBody()) {
+                            return decoder.decode(body);
+                        } catch (JacksonIOException e) {
+                            throw new ResourceAccessException("Failed to read status response",
+                                    e.getCause() instanceof IOException io ? io : new IOException(e));
+                        } finally {
+                            parseTimer.record(System.nanoTime() - parseStarted, TimeUnit.NANOSECONDS);
+                        }
+                    });
+        } catch (ResourceAccessException e) {
             if (e.getCause() instanceof java.net.SocketTimeoutException) {
                 throw new RuntimeException("Status сервер недоступен: превышено время ожидания (" + TIMEOUT_SECONDS + " сек)", e);
             }
             throw new RuntimeException("Status сервер недоступен", e);
         }
     }
+
+    private StatusResponse ping(StatusProperties.Server server) {
+        try {
+            return decoder.dedupe(pingClient.ping(server.host(), server.port()));
+        } catch (java.net.SocketTimeoutException e) {
+            throw new RuntimeException("Status сервер недоступен: превышено время ожидания (" + TIMEOUT_SECONDS + " сек)", e);
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Status сервер недоступен", e);
+        }
+    }
+
+    public CacheStats cacheStats() {
+        return new CacheStats(hits.sum(), staleHits.sum(), misses.sum(), coalesced.sum());
+    }
+
+    /** Кеш удалённых и изменённых серверов больше не относится к их текущим настройкам. */
+    @EventListener
+    public void onServersReloaded(ServersReloadedEvent event) {
+        event.removed().forEach(cache::remove);
+        event.changed().forEach(cache::remove);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private CompletableFuture<StatusSnapshot> refresh(ServerHandle server, boolean background) {
+        String serverId = server.id();
+        var created = new CompletableFuture<StatusSnapshot>();
+        var existing = inFlight.putIfAbsent(serverId, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        if (background) {
+            refreshExecutor.execute(() -> load(server, created));
+        } else {
+            load(server, created);
+        }
+        return created;
+    }
+
+    private void load(ServerHandle server, CompletableFuture<StatusSnapshot> result) {
+        try {
+            var snapshot = new StatusSnapshot(fetchStatus(server), System.currentTimeMillis());
+            cache.put(server.id(), snapshot);
+            result.complete(snapshot);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            inFlight.remove(server.id(), result);
+        }
+    }
+
+    private FetchTimers newTimers(String serverId, String backend) {
+        return new FetchTimers(
+                fetchTimer(serverId, backend, "success"),
+                fetchTimer(serverId, backend, "error"),
+                Timer.builder("status.parse")
+                        .tag("server", serverId)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+    }
+
+    private Timer fetchTimer(String serverId, String backend, String outcome) {
+        return Timer.builder("status.fetch")
+                .tag("server", serverId)
+                .tag("backend", backend)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void cacheCounter(String result, LongAdder adder) {
+        FunctionCounter.builder("status.cache.requests", adder, LongAdder::sum)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record FetchTimers(Timer success, Timer error, Timer parse) {}
+
+    /**
+     * Результат запроса одного сервера при опросе всех сразу.
+     * Если оба поля {@code null}, сервер не ответил до истечения срока.
+     *
+     * @param snapshot ответ сервера
+     * @param error    текст ошибки
+     */
+    public record FetchResult(StatusSnapshot snapshot, String error) {}
+
+    /**
+     * @param hits      ответы из свежего кеша
+     * @param staleHits устаревшие ответы, отданные с фоновым обновлением
+     * @param misses    запросы, которым пришлось ждать ответа сервера
+     * @param coalesced запросы, присоединившиеся к уже идущему запросу того же сервера
+     */
+    public record CacheStats(long hits, long staleHits, long misses, long coalesced) {}
 }
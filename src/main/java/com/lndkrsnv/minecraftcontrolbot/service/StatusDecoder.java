@@ -0,0 +1,125 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayersInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.ServerInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.VersionInfo;
+import tools.jackson.core.exc.JacksonIOException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Разбор ответа status-сервиса прямо из потока, без промежуточной строки.
+ * <p>
+ * Для сообщения об ошибке запоминаются только первые {@link #SNIPPET_BYTES} байт тела.
+ * Повторяющиеся между опросами значения (игроки из {@code sample}, версия, описание)
+ * заменяются уже известными экземплярами, так что закешированные снимки не держат копии.
+ */
+final class StatusDecoder {
+    static final int SNIPPET_BYTES = 200;
+    static final int MAX_INTERNED = 4096;
+
+    private final ObjectMapper objectMapper;
+    private final Interner<PlayerSample> samples = new Interner<>();
+    private final Interner<VersionInfo> versions = new Interner<>();
+    private final Interner<ServerInfo> servers = new Interner<>();
+    private final Interner<String> strings = new Interner<>();
+
+    StatusDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** @throws JacksonIOException если тело не удалось дочитать */
+    StatusResponse decode(InputStream body) {
+        SnippetInputStream in = new SnippetInputStream(body);
+        try {
+            return dedupe(objectMapper.readValue(in, StatusResponse.class));
+        } catch (JacksonIOException e) {
+            // Ошибка чтения из сети, а не формата: пусть её обработает вызывающий
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid status payload (first " + SNIPPET_BYTES + " bytes): " + in.snippet(), e);
+        }
+    }
+
+    /** Заменяет части ответа уже встречавшимися экземплярами. */
+    StatusResponse dedupe(StatusResponse status) {
+        if (status == null) {
+            return null;
+        }
+        PlayersInfo players = status.players();
+        if (players != null && players.sample() != null && !players.sample().isEmpty()) {
+            List<PlayerSample> sample = new ArrayList<>(players.sample().size());
+            for (PlayerSample player : players.sample()) {
+                sample.add(samples.intern(player));
+            }
+            players = new PlayersInfo(players.max(), players.online(), List.copyOf(sample));
+        }
+        return new StatusResponse(
+                servers.intern(status.server()),
+                versions.intern(status.version()),
+                players,
+                strings.intern(status.description()));
+    }
+
+    /** Ограниченная таблица канонических экземпляров, при переполнении очищается целиком. */
+    private static final class Interner<T> {
+        private final ConcurrentHashMap<T, T> values = new ConcurrentHashMap<>();
+
+        T intern(T value) {
+            if (value == null) {
+                return null;
+            }
+            T existing = values.putIfAbsent(value, value);
+            if (existing != null) {
+                return existing;
+            }
+            if (values.size() > MAX_INTERNED) {
+                values.clear();
+            }
+            return value;
+        }
+    }
+
+    /** Пропускает данные насквозь, запоминая первые {@link #SNIPPET_BYTES} байт. */
+    private static final class SnippetInputStream extends FilterInputStream {
+        private final byte[] head = new byte[SNIPPET_BYTES];
+        private int headLength;
+
+        private SnippetInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && headLength < head.length) {
+                head[headLength++] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0 && headLength < head.length) {
+                int copy = Math.min(n, head.length - headLength);
+                System.arraycopy(b, off, head, headLength, copy);
+                headLength += copy;
+            }
+            return n;
+        }
+
+        private String snippet() {
+            return new String(head, 0, headLength, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package com.lndkrsnv.minecraftcontrolbot.service;
 
 import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusSnapshot;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+
 @Component
 public class StatusFormatter {
 
+    public String format(StatusSnapshot snapshot) {
+        String text = format(snapshot.response());
+        long ageSeconds = snapshot.ageMillis(System.currentTimeMillis()) / 1000;
+        if (ageSeconds > 0) {
+            text += "\n\nОбновлено " + ageSeconds + " сек. назад";
+        }
+        return text;
+    }
+
     public String format(StatusResponse s) {
         String statusStr = "🟢 Онлайн";
         String version = (s.version() != null && s.version().name() != null) ? s.version().name() : "неизвестна";
@@ -35,4 +47,88 @@ public class StatusFormatter {
 
         return sb.toString().trim();
     }
+
+    /** Пометка о состоянии автомата отключения, пустая строка если сервер считается доступным. */
+    public String formatBreaker(CircuitBreaker breaker) {
+        return switch (breaker.state()) {
+            case CLOSED -> "";
+            case HALF_OPEN -> "\n\n⚠️ Сервер не отвечал, идёт проверка доступности";
+            case OPEN -> "\n\n⚠️ Сервер не отвечает, команды к нему не отправляются. Следующая проверка через "
+                    + breaker.secondsUntilProbe() + " сек.";
+        };
+    }
+
+    public String formatAll(Map<String, StatusClient.FetchResult> results) {
+        StringBuilder sb = new StringBuilder("Статус серверов:\n");
+        results.forEach((serverId, result) -> {
+            sb.append(serverId).append(": ");
+            if (result.snapshot() != null) {
+                var s = result.snapshot().response();
+                int online = s.players() != null ? s.players().online() : 0;
+                int max = s.players() != null ? s.players().max() : 0;
+                sb.append("🟢 ").append(online);
+                if (max > 0) sb.append("/").append(max);
+                sb.append(" игроков");
+                if (s.version() != null && s.version().name() != null) {
+                    sb.append(", ").append(s.version().name());
+                }
+            } else if (result.error() != null) {
+                sb.append("🔴 ").append(result.error());
+            } else {
+                sb.append("❔ неизвестно, нет ответа");
+            }
+            sb.append("\n");
+        });
+        return sb.toString().trim();
+    }
+
+    private static final char[] SPARKS = {'▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+    private static final double MAX_TPS = 20;
+
+    /** История игроков и TPS: по строке со спарклайном и мин/ср/макс на каждое окно. */
+    public String formatHistory(String title, HistorySampler.ServerHistory history, long now) {
+        StringBuilder sb = new StringBuilder("📈 ").append(title).append("\n");
+        var players = history.players(now);
+        var tps = history.tps(now);
+        if (players.stream().allMatch(RollingSeries.Summary::isEmpty) && tps.stream().allMatch(RollingSeries.Summary::isEmpty)) {
+            return sb.append("\nДанных пока нет").toString();
+        }
+        if (!players.stream().allMatch(RollingSeries.Summary::isEmpty)) {
+            sb.append("\nИгроки\n");
+            for (var summary : players) {
+                appendSeries(sb, summary, 0, "%.0f");
+            }
+        }
+        if (!tps.stream().allMatch(RollingSeries.Summary::isEmpty)) {
+            sb.append("\nTPS\n");
+            for (var summary : tps) {
+                appendSeries(sb, summary, MAX_TPS, "%.1f");
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * @param scaleMax верх шкалы спарклайна; если 0, берётся максимум за окно
+     */
+    private static void appendSeries(StringBuilder sb, RollingSeries.Summary summary, double scaleMax, String number) {
+        sb.append(String.format("%-3s ", summary.window().toHours() + "ч"));
+        if (summary.isEmpty()) {
+            sb.append("нет данных\n");
+            return;
+        }
+        double top = scaleMax > 0 ? scaleMax : Math.max(summary.max(), 1);
+        for (double value : summary.buckets()) {
+            if (Double.isNaN(value)) {
+                sb.append('·');
+            } else {
+                int level = (int) Math.round(Math.clamp(value / top, 0, 1) * (SPARKS.length - 1));
+                sb.append(SPARKS[level]);
+            }
+        }
+        sb.append("  мин ").append(String.format(number, summary.min()))
+                .append(" / ср ").append(String.format(number, summary.avg()))
+                .append(" / макс ").append(String.format(number, summary.max()))
+                .append("\n");
+    }
 }
@@ -0,0 +1,246 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+import com.lndkrsnv.minecraftcontrolbot.state.LeaderElection;
+import com.lndkrsnv.minecraftcontrolbot.state.LeadershipChangedEvent;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusSnapshot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Периодически опрашивает все серверы реестра с настроенным статусом, хранит последний снимок
+ * и публикует {@link StatusChangedEvent} при изменениях. Серверы, добавленные при перезагрузке
+ * реестра, начинают опрашиваться сразу, удалённые выпадают из опроса на следующем цикле.
+ * <p>
+ * Интервал каждого сервера случайно сдвигается на {@code jitter}, чтобы опросы не шли пачкой,
+ * а для недоступного сервера удваивается после каждой неудачи вплоть до {@code maxBackoff}.
+ * <p>
+ * Опрос идёт только на ведущем экземпляре бота, см. {@link LeaderElection}.
+ */
+@Service
+public class StatusPoller {
+    private static final Logger log = LoggerFactory.getLogger(StatusPoller.class);
+
+    private final StatusProperties props;
+    private final StatusClient statusClient;
+    private final ServerRegistry registry;
+    private final ApplicationEventPublisher events;
+    private final LeaderElection election;
+    private final ConcurrentHashMap<String, PolledStatus> current = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> failures = new ConcurrentHashMap<>();
+    private final Set<String> polling = ConcurrentHashMap.newKeySet();
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param snapshot  последний успешный ответ, {@code null} если сервер ещё ни разу не ответил
+     * @param online    ответил ли сервер при последнем опросе
+     * @param error     текст ошибки последнего опроса
+     * @param checkedAt время последнего опроса
+     */
+    public record PolledStatus(StatusSnapshot snapshot, boolean online, String error, long checkedAt) {}
+
+    public StatusPoller(StatusProperties props, StatusClient statusClient, ServerRegistry registry,
+                        ApplicationEventPublisher events, LeaderElection election) {
+        this.props = props;
+        this.statusClient = statusClient;
+        this.registry = registry;
+        this.events = events;
+        this.election = election;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (election.isLeader()) {
+            start();
+        }
+    }
+
+    @EventListener
+    public void onLeadershipChanged(LeadershipChangedEvent event) {
+        if (election.isLeader()) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    public synchronized void start() {
+        if (!props.poll().enabled() || scheduler != null) {
+            return;
+        }
+        List<ServerHandle> servers = registry.withStatus();
+        AtomicInteger counter = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(Math.max(2, servers.size()), r -> {
+            Thread t = new Thread(r, "status-poller-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (ServerHandle server : servers) {
+            schedule(server.id());
+        }
+        log.info("Status poller started for servers={}", servers);
+    }
+
+    @EventListener
+    public void onServersReloaded(ServersReloadedEvent event) {
+        for (String serverId : event.removed()) {
+            current.remove(serverId);
+            failures.remove(serverId);
+        }
+        if (scheduler == null) {
+            return;
+        }
+        for (String serverId : event.added()) {
+            ServerHandle server = registry.get(serverId);
+            if (server != null && server.hasStatus()) {
+                schedule(serverId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            polling.clear();
+            // Снимки ведомого устаревают, иначе после возврата роли пришли бы ложные уведомления
+            current.clear();
+            failures.clear();
+        }
+    }
+
+    public boolean enabled() {
+        return scheduler != null;
+    }
+
+    /** Последний результат опроса или {@code null}, если сервер ещё не опрашивался. */
+    public PolledStatus current(String serverId) {
+        return current.get(serverId);
+    }
+
+    private void schedule(String serverId) {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null || !polling.add(serverId)) {
+            return;
+        }
+        executor.schedule(() -> poll(serverId, executor), jittered(props.poll().interval().toMillis()) / 2, TimeUnit.MILLISECONDS);
+    }
+
+    /** @param executor планировщик, в котором начат цикл опроса; после остановки цикл не продолжается */
+    private void poll(String serverId, ScheduledExecutorService executor) {
+        // Сервер мог исчезнуть или потерять статус после перезагрузки реестра
+        ServerHandle server = registry.get(serverId);
+        if (server == null || !server.hasStatus()) {
+            polling.remove(serverId);
+            current.remove(serverId);
+            failures.remove(serverId);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        PolledStatus previous = current.get(serverId);
+        PolledStatus next;
+        try {
+            next = new PolledStatus(new StatusSnapshot(statusClient.fetchStatus(server), now), true, null, now);
+            failures.remove(serverId);
+        } catch (Exception e) {
+            log.debug("Status poll failed for serverId={}", serverId, e);
+            StatusSnapshot last = previous != null ? previous.snapshot() : null;
+            next = new PolledStatus(last, false, e.getMessage(), now);
+            failures.merge(serverId, 1, Integer::sum);
+        }
+        current.put(serverId, next);
+
+        try {
+            if (previous != null) {
+                List<String> changes = diff(previous, next);
+                if (!changes.isEmpty()) {
+                    events.publishEvent(new StatusChangedEvent(serverId, changes));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Исключение из задачи планировщик молча проглотил бы вместе со всеми следующими опросами
+            log.error("Failed to publish status changes for serverId={}", serverId, e);
+        } finally {
+            if (!executor.isShutdown()) {
+                executor.schedule(() -> poll(serverId, executor), nextDelayMillis(serverId), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private long nextDelayMillis(String serverId) {
+        long interval = props.poll().interval().toMillis();
+        int failed = failures.getOrDefault(serverId, 0);
+        if (failed > 0) {
+            interval = Math.min(interval << Math.min(failed, 16), props.poll().maxBackoff().toMillis());
+        }
+        return jittered(interval);
+    }
+
+    private long jittered(long millis) {
+        double jitter = props.poll().jitter();
+        return (long) (millis * (1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter)));
+    }
+
+    private static List<String> diff(PolledStatus previous, PolledStatus next) {
+        List<String> changes = new ArrayList<>();
+        if (previous.online() && !next.online()) {
+            changes.add("🔴 Сервер недоступен");
+            return changes;
+        }
+        if (!previous.online() && next.online()) {
+            changes.add("🟢 Сервер снова онлайн");
+        }
+        if (!next.online() || previous.snapshot() == null) {
+            return changes;
+        }
+
+        StatusResponse before = previous.snapshot().response();
+        StatusResponse after = next.snapshot().response();
+
+        String versionBefore = before.version() != null ? before.version().name() : null;
+        String versionAfter = after.version() != null ? after.version().name() : null;
+        if (!Objects.equals(versionBefore, versionAfter)) {
+            changes.add("Версия: " + versionBefore + " → " + versionAfter);
+        }
+
+        Set<String> playersBefore = playerNames(before);
+        Set<String> playersAfter = playerNames(after);
+        for (String name : playersAfter) {
+            if (!playersBefore.contains(name)) changes.add("➕ " + name + " зашёл на сервер");
+        }
+        for (String name : playersBefore) {
+            if (!playersAfter.contains(name)) changes.add("➖ " + name + " вышел с сервера");
+        }
+        return changes;
+    }
+
+    private static Set<String> playerNames(StatusResponse s) {
+        Set<String> names = new LinkedHashSet<>();
+        if (s.players() != null && s.players().sample() != null) {
+            for (PlayerSample p : s.players().sample()) {
+                names.add(p.name());
+            }
+        }
+        return names;
+    }
+}
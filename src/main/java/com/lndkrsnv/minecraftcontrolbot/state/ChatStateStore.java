@@ -0,0 +1,238 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Состояние чатов: выбранный сервер, подписки, ограничения частоты команд, ожидающие действия
+ * и открытые клавиатуры выбора сервера, а также служебные значения бота, например хеш
+ * зарегистрированных команд.
+ * <p>
+ * Обработчики только сообщают об изменениях, хранит их {@link StateBackend}: журнал
+ * {@code bot.persistence.file} или память процесса, если файл не задан. Несколько экземпляров
+ * бота делят один журнал на общем томе: пишет только ведущий, а новый ведущий перед началом
+ * работы перечитывает состояние через {@link #reload()}. Изменения ведомого отбрасываются,
+ * остальные уходят в хранилище вслед за записью {@code FENCE} с номером аренды ведущего
+ * ({@link LeaderElection#epoch()}), при котором они сделаны.
+ */
+@Component
+public class ChatStateStore {
+    private static final Logger log = LoggerFactory.getLogger(ChatStateStore.class);
+
+    static final byte SELECT_SERVER = 1;
+    // 2 и 3 не используются и не должны выдаваться новым типам записей
+    static final byte PENDING_SET = 4;
+    static final byte PENDING_CLEARED = 5;
+    static final byte SUBSCRIBED = 6;
+    static final byte UNSUBSCRIBED = 7;
+    static final byte SETTING = 8;
+    static final byte LIMIT_USED = 9;
+    static final byte LIMIT_CLEARED = 10;
+    static final byte PICKER_SHOWN = 11;
+    static final byte PICKER_CLEARED = 12;
+    // Номер аренды ведущего, от имени которого сделаны следующие записи; на состояние не влияет
+    static final byte FENCE = 13;
+    static final byte SELECT_CLEARED = 14;
+
+    private final StateBackend backend;
+    private final LongSupplier fence;
+    private volatile Snapshot loaded;
+    private volatile long fencedEpoch;
+
+    @Autowired
+    public ChatStateStore(BotProperties botProps, LeaderElection election) {
+        this(backendFor(botProps.persistence(), election::epoch), election::epoch);
+    }
+
+    /** @param fence номер аренды ведущего или 0, если экземпляр не ведущий */
+    ChatStateStore(StateBackend backend, LongSupplier fence) {
+        this.backend = backend;
+        this.fence = fence;
+        this.loaded = backend.load();
+    }
+
+    private static StateBackend backendFor(BotProperties.Persistence config, LongSupplier fence) {
+        if (config.file() == null || config.file().isBlank()) {
+            return new InMemoryStateBackend();
+        }
+        return new JournalStateBackend(config, fence);
+    }
+
+    /** Состояние, прочитанное при запуске или последнем {@link #reload()}. */
+    public Snapshot loaded() {
+        return loaded;
+    }
+
+    /** Перечитывает состояние из хранилища вместе с изменениями других экземпляров бота. */
+    public Snapshot reload() {
+        loaded = backend.load();
+        return loaded;
+    }
+
+    public void serverSelected(long chatId, String serverId) {
+        append(new Op(SELECT_SERVER, chatId, serverId, 0, 0));
+    }
+
+    public void serverCleared(long chatId) {
+        append(new Op(SELECT_CLEARED, chatId, null, 0, 0));
+    }
+
+    /** @param expiresAt когда вызов выходит из окна ограничения; после этого запись не попадает в снимок */
+    public void limitUsed(String key, long usedAt, long expiresAt) {
+        append(new Op(LIMIT_USED, 0, key, usedAt, expiresAt));
+    }
+
+    public void limitCleared(String key) {
+        append(new Op(LIMIT_CLEARED, 0, key, 0, 0));
+    }
+
+    public void pendingSet(long chatId, String action, long userId, long createdAt) {
+        append(new Op(PENDING_SET, chatId, action, userId, createdAt));
+    }
+
+    public void pendingCleared(long chatId) {
+        append(new Op(PENDING_CLEARED, chatId, null, 0, 0));
+    }
+
+    public void pickerShown(int messageId, long chatId, long ownerUserId, long createdAt) {
+        append(new Op(PICKER_SHOWN, chatId, String.valueOf(messageId), ownerUserId, createdAt));
+    }
+
+    public void pickerCleared(int messageId) {
+        append(new Op(PICKER_CLEARED, 0, String.valueOf(messageId), 0, 0));
+    }
+
+    public void subscribed(String serverId, long chatId) {
+        append(new Op(SUBSCRIBED, chatId, serverId, 0, 0));
+    }
+
+    public void unsubscribed(String serverId, long chatId) {
+        append(new Op(UNSUBSCRIBED, chatId, serverId, 0, 0));
+    }
+
+    /** Сохраняет служебное значение, прочитать его можно из {@link Snapshot#settings()} после перезапуска. */
+    public void settingSaved(String name, long value) {
+        append(new Op(SETTING, 0, name, value, 0));
+    }
+
+    /** Включён ли журнал; без него ничего не переживает перезапуск. */
+    public boolean persistent() {
+        return backend.persistent();
+    }
+
+    @PreDestroy
+    public void close() {
+        backend.close();
+    }
+
+    private void append(Op op) {
+        long epoch = fence.getAsLong();
+        if (epoch == 0) {
+            return;
+        }
+        if (epoch != fencedEpoch) {
+            synchronized (this) {
+                if (epoch != fencedEpoch) {
+                    backend.append(new Op(FENCE, 0, null, epoch, 0));
+                    fencedEpoch = epoch;
+                }
+            }
+        }
+        backend.append(op);
+    }
+
+    /**
+     * @param selectedServers выбранный сервер по чату
+     * @param limits          время последнего вызова по ключу ограничения частоты команд
+     * @param pending         ожидающие действия по чату
+     * @param subscribers     подписанные чаты по серверу
+     * @param settings        служебные значения по имени
+     * @param pickers         открытые клавиатуры выбора сервера по идентификатору сообщения
+     */
+    public record Snapshot(Map<Long, String> selectedServers, Map<String, Long> limits,
+                           Map<Long, PendingState> pending, Map<String, Set<Long>> subscribers,
+                           Map<String, Long> settings, Map<Integer, PickerState> pickers) {}
+
+    public record PendingState(String action, long userId, long createdAt) {}
+
+    public record PickerState(long chatId, long ownerUserId, long createdAt) {}
+
+    /** Запись журнала, смысл полей зависит от типа. */
+    record Op(byte type, long chatId, String key, long a, long b) {}
+
+    private record LimitUse(long usedAt, long expiresAt) {}
+
+    /** Состояние, собранное из записей; используется хранилищами из одного потока. */
+    static final class State {
+        private final Map<Long, String> selectedServers = new HashMap<>();
+        private final Map<String, LimitUse> limits = new HashMap<>();
+        private final Map<Long, PendingState> pending = new HashMap<>();
+        private final Map<String, Set<Long>> subscribers = new HashMap<>();
+        private final Map<String, Long> settings = new HashMap<>();
+        private final Map<Integer, PickerState> pickers = new HashMap<>();
+
+        void apply(Op op) {
+            switch (op.type()) {
+                case SELECT_SERVER -> selectedServers.put(op.chatId(), op.key());
+                case SELECT_CLEARED -> selectedServers.remove(op.chatId());
+                case LIMIT_USED -> limits.put(op.key(), new LimitUse(op.a(), op.b()));
+                case LIMIT_CLEARED -> limits.remove(op.key());
+                case PENDING_SET -> pending.put(op.chatId(), new PendingState(op.key(), op.a(), op.b()));
+                case PENDING_CLEARED -> pending.remove(op.chatId());
+                case SUBSCRIBED -> subscribers.computeIfAbsent(op.key(), k -> new HashSet<>()).add(op.chatId());
+                case UNSUBSCRIBED -> {
+                    Set<Long> chats = subscribers.get(op.key());
+                    if (chats != null && chats.remove(op.chatId()) && chats.isEmpty()) {
+                        subscribers.remove(op.key());
+                    }
+                }
+                case SETTING -> settings.put(op.key(), op.a());
+                case PICKER_SHOWN -> pickers.put(Integer.valueOf(op.key()), new PickerState(op.chatId(), op.a(), op.b()));
+                case PICKER_CLEARED -> pickers.remove(Integer.valueOf(op.key()));
+                case FENCE -> {}
+                default -> log.warn("Unknown chat state record type {}", op.type());
+            }
+        }
+
+        /** Убирает вызовы, вышедшие из окна ограничения. */
+        void pruneLimits(long now) {
+            limits.entrySet().removeIf(e -> e.getValue().expiresAt() <= now);
+        }
+
+        List<Op> toOps() {
+            List<Op> ops = new ArrayList<>(selectedServers.size() + limits.size() + pending.size());
+            selectedServers.forEach((chatId, serverId) -> ops.add(new Op(SELECT_SERVER, chatId, serverId, 0, 0)));
+            // Вызовы, вышедшие из окна, в снимок не попадают
+            pruneLimits(System.currentTimeMillis());
+            limits.forEach((key, use) -> ops.add(new Op(LIMIT_USED, 0, key, use.usedAt(), use.expiresAt())));
+            pending.forEach((chatId, p) -> ops.add(new Op(PENDING_SET, chatId, p.action(), p.userId(), p.createdAt())));
+            subscribers.forEach((serverId, chats) -> chats.forEach(chatId -> ops.add(new Op(SUBSCRIBED, chatId, serverId, 0, 0))));
+            settings.forEach((name, value) -> ops.add(new Op(SETTING, 0, name, value, 0)));
+            pickers.forEach((messageId, p) -> ops.add(
+                    new Op(PICKER_SHOWN, p.chatId(), String.valueOf(messageId), p.ownerUserId(), p.createdAt())));
+            return ops;
+        }
+
+        Snapshot snapshot() {
+            Map<String, Set<Long>> subs = new HashMap<>();
+            subscribers.forEach((serverId, chats) -> subs.put(serverId, Set.copyOf(chats)));
+            Map<String, Long> usedAt = new HashMap<>();
+            limits.forEach((key, use) -> usedAt.put(key, use.usedAt()));
+            return new Snapshot(Map.copyOf(selectedServers), Map.copyOf(usedAt),
+                    Map.copyOf(pending), Collections.unmodifiableMap(subs), Map.copyOf(settings), Map.copyOf(pickers));
+        }
+    }
+}
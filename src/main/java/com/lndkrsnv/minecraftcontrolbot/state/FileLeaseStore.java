@@ -0,0 +1,105 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Аренды в файлах общего каталога, по файлу {@code <name>.lease} на аренду. Файл содержит
+ * владельца, время окончания и номер аренды и меняется под блокировкой файла, поэтому аренду
+ * одновременно может взять только один процесс. Сроки сравниваются по системным часам,
+ * так что часы экземпляров должны быть синхронизированы с точностью много меньше срока аренды.
+ */
+public final class FileLeaseStore implements LeaseStore {
+    private final Path dir;
+
+    public FileLeaseStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось создать каталог аренд " + dir, e);
+        }
+    }
+
+    @Override
+    public long tryAcquire(String name, String owner, Duration ttl) {
+        try (FileChannel channel = open(name); FileLock ignored = channel.lock()) {
+            long now = System.currentTimeMillis();
+            String[] lease = read(channel);
+            boolean held = lease != null && Long.parseLong(lease[1]) > now;
+            if (held && !lease[0].equals(owner)) {
+                return 0;
+            }
+            long epoch = held ? epoch(lease) : (lease == null ? 0 : epoch(lease)) + 1;
+            write(channel, owner + "\n" + (now + ttl.toMillis()) + "\n" + epoch);
+            return epoch;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to acquire lease " + name, e);
+        }
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        try (FileChannel channel = open(name); FileLock ignored = channel.lock()) {
+            String[] lease = read(channel);
+            if (lease != null && lease[0].equals(owner)) {
+                // Без владельца и с истёкшим сроком, но с прежним номером
+                write(channel, "\n0\n" + epoch(lease));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to release lease " + name, e);
+        }
+    }
+
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(dir.resolve(name + ".lease"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Повреждённый файл не считается свободной арендой: иначе номер начался бы заново с 1
+     * и оказался бы меньше номера, которым уже помечен журнал состояния.
+     *
+     * @return владелец, время окончания и номер аренды или {@code null}, если аренду ещё никто не брал
+     */
+    private String[] read(FileChannel channel) throws IOException {
+        if (channel.size() == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+        channel.read(buffer, 0);
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        String[] lease = content.split("\n");
+        if (lease.length == 3 && isNumber(lease[1]) && isNumber(lease[2])) {
+            return lease;
+        }
+        throw new IllegalStateException("Файл аренды в " + dir + " повреждён: " + content.replace('\n', ' '));
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static long epoch(String[] lease) {
+        return Long.parseLong(lease[2]);
+    }
+
+    private static void write(FileChannel channel, String content) throws IOException {
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), 0);
+        channel.force(false);
+    }
+}
@@ -0,0 +1,37 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Аренды в памяти процесса: для одного экземпляра бота или как общее хранилище
+ * нескольких {@link LeaderElection} внутри одного процесса в тестах.
+ */
+public final class InMemoryLeaseStore implements LeaseStore {
+    /** @param expiresAt 0 у отпущенной аренды */
+    private record Lease(String owner, long expiresAt, long epoch) {}
+
+    private final Map<String, Lease> leases = new HashMap<>();
+
+    @Override
+    public synchronized long tryAcquire(String name, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.get(name);
+        boolean held = lease != null && lease.expiresAt() > now;
+        if (held && !lease.owner().equals(owner)) {
+            return 0;
+        }
+        long epoch = held ? lease.epoch() : (lease == null ? 0 : lease.epoch()) + 1;
+        leases.put(name, new Lease(owner, now + ttl.toMillis(), epoch));
+        return epoch;
+    }
+
+    @Override
+    public synchronized void release(String name, String owner) {
+        Lease lease = leases.get(name);
+        if (lease != null && lease.owner().equals(owner)) {
+            leases.put(name, new Lease(owner, 0, lease.epoch()));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+/**
+ * Состояние в памяти процесса. Один экземпляр можно отдать нескольким {@link ChatStateStore},
+ * тогда он играет роль общего хранилища, например в тестах переключения ведущего.
+ */
+final class InMemoryStateBackend implements StateBackend {
+    private static final int PRUNE_EVERY = 1024;
+
+    private final ChatStateStore.State state = new ChatStateStore.State();
+    private int appended;
+
+    @Override
+    public synchronized ChatStateStore.Snapshot load() {
+        state.pruneLimits(System.currentTimeMillis());
+        return state.snapshot();
+    }
+
+    @Override
+    public synchronized void append(ChatStateStore.Op op) {
+        state.apply(op);
+        // Без сжатия журнала истёкшие ограничения убираются здесь
+        if (++appended % PRUNE_EVERY == 0) {
+            state.pruneLimits(System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,384 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Состояние чатов в файле журнала.
+ * <p>
+ * Изменения пишутся в конец файла отдельным потоком, обработчики только кладут их в очередь.
+ * Каждая запись снабжена длиной и контрольной суммой, поэтому недописанный при падении хвост
+ * отбрасывается при загрузке. Когда журнал вырастает больше {@code compactAfterBytes} и вдвое
+ * больше живого состояния, он атомарно заменяется снимком, так что время загрузки зависит
+ * только от текущего состояния, а не от истории изменений.
+ * <p>
+ * Файл на общем томе может служить общим хранилищем нескольких экземпляров бота.
+ * {@link #load()} только читает файл: недописанный хвост мог оставить ведущий посреди записи,
+ * поэтому при чтении он пропускается, но не обрезается. Пишет только экземпляр, у которого
+ * {@code fence} отдаёт номер аренды. Начиная запись с новым номером, он перечитывает журнал
+ * и заменяет его снимком, первая запись которого {@code FENCE} с этим номером: прежний ведущий
+ * после переименования пишет в уже удалённый файл и не портит журнал, а недописанный хвост
+ * исчезает вместе со старым файлом. Записи, сделанные от имени другого номера, и записи,
+ * пришедшие после потери роли, отбрасываются.
+ */
+final class JournalStateBackend implements StateBackend {
+    private static final Logger log = LoggerFactory.getLogger(ChatStateStore.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final ChatStateStore.Op CLOSE = new ChatStateStore.Op((byte) 0, 0, null, 0, 0);
+
+    private final Path file;
+    private final BotProperties.Persistence config;
+    private final LongSupplier fence;
+    private final LinkedBlockingQueue<ChatStateStore.Op> queue = new LinkedBlockingQueue<>();
+    private Thread writer;
+
+    // Поля ниже принадлежат потоку записи
+    private ChatStateStore.State mirror = new ChatStateStore.State();
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+    private FileChannel channel;
+    /** Номер аренды, от имени которого пишется журнал, 0 — файл не открыт на запись. */
+    private long writingEpoch;
+    /** Номер из последней записи {@code FENCE} в очереди: от его имени сделаны следующие записи. */
+    private long queuedEpoch;
+    private long logBytes;
+    private long compactAt;
+    private long forcedAt;
+
+    /** @param fence номер аренды ведущего или 0, если экземпляр не ведущий и писать не должен */
+    JournalStateBackend(BotProperties.Persistence config, LongSupplier fence) {
+        this.config = config;
+        this.fence = fence;
+        this.file = Path.of(config.file());
+    }
+
+    /** Читает файл в вызывающем потоке; первый вызов к тому же запускает поток записи. */
+    @Override
+    public ChatStateStore.Snapshot load() {
+        long started = System.nanoTime();
+        ChatStateStore.State state = new ChatStateStore.State();
+        Scan scan;
+        try {
+            scan = scan(state);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать журнал состояния " + file, e);
+        }
+        if (scan.torn()) {
+            log.warn("Chat state log {} has a torn tail of {} bytes, skipping it", file, scan.size() - scan.valid());
+        }
+        ChatStateStore.Snapshot snapshot = state.snapshot();
+        log.info("Chat state loaded from {} in {} ms: {} selected servers, {} cooldowns, {} pending actions",
+                file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                snapshot.selectedServers().size(), snapshot.limits().size(), snapshot.pending().size());
+        startWriter();
+        return snapshot;
+    }
+
+    @Override
+    public void append(ChatStateStore.Op op) {
+        queue.add(op);
+    }
+
+    @Override
+    public boolean persistent() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writer;
+        }
+        if (thread == null) {
+            return;
+        }
+        queue.add(CLOSE);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new Thread(this::runWriter, "chat-state-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * @param valid длина корректной части журнала
+     * @param size  длина файла
+     * @param epoch номер из последней записи {@code FENCE} или 0
+     */
+    private record Scan(long valid, long size, long epoch) {
+        boolean torn() {
+            return size > valid;
+        }
+    }
+
+    /** Читает корректную часть журнала в {@code state}. */
+    private Scan scan(ChatStateStore.State state) throws IOException {
+        if (!Files.exists(file)) {
+            return new Scan(0, 0, 0);
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            CRC32C checksums = new CRC32C();
+            int valid = 0;
+            long epoch = 0;
+            while (map.remaining() >= HEADER_BYTES) {
+                int length = map.getInt();
+                int checksum = map.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || map.remaining() < length) {
+                    break;
+                }
+                ByteBuffer payload = map.slice(map.position(), length);
+                checksums.reset();
+                checksums.update(payload.duplicate());
+                if ((int) checksums.getValue() != checksum) {
+                    break;
+                }
+                ChatStateStore.Op op = decode(payload);
+                if (op.type() == ChatStateStore.FENCE) {
+                    epoch = op.a();
+                }
+                state.apply(op);
+                map.position(map.position() + length);
+                valid = map.position();
+            }
+            return new Scan(valid, map.capacity(), epoch);
+        }
+    }
+
+    private void runWriter() {
+        long flushNanos = config.flushInterval().toNanos();
+        forcedAt = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            ChatStateStore.Op op;
+            try {
+                op = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                op = CLOSE;
+            }
+            try {
+                long epoch = fence.getAsLong();
+                if (epoch != writingEpoch) {
+                    if (dirty) {
+                        channel.force(false);
+                        dirty = false;
+                    }
+                    stopWriting();
+                    if (epoch != 0) {
+                        startWriting(epoch);
+                    }
+                }
+                boolean closing = false;
+                buffer.clear();
+                while (op != null) {
+                    if (op == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    if (op.type() == ChatStateStore.FENCE) {
+                        queuedEpoch = op.a();
+                    } else if (writingEpoch != 0 && queuedEpoch == writingEpoch) {
+                        mirror.apply(op);
+                        encode(op);
+                    }
+                    op = queue.poll();
+                }
+                boolean written = buffer.position() > 0;
+                if (written) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        logBytes += channel.write(buffer);
+                    }
+                    dirty = true;
+                }
+                if (dirty && (closing || System.nanoTime() - forcedAt >= flushNanos)) {
+                    channel.force(false);
+                    forcedAt = System.nanoTime();
+                    dirty = false;
+                }
+                if (written && logBytes > compactAt) {
+                    try {
+                        compact(writingEpoch);
+                    } catch (IOException e) {
+                        // Журнал остаётся прежним и продолжает расти, следующая попытка — после удвоения
+                        compactAt = logBytes * 2;
+                        log.warn("Failed to compact chat state log {}, keeping the full log", file, e);
+                    }
+                }
+                if (closing) {
+                    stopWriting();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to write chat state log {}", file, e);
+                if (op == CLOSE) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Начинает запись от имени номера аренды {@code epoch}. Журнал перечитывается: пока писал
+     * прежний ведущий, в нём появились чужие записи. Если журнал начат с другим номером или
+     * у него недописанный хвост, он заменяется снимком.
+     */
+    private void startWriting(long epoch) throws IOException {
+        mirror = new ChatStateStore.State();
+        Scan scan = scan(mirror);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (scan.epoch() == epoch && !scan.torn()) {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.position(scan.valid());
+            logBytes = scan.valid();
+            compactAt = config.compactAfterBytes();
+        } else {
+            logBytes = scan.size();
+            try {
+                compact(epoch);
+            } catch (IOException e) {
+                if (fence.getAsLong() != epoch) {
+                    throw e;
+                }
+                // Без снимка журнал продолжается на месте; обрезать хвост может только ведущий
+                log.warn("Failed to compact chat state log {} for epoch {}, appending to it in place", file, epoch, e);
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (scan.torn()) {
+                    channel.truncate(scan.valid());
+                }
+                channel.position(scan.valid());
+                buffer.clear();
+                encode(new ChatStateStore.Op(ChatStateStore.FENCE, 0, null, epoch, 0));
+                logBytes = scan.valid() + drainTo(channel);
+                compactAt = Math.max(config.compactAfterBytes(), logBytes * 2);
+            }
+        }
+        writingEpoch = epoch;
+        log.info("Writing chat state log {} for epoch {}", file, epoch);
+    }
+
+    private void stopWriting() throws IOException {
+        writingEpoch = 0;
+        if (channel != null) {
+            FileChannel previous = channel;
+            channel = null;
+            previous.close();
+        }
+    }
+
+    private void compact(long epoch) throws IOException {
+        long started = System.nanoTime();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long written = 0;
+        // Снимок пишется в канал, который после переименования станет каналом журнала; до успешного
+        // переименования записи идут в старый журнал, так что сбой сжатия ничего не теряет
+        FileChannel next = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            buffer.clear();
+            encode(new ChatStateStore.Op(ChatStateStore.FENCE, 0, null, epoch, 0));
+            for (ChatStateStore.Op op : mirror.toOps()) {
+                encode(op);
+                if (buffer.position() > 64 * 1024) {
+                    written += drainTo(next);
+                }
+            }
+            written += drainTo(next);
+            next.force(true);
+            // Пока писался снимок, журналом мог завладеть другой ведущий
+            if (fence.getAsLong() != epoch) {
+                throw new IOException("Leadership epoch " + epoch + " is over, not replacing the log");
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            next.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        FileChannel previous = channel;
+        channel = next;
+        if (previous != null) {
+            previous.close();
+        }
+        log.info("Compacted chat state log {} from {} to {} bytes in {} ms", file, logBytes, written,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        logBytes = written;
+        compactAt = Math.max(config.compactAfterBytes(), written * 2);
+    }
+
+    private long drainTo(FileChannel out) throws IOException {
+        long written = 0;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private void encode(ChatStateStore.Op op) {
+        byte[] key = op.key() == null ? null : op.key().getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Long.BYTES + Short.BYTES + (key == null ? 0 : key.length) + 2 * Long.BYTES;
+        if (buffer.remaining() < HEADER_BYTES + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + HEADER_BYTES + length));
+            grown.put(buffer.flip());
+            buffer = grown;
+        }
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(op.type());
+        buffer.putLong(op.chatId());
+        buffer.putShort((short) (key == null ? -1 : key.length));
+        if (key != null) {
+            buffer.put(key);
+        }
+        buffer.putLong(op.a());
+        buffer.putLong(op.b());
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, length));
+        buffer.putInt(start, length);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    private static ChatStateStore.Op decode(ByteBuffer payload) {
+        byte type = payload.get();
+        long chatId = payload.getLong();
+        short keyLength = payload.getShort();
+        String key = null;
+        if (keyLength >= 0) {
+            byte[] bytes = new byte[keyLength];
+            payload.get(bytes);
+            key = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new ChatStateStore.Op(type, chatId, key, payload.getLong(), payload.getLong());
+    }
+}
@@ -0,0 +1,177 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выбор ведущего экземпляра бота по аренде в {@link LeaseStore}.
+ * <p>
+ * Ведущий продлевает аренду каждую треть {@code leaseTtl}, остальные с той же частотой пытаются
+ * её забрать. Если продлить аренду не удаётся дольше двух третей срока, экземпляр сам перестаёт
+ * быть ведущим раньше, чем аренду сможет забрать другой, так что два ведущих одновременно
+ * не работают. При остановке аренда отпускается, и другой экземпляр забирает её на следующей
+ * попытке. Смена роли публикуется как {@link LeadershipChangedEvent} в отдельном потоке,
+ * чтобы долгая обработка не задерживала продление аренды.
+ * <p>
+ * Каждый срок ведущего отмечен номером аренды {@link #epoch()}. Записи в общее состояние
+ * делаются от имени этого номера, так что прежний ведущий, не заметивший потерю роли,
+ * не может испортить записи нового.
+ * <p>
+ * Без {@code bot.cluster.enabled} экземпляр всегда ведущий с номером 1.
+ */
+@Component
+public class LeaderElection {
+    private static final Logger log = LoggerFactory.getLogger(LeaderElection.class);
+    static final String LEASE = "leader";
+
+    private final BotProperties.Cluster config;
+    private final LeaseStore leases;
+    private final ApplicationEventPublisher events;
+    private final long renewMillis;
+    /** Номер аренды, пока экземпляр ведущий, иначе 0. */
+    private volatile long epoch;
+    private long validUntil;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService notifier;
+
+    @Autowired
+    public LeaderElection(BotProperties botProps, ApplicationEventPublisher events, MeterRegistry meterRegistry) {
+        this(botProps.cluster(), leaseStoreFor(botProps.cluster()), events, meterRegistry);
+    }
+
+    LeaderElection(BotProperties.Cluster config, LeaseStore leases, ApplicationEventPublisher events, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.leases = leases;
+        this.events = events;
+        this.renewMillis = Math.max(1, config.leaseTtl().toMillis() / 3);
+        // Первая попытка синхронно, чтобы компоненты сразу знали свою роль
+        this.epoch = config.enabled() ? Math.max(0, tryAcquire()) : 1;
+        if (config.enabled()) {
+            log.info("Instance {} started as {}", config.instanceId(), epoch > 0 ? "leader with epoch " + epoch : "follower");
+        }
+        Gauge.builder("bot.cluster.leader", this, e -> e.isLeader() ? 1 : 0)
+                .description("Ведущий ли этот экземпляр бота")
+                .register(meterRegistry);
+    }
+
+    private static LeaseStore leaseStoreFor(BotProperties.Cluster config) {
+        if (!config.enabled()) {
+            return new InMemoryLeaseStore();
+        }
+        if (config.leaseDir() == null || config.leaseDir().isBlank()) {
+            throw new IllegalStateException("Для нескольких экземпляров нужно указать bot.cluster.lease-dir");
+        }
+        return new FileLeaseStore(Path.of(config.leaseDir()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.enabled()) {
+            return;
+        }
+        notifier = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "leader-events");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "leader-election");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::renew, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        notifier.shutdownNow();
+        release();
+    }
+
+    /** Принимает ли этот экземпляр апдейты и выполняет ли фоновые задачи. */
+    public boolean isLeader() {
+        return epoch > 0;
+    }
+
+    /**
+     * Номер аренды текущего срока ведущего. Номер растёт с каждой сменой ведущего, в том числе
+     * когда роль возвращается к этому же экземпляру.
+     *
+     * @return номер аренды или 0, если экземпляр не ведущий
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Отпускает роль ведущего, например если экземпляр не смог начать приём апдейтов. Аренду
+     * сразу может забрать другой экземпляр, а этот снова попробует взять её при следующем продлении.
+     */
+    public synchronized void stepDown() {
+        if (scheduler == null || epoch == 0) {
+            return;
+        }
+        release();
+        log.info("Instance {} stepped down", config.instanceId());
+        notifier.execute(() -> events.publishEvent(new LeadershipChangedEvent(false)));
+    }
+
+    private void release() {
+        if (epoch == 0) {
+            return;
+        }
+        epoch = 0;
+        try {
+            leases.release(LEASE, config.instanceId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to release leadership lease", e);
+        }
+    }
+
+    private synchronized void renew() {
+        long acquired = tryAcquire();
+        long current = epoch;
+        // Недоступное хранилище аренд не снимает роль сразу: ведущий держится, пока аренда заведомо его
+        long next = acquired >= 0 ? acquired : System.nanoTime() - validUntil < 0 ? current : 0;
+        if (next != current) {
+            // Новый номер без перерыва в роли значит, что аренда успела побывать у другого экземпляра:
+            // подписчики видят это как новый срок и перечитывают состояние
+            epoch = next;
+            log.info("Instance {} is now {}", config.instanceId(), next > 0 ? "leader with epoch " + next : "follower");
+            notifier.execute(() -> events.publishEvent(new LeadershipChangedEvent(next > 0)));
+        }
+    }
+
+    /** @return номер аренды, 0, если она у другого экземпляра, или -1, если хранилище аренд недоступно */
+    private long tryAcquire() {
+        long started = System.nanoTime();
+        try {
+            long acquired = leases.tryAcquire(LEASE, config.instanceId(), config.leaseTtl());
+            if (acquired > 0) {
+                validUntil = started + TimeUnit.MILLISECONDS.toNanos(renewMillis * 2);
+            }
+            return acquired;
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew leadership lease: {}", e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+/**
+ * Экземпляр стал ведущим или перестал им быть.
+ *
+ * @param leader ведущий ли экземпляр теперь
+ */
+public record LeadershipChangedEvent(boolean leader) {}
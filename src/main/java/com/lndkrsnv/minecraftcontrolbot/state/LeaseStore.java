@@ -0,0 +1,25 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import java.time.Duration;
+
+/**
+ * Аренды с ограниченным сроком, общие для всех экземпляров бота.
+ */
+public interface LeaseStore {
+    /**
+     * Берёт или продлевает аренду {@code name} на {@code ttl}.
+     * <p>
+     * Номер аренды растёт при каждой смене владельца, в том числе когда аренду заново берёт
+     * прежний владелец после её истечения или освобождения, и не меняется при продлении.
+     * По нему записи ведущего отличаются от записей экземпляра, который ведущим уже не является.
+     *
+     * @return номер аренды, если после вызова она принадлежит {@code owner}, иначе 0
+     */
+    long tryAcquire(String name, String owner, Duration ttl);
+
+    /**
+     * Отпускает аренду, если она принадлежит {@code owner}, чтобы её сразу мог забрать другой.
+     * Номер аренды сохраняется, следующий владелец получит номер больше.
+     */
+    void release(String name, String owner);
+}
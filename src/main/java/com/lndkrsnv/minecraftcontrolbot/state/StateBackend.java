@@ -0,0 +1,16 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+/**
+ * Хранилище записей {@link ChatStateStore}. Записи приходят из разных потоков.
+ */
+interface StateBackend {
+    /** Читает текущее состояние; у общего хранилища — вместе с записями других экземпляров бота. */
+    ChatStateStore.Snapshot load();
+
+    void append(ChatStateStore.Op op);
+
+    /** Переживает ли состояние перезапуск процесса. */
+    boolean persistent();
+
+    void close();
+}
@@ -0,0 +1,10 @@
+package com.lndkrsnv.minecraftcontrolbot.status;
+
+public record StatusSnapshot(
+        StatusResponse response,
+        long fetchedAt
+) {
+    public long ageMillis(long now) {
+        return Math.max(0, now - fetchedAt);
+    }
+}
@@ -0,0 +1,53 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+public enum ChatCommand {
+    SET_SERVER(false),
+    STATUS(true),
+    STATUS_ALL(false),
+    STATS(true),
+    SUBSCRIBE(true),
+    UNSUBSCRIBE(true),
+    SAY(true),
+    CUSTOM_COMMAND(true),
+    BATCH(true),
+    BROADCAST(false),
+    SAVE(true),
+    RESTART(true),
+    TOGGLEDOWNFALL(true),
+    SLEEP(true),
+    RELOAD_SERVERS(false),
+    UNKNOWN(true);
+
+    private final boolean requiresServer;
+
+    ChatCommand(boolean requiresServer) {
+        this.requiresServer = requiresServer;
+    }
+
+    /** Нужен ли выбранный в чате сервер для выполнения команды. */
+    public boolean requiresServer() {
+        return requiresServer;
+    }
+
+    /** @param cmd текст команды без имени бота, например {@code /status} */
+    public static ChatCommand of(String cmd) {
+        return switch (cmd) {
+            case "/set_server" -> SET_SERVER;
+            case "/status" -> STATUS;
+            case "/status_all" -> STATUS_ALL;
+            case "/stats" -> STATS;
+            case "/subscribe" -> SUBSCRIBE;
+            case "/unsubscribe" -> UNSUBSCRIBE;
+            case "/say" -> SAY;
+            case "/custom_command" -> CUSTOM_COMMAND;
+            case "/batch" -> BATCH;
+            case "/broadcast" -> BROADCAST;
+            case "/save" -> SAVE;
+            case "/restart" -> RESTART;
+            case "/toggledownfall" -> TOGGLEDOWNFALL;
+            case "/sleep" -> SLEEP;
+            case "/reload_servers" -> RELOAD_SERVERS;
+            default -> UNKNOWN;
+        };
+    }
+}
@@ -0,0 +1,340 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties;
+import com.lndkrsnv.minecraftcontrolbot.state.ChatStateStore;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ограничения частоты команд из {@link LimitsProperties}: кулдауны и скользящие окна.
+ * <p>
+ * У каждого правила своя таблица с открытой адресацией: ключ — пара чисел (пользователь
+ * или чат и номер сервера), значение — кольцо из {@code permits} меток времени последних
+ * вызовов. Проверка ничего не выделяет: ни строковых ключей, ни объектов-записей. Записи,
+ * у которых все метки вышли из окна, выбрасываются при росте таблицы.
+ * <p>
+ * Принятые вызовы пишутся в {@link ChatStateStore} с ключом {@code правило:ключ:сервер},
+ * так что ограничения переживают перезапуск. Правило в ключе записано своим содержимым,
+ * например {@code sleep.chat-server.1.PT20M}: перестановка правил в конфигурации не путает
+ * их вызовы, а у изменённого правила старые вызовы просто забываются.
+ */
+final class CommandLimiter {
+    private final EnumMap<ChatCommand, Window[]> windows = new EnumMap<>(ChatCommand.class);
+    private final Map<String, Window> windowsByName = new HashMap<>();
+    private final Map<String, Integer> serverIndex = new HashMap<>();
+    private final List<String> serverIds = new ArrayList<>(List.of(""));
+    private final ChatStateStore stateStore;
+
+    CommandLimiter(LimitsProperties props, ChatStateStore stateStore) {
+        this.stateStore = stateStore;
+        props.commands().forEach((name, rules) -> {
+            ChatCommand command = ChatCommand.of("/" + name);
+            if (command == ChatCommand.UNKNOWN) {
+                throw new IllegalArgumentException("Неизвестная команда в limits.commands: " + name);
+            }
+            Window[] commandWindows = new Window[rules.size()];
+            for (int i = 0; i < commandWindows.length; i++) {
+                commandWindows[i] = new Window(ruleName(name, rules.get(i)), rules.get(i));
+                if (windowsByName.putIfAbsent(commandWindows[i].name, commandWindows[i]) != null) {
+                    throw new IllegalArgumentException("Повторяющееся правило в limits.commands: " + name);
+                }
+            }
+            windows.put(command, commandWindows);
+        });
+    }
+
+    /**
+     * Проверяет, пропустят ли правила команды вызов, ничего не засчитывая.
+     *
+     * @return 0, если вызов пройдёт, иначе сколько миллисекунд ждать следующей попытки
+     */
+    synchronized long waitMillis(ChatCommand command, long userId, long chatId, String serverId, long now) {
+        Window[] rules = windows.get(command);
+        if (rules == null) {
+            return 0;
+        }
+        int server = serverIndex(serverId);
+        long wait = 0;
+        for (Window window : rules) {
+            wait = Math.max(wait, window.waitMillis(window.keyA(userId, chatId), window.keyB(server), now));
+        }
+        return wait;
+    }
+
+    /**
+     * Засчитывает вызов, если его пропускают все правила команды.
+     *
+     * @param now время вызова; по нему же вызов отменяется в {@link #refund}
+     * @return 0, если вызов засчитан, иначе сколько миллисекунд ждать следующей попытки
+     */
+    synchronized long tryAcquire(ChatCommand command, long userId, long chatId, String serverId, long now) {
+        long wait = waitMillis(command, userId, chatId, serverId, now);
+        Window[] rules = windows.get(command);
+        if (wait > 0 || rules == null) {
+            return wait;
+        }
+        int server = serverIndex(serverId);
+        for (Window window : rules) {
+            long a = window.keyA(userId, chatId);
+            int b = window.keyB(server);
+            window.acquire(a, b, now);
+            stateStore.limitUsed(window.journalKey(a, serverIds.get(b)), now, now + window.periodMillis);
+        }
+        return 0;
+    }
+
+    /**
+     * Отменяет засчитанный вызов, например если команда не дошла до сервера. Снимается метка
+     * именно этого вызова: в правилах на чат или сервер более поздняя метка может быть чужой.
+     *
+     * @param usedAt время вызова, переданное в {@link #tryAcquire}
+     */
+    synchronized void refund(ChatCommand command, long userId, long chatId, String serverId, long usedAt) {
+        Window[] rules = windows.get(command);
+        if (rules == null) {
+            return;
+        }
+        int server = serverIndex(serverId);
+        for (Window window : rules) {
+            long a = window.keyA(userId, chatId);
+            int b = window.keyB(server);
+            long last = window.refund(a, b, usedAt);
+            if (last < 0) {
+                continue;
+            }
+            String key = window.journalKey(a, serverIds.get(b));
+            if (last > 0) {
+                stateStore.limitUsed(key, last, last + window.periodMillis);
+            } else {
+                stateStore.limitCleared(key);
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает вызов из журнала.
+     *
+     * @return {@code false}, если правила больше нет или вызов уже вышел из окна
+     */
+    synchronized boolean restore(String key, long usedAt, long now) {
+        String[] parts = key.split(":", 3);
+        Window window = parts.length == 3 ? windowsByName.get(parts[0]) : null;
+        if (window == null || usedAt + window.periodMillis <= now) {
+            return false;
+        }
+        long a;
+        try {
+            a = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        window.acquire(a, window.keyB(serverIndex(parts[2])), usedAt);
+        return true;
+    }
+
+    /** Забывает все вызовы, не трогая журнал. */
+    synchronized void clear() {
+        for (Window window : windowsByName.values()) {
+            window.allocate(Window.INITIAL_CAPACITY);
+        }
+    }
+
+    /** Сколько ключей сейчас хранится во всех правилах. */
+    synchronized int size() {
+        int size = 0;
+        for (Window window : windowsByName.values()) {
+            size += window.size;
+        }
+        return size;
+    }
+
+    private static String ruleName(String command, LimitsProperties.Rule rule) {
+        String scope = rule.scope().name().toLowerCase(Locale.ROOT).replace('_', '-');
+        return command + "." + scope + "." + rule.permits() + "." + rule.period();
+    }
+
+    private int serverIndex(String serverId) {
+        if (serverId == null || serverId.isEmpty()) {
+            return 0;
+        }
+        Integer index = serverIndex.get(serverId);
+        if (index == null) {
+            index = serverIds.size();
+            serverIds.add(serverId);
+            serverIndex.put(serverId, index);
+        }
+        return index;
+    }
+
+    /** Скользящее окно одного правила. */
+    private static final class Window {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final String name;
+        private final LimitsProperties.Scope scope;
+        private final int permits;
+        private final long periodMillis;
+        private long[] keysA;
+        /** Номер сервера плюс один, 0 — пустая ячейка. */
+        private int[] keysB;
+        /** По {@code permits} меток на ячейку, 0 — метки нет. */
+        private long[] stamps;
+        private int size;
+
+        private Window(String name, LimitsProperties.Rule rule) {
+            this.name = name;
+            this.scope = rule.scope();
+            this.permits = rule.permits();
+            this.periodMillis = rule.period().toMillis();
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private long keyA(long userId, long chatId) {
+            return switch (scope) {
+                case USER -> userId;
+                case CHAT, CHAT_SERVER -> chatId;
+                case SERVER, GLOBAL -> 0;
+            };
+        }
+
+        private int keyB(int server) {
+            return scope == LimitsProperties.Scope.SERVER || scope == LimitsProperties.Scope.CHAT_SERVER ? server : 0;
+        }
+
+        private String journalKey(long a, String serverId) {
+            return name + ":" + a + ":" + serverId;
+        }
+
+        private long waitMillis(long a, int b, long now) {
+            int slot = find(a, b);
+            if (slot < 0) {
+                return 0;
+            }
+            int from = slot * permits;
+            long oldest = Long.MAX_VALUE;
+            int active = 0;
+            for (int i = from; i < from + permits; i++) {
+                long stamp = stamps[i];
+                if (stamp > now - periodMillis) {
+                    active++;
+                    oldest = Math.min(oldest, stamp);
+                }
+            }
+            return active < permits ? 0 : Math.max(1, oldest + periodMillis - now);
+        }
+
+        /** Заменяет самую старую метку ключа на {@code now}. */
+        private void acquire(long a, int b, long now) {
+            int slot = find(a, b);
+            if (slot < 0) {
+                if ((size + 1) * 2 > keysA.length) {
+                    rehash(now);
+                }
+                slot = -find(a, b) - 1;
+                keysA[slot] = a;
+                keysB[slot] = b + 1;
+                size++;
+            }
+            int from = slot * permits;
+            int oldest = from;
+            for (int i = from + 1; i < from + permits; i++) {
+                if (stamps[i] < stamps[oldest]) {
+                    oldest = i;
+                }
+            }
+            stamps[oldest] = now;
+        }
+
+        /**
+         * Снимает метку {@code usedAt}.
+         *
+         * @return самая поздняя из оставшихся меток ключа, 0, если меток не осталось, или -1,
+         *         если такой метки нет
+         */
+        private long refund(long a, int b, long usedAt) {
+            int slot = find(a, b);
+            if (slot < 0) {
+                return -1;
+            }
+            int from = slot * permits;
+            int used = -1;
+            for (int i = from; i < from + permits && used < 0; i++) {
+                if (stamps[i] == usedAt) {
+                    used = i;
+                }
+            }
+            if (used < 0) {
+                return -1;
+            }
+            stamps[used] = 0;
+            long last = 0;
+            for (int i = from; i < from + permits; i++) {
+                last = Math.max(last, stamps[i]);
+            }
+            return last;
+        }
+
+        /** @return номер ячейки ключа или {@code -(ячейка для вставки) - 1} */
+        private int find(long a, int b) {
+            int mask = keysA.length - 1;
+            long h = (a * 0x9E3779B97F4A7C15L) ^ (b * 0xC2B2AE3D27D4EB4FL);
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keysB[slot] != 0) {
+                if (keysA[slot] == a && keysB[slot] == b + 1) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -slot - 1;
+        }
+
+        /** Выбрасывает ключи без меток в окне и при необходимости увеличивает таблицу. */
+        private void rehash(long now) {
+            long[] oldA = keysA;
+            int[] oldB = keysB;
+            long[] oldStamps = stamps;
+            int live = 0;
+            for (int slot = 0; slot < oldA.length; slot++) {
+                if (oldB[slot] != 0 && isLive(oldStamps, slot, now)) {
+                    live++;
+                }
+            }
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (live + 1) * 4) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+            for (int slot = 0; slot < oldA.length; slot++) {
+                if (oldB[slot] == 0 || !isLive(oldStamps, slot, now)) {
+                    continue;
+                }
+                int target = -find(oldA[slot], oldB[slot] - 1) - 1;
+                keysA[target] = oldA[slot];
+                keysB[target] = oldB[slot];
+                System.arraycopy(oldStamps, slot * permits, stamps, target * permits, permits);
+                size++;
+            }
+        }
+
+        private boolean isLive(long[] stamps, int slot, long now) {
+            for (int i = slot * permits; i < (slot + 1) * permits; i++) {
+                if (stamps[i] > now - periodMillis) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void allocate(int capacity) {
+            keysA = new long[capacity];
+            keysB = new int[capacity];
+            stamps = new long[capacity * permits];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+public final class CommandParser {
+
+    private CommandParser() {}
+
+    public static boolean isCommandForBot(String text) {
+        return text != null && text.startsWith("/");
+    }
+
+    public static String stripBotUsername(String text) {
+        int at = text.indexOf('@');
+        if (at > 0) return text.substring(0, at);
+        return text;
+    }
+}
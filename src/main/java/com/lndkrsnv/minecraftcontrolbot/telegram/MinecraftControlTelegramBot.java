@@ -1,14 +1,36 @@
 package com.lndkrsnv.minecraftcontrolbot.telegram;
 
 import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.ServersProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+import com.lndkrsnv.minecraftcontrolbot.service.BroadcastResult;
+import com.lndkrsnv.minecraftcontrolbot.service.CommandPriority;
+import com.lndkrsnv.minecraftcontrolbot.service.CommandSource;
+import com.lndkrsnv.minecraftcontrolbot.service.HistorySampler;
+import com.lndkrsnv.minecraftcontrolbot.service.RconReply;
 import com.lndkrsnv.minecraftcontrolbot.service.RconService;
+import com.lndkrsnv.minecraftcontrolbot.service.ServerHandle;
+import com.lndkrsnv.minecraftcontrolbot.service.ServerRegistry;
+import com.lndkrsnv.minecraftcontrolbot.service.ServersReloadedEvent;
+import com.lndkrsnv.minecraftcontrolbot.service.StatusChangedEvent;
 import com.lndkrsnv.minecraftcontrolbot.service.StatusClient;
 import com.lndkrsnv.minecraftcontrolbot.service.StatusFormatter;
+import com.lndkrsnv.minecraftcontrolbot.service.StatusPoller;
+import com.lndkrsnv.minecraftcontrolbot.state.ChatStateStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
 import org.telegram.telegrambots.meta.api.objects.Update;
@@ -18,6 +40,12 @@ import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -25,107 +53,226 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static com.lndkrsnv.minecraftcontrolbot.telegram.CommandParser.isCommandForBot;
+import static com.lndkrsnv.minecraftcontrolbot.telegram.CommandParser.stripBotUsername;
+
 @Component
 public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
     private static final Logger log = LoggerFactory.getLogger("MinecraftControlBot");
 
     private final BotProperties botProps;
+    private final StatusProperties statusProps;
     private final RconService rcon;
     private final StatusClient statusClient;
     private final StatusFormatter statusFormatter;
+    private final StatusPoller statusPoller;
+    private final HistorySampler historySampler;
+    private final ServerRegistry registry;
+    private final int pickerPageSize;
 
     private final Set<Long> authorizedUsers;
     private final ConcurrentHashMap<Long, PendingActionInfo> pending = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Long, ServerId> selectedServerByChat = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ServerHandle> selectedServerByChat = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Integer, ServerPickerInfo> serverPickerOwnersByMessage = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Long> sleepLastUsed = new ConcurrentHashMap<>(); // key: "chatId:serverId"
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
-
-    private record PendingActionInfo(PendingAction action, long initiatorUserId, long createdAt) {}
-    private record ServerPickerInfo(long ownerUserId, long chatId, long createdAt) {}
+    private final ConcurrentHashMap<String, Set<Long>> subscribersByServer = new ConcurrentHashMap<>();
+    private final TimerWheel expiryWheel = new TimerWheel("bot-expiry", 100, TimeUnit.MILLISECONDS, 512);
+    private final ScheduledExecutorService outputExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ChatStateStore stateStore;
+    private final CommandLimiter limiter;
+    private final UpdateDispatcher dispatcher;
+    private final OutboundQueue outbound;
+    private final MeterRegistry meterRegistry;
+    private final EnumMap<ChatCommand, Timer> commandTimers = new EnumMap<>(ChatCommand.class);
+    private final EnumMap<ChatCommand, Counter> limitedCounters = new EnumMap<>(ChatCommand.class);
+    private final ConcurrentHashMap<String, ExecuteTimers> executeTimers = new ConcurrentHashMap<>();
+
+    private static final long ACTION_TIMEOUT_SECONDS = 15;
+
+    private record PendingActionInfo(PendingAction action, long initiatorUserId, long createdAt, TimerWheel.Timeout expiry) {}
+    private record ServerPickerInfo(long ownerUserId, long chatId, long createdAt, TimerWheel.Timeout expiry) {}
+    private record ExecuteTimers(Timer success, Timer error) {}
 
     public MinecraftControlTelegramBot(
             BotProperties botProps,
+            StatusProperties statusProps,
             RconService rcon,
             StatusClient statusClient,
-            StatusFormatter statusFormatter
+            StatusFormatter statusFormatter,
+            StatusPoller statusPoller,
+            HistorySampler historySampler,
+            ServerRegistry registry,
+            ServersProperties serversProps,
+            LimitsProperties limitsProps,
+            ChatStateStore stateStore,
+            MeterRegistry meterRegistry
     ) {
-        super(botProps.token());
+        super(botOptions(botProps), botProps.token());
         this.botProps = botProps;
+        this.statusProps = statusProps;
         this.rcon = rcon;
         this.statusClient = statusClient;
         this.statusFormatter = statusFormatter;
+        this.statusPoller = statusPoller;
+        this.historySampler = historySampler;
+        this.registry = registry;
+        this.pickerPageSize = serversProps.pickerPageSize();
+        this.stateStore = stateStore;
+        this.limiter = new CommandLimiter(limitsProps, stateStore);
         this.authorizedUsers = parseAuthorized(botProps.authorizedUsers());
-        
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredActions, 10, 10, TimeUnit.SECONDS);
+        this.dispatcher = new UpdateDispatcher(botProps.dispatch());
+        this.meterRegistry = meterRegistry;
+        this.outbound = new OutboundQueue(this, botProps.outbound(), meterRegistry);
+        registerMetrics();
     }
-    
-    private void cleanupExpiredActions() {
+
+    /**
+     * Экземпляр стал ведущим: состояние чатов берётся из {@code state}, а не из памяти,
+     * потому что пока экземпляр был ведомым, его менял другой ведущий.
+     */
+    public void activate(ChatStateStore.Snapshot state) {
+        clearState();
+        restoreState(state);
+    }
+
+    /** Экземпляр перестал быть ведущим: состояние в памяти сбрасывается без записи в журнал. */
+    public void deactivate() {
+        clearState();
+    }
+
+    private void clearState() {
+        pending.values().forEach(p -> p.expiry().cancel());
+        pending.clear();
+        serverPickerOwnersByMessage.values().forEach(p -> p.expiry().cancel());
+        serverPickerOwnersByMessage.clear();
+        selectedServerByChat.clear();
+        subscribersByServer.clear();
+        limiter.clear();
+    }
+
+    /** Восстанавливает состояние чатов после перезапуска, истёкшие записи пропускаются. */
+    private void restoreState(ChatStateStore.Snapshot state) {
+        state.selectedServers().forEach((chatId, serverId) -> {
+            ServerHandle server = registry.get(serverId);
+            if (server != null) {
+                selectedServerByChat.put(chatId, server);
+            }
+        });
+        // Подписки на неизвестные сейчас серверы сохраняются: сервер может вернуться после перезагрузки
+        state.subscribers().forEach((serverId, chats) ->
+                subscribersByServer.computeIfAbsent(serverId, k -> ConcurrentHashMap.newKeySet()).addAll(chats));
+
         long now = System.currentTimeMillis();
-        long timeoutMs = TimeUnit.SECONDS.toMillis(15);
-        
-        pending.entrySet().removeIf(entry -> {
-            if (now - entry.getValue().createdAt() > timeoutMs) {
-                long chatId = entry.getKey();
-                PendingActionInfo actionInfo = entry.getValue();
-                log.info("Cleaning up expired pending action for chat_id={}, action={}", chatId, actionInfo.action());
-                
-                String message = switch (actionInfo.action()) {
-                    case SAY_TEXT -> "Время вышло. Команда /say отменена.";
-                    case CUSTOM_COMMAND -> "Время вышло. Команда /custom_command отменена.";
-                };
-                send(chatId, message);
-                return true;
-            }
-            return false;
+        state.limits().forEach((key, usedAt) -> {
+            if (!limiter.restore(key, usedAt, now)) {
+                stateStore.limitCleared(key);
+            }
         });
-        
-        serverPickerOwnersByMessage.entrySet().removeIf(entry -> {
-            if (now - entry.getValue().createdAt() > timeoutMs) {
-                Integer messageId = entry.getKey();
-                ServerPickerInfo pickerInfo = entry.getValue();
-                long chatId = pickerInfo.chatId();
-                log.info("Cleaning up expired server picker for message_id={}, chat_id={}", messageId, chatId);
-                
-                try {
-                    execute(EditMessageReplyMarkup.builder()
-                            .chatId(String.valueOf(chatId))
-                            .messageId(messageId)
-                            .replyMarkup(null)
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.warn("Failed to remove inline keyboard on timeout", e);
-                }
-                
-                send(chatId, "Время вышло. Команда /set_server отменена.");
-                return true;
+
+        long actionTimeoutMs = TimeUnit.SECONDS.toMillis(ACTION_TIMEOUT_SECONDS);
+        state.pending().forEach((chatId, p) -> {
+            long remaining = p.createdAt() + actionTimeoutMs - now;
+            PendingAction action = remaining > 0 ? parsePendingAction(p.action()) : null;
+            if (action != null) {
+                putPending(chatId, new PendingActionInfo(action, p.userId(), p.createdAt(), null), remaining);
+            } else {
+                stateStore.pendingCleared(chatId);
             }
-            return false;
         });
-        
-        // Очистка старых записей sleep (старше 24 часов)
-        long sleepCleanupMs = TimeUnit.HOURS.toMillis(24);
-        sleepLastUsed.entrySet().removeIf(entry -> {
-            if (now - entry.getValue() > sleepCleanupMs) {
-                log.info("Cleaning up old sleep record for key={}", entry.getKey());
-                return true;
-            }
-            return false;
+        state.pickers().forEach((messageId, p) -> {
+            long remaining = p.createdAt() + actionTimeoutMs - now;
+            if (remaining > 0) {
+                putServerPicker(messageId, p.ownerUserId(), p.chatId(), p.createdAt(), remaining);
+            } else {
+                stateStore.pickerCleared(messageId);
+            }
         });
+        if (!selectedServerByChat.isEmpty() || !pending.isEmpty() || limiter.size() > 0) {
+            log.info("Restored chat state: {} selected servers, {} pending actions, {} rate limit keys",
+                    selectedServerByChat.size(), pending.size(), limiter.size());
+        }
     }
-    
+
+    private static PendingAction parsePendingAction(String action) {
+        try {
+            return PendingAction.valueOf(action);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void putPending(long chatId, PendingAction action, long userId) {
+        long now = System.currentTimeMillis();
+        stateStore.pendingSet(chatId, action.name(), userId, now);
+        putPending(chatId, new PendingActionInfo(action, userId, now, null), TimeUnit.SECONDS.toMillis(ACTION_TIMEOUT_SECONDS));
+    }
+
+    private void putPending(long chatId, PendingActionInfo info, long timeoutMs) {
+        TimerWheel.Timeout expiry = expiryWheel.schedule(
+                timeout -> expirePending(chatId, timeout), timeoutMs, TimeUnit.MILLISECONDS);
+        PendingActionInfo previous = pending.put(chatId,
+                new PendingActionInfo(info.action(), info.initiatorUserId(), info.createdAt(), expiry));
+        if (previous != null) {
+            previous.expiry().cancel();
+        }
+    }
+
+    private void removePending(long chatId) {
+        PendingActionInfo removed = pending.remove(chatId);
+        if (removed != null) {
+            removed.expiry().cancel();
+            stateStore.pendingCleared(chatId);
+        }
+    }
+
+    private void expirePending(long chatId, TimerWheel.Timeout timeout) {
+        PendingActionInfo actionInfo = pending.get(chatId);
+        if (actionInfo == null || actionInfo.expiry() != timeout || !pending.remove(chatId, actionInfo)) {
+            return;
+        }
+        stateStore.pendingCleared(chatId);
+        log.info("Pending action expired for chat_id={}, action={}", chatId, actionInfo.action());
+        String message = switch (actionInfo.action()) {
+            case SAY_TEXT -> "Время вышло. Команда /say отменена.";
+            case CUSTOM_COMMAND -> "Время вышло. Команда /custom_command отменена.";
+            case BATCH_COMMANDS -> "Время вышло. Команда /batch отменена.";
+            case BROADCAST_COMMAND -> "Время вышло. Команда /broadcast отменена.";
+        };
+        send(chatId, message);
+    }
+
+    private void expireServerPicker(int messageId, TimerWheel.Timeout timeout) {
+        ServerPickerInfo pickerInfo = serverPickerOwnersByMessage.get(messageId);
+        if (pickerInfo == null || pickerInfo.expiry() != timeout || !serverPickerOwnersByMessage.remove(messageId, pickerInfo)) {
+            return;
+        }
+        stateStore.pickerCleared(messageId);
+        long chatId = pickerInfo.chatId();
+        log.info("Server picker expired for message_id={}, chat_id={}", messageId, chatId);
+        outbound.submit(chatId, EditMessageReplyMarkup.builder()
+                .chatId(String.valueOf(chatId))
+                .messageId(messageId)
+                .replyMarkup(null)
+                .build(), null);
+        send(chatId, "Время вышло. Команда /set_server отменена.");
+    }
+
     @PreDestroy
     public void shutdown() {
-        log.info("Shutting down cleanup executor");
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+        log.info("Shutting down update dispatcher");
+        dispatcher.close();
+        log.info("Shutting down outbound queue");
+        outbound.close();
+        log.info("Shutting down expiry wheel");
+        expiryWheel.close();
+        outputExecutor.shutdownNow();
+    }
+
+    private static DefaultBotOptions botOptions(BotProperties botProps) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        if (botProps.apiUrl() != null && !botProps.apiUrl().isBlank()) {
+            options.setBaseUrl(botProps.apiUrl());
         }
+        return options;
     }
 
     @Override
@@ -133,8 +280,117 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
         return botProps.username();
     }
 
+    private void registerMetrics() {
+        for (ChatCommand command : ChatCommand.values()) {
+            commandTimers.put(command, Timer.builder("bot.command")
+                    .description("Время обработки команды бота")
+                    .tag("command", command.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            limitedCounters.put(command, Counter.builder("bot.command.limited")
+                    .description("Вызовы команды, отклонённые ограничением частоты")
+                    .tag("command", command.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+
+        stateGauge("pending", pending);
+        stateGauge("server_pickers", serverPickerOwnersByMessage);
+        Gauge.builder("bot.state.size", limiter, CommandLimiter::size)
+                .tag("map", "rate_limits")
+                .register(meterRegistry);
+        stateGauge("selected_servers", selectedServerByChat);
+
+        Gauge.builder("bot.expiry.pending", expiryWheel, w -> w.stats().pending()).register(meterRegistry);
+        FunctionCounter.builder("bot.expiry.expired", expiryWheel, w -> w.stats().expired()).register(meterRegistry);
+        FunctionCounter.builder("bot.expiry.late", expiryWheel, w -> w.stats().late())
+                .description("Таймеры, сработавшие позже чем через тик после дедлайна").register(meterRegistry);
+        Gauge.builder("bot.expiry.lag.max", expiryWheel, w -> w.stats().maxLagMillis() / 1e3)
+                .baseUnit("seconds").register(meterRegistry);
+
+        FunctionCounter.builder("bot.dispatch.updates", dispatcher, d -> d.stats().dispatched())
+                .tag("result", "accepted").register(meterRegistry);
+        FunctionCounter.builder("bot.dispatch.updates", dispatcher, d -> d.stats().rejected())
+                .tag("result", "rejected").register(meterRegistry);
+        Gauge.builder("bot.dispatch.queued", dispatcher, d -> d.stats().queued()).register(meterRegistry);
+        Gauge.builder("bot.dispatch.queue_wait.avg", dispatcher, d -> d.stats().avgQueueWaitMicros() / 1e6)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("bot.dispatch.queue_wait.max", dispatcher, d -> d.stats().maxQueueWaitMicros() / 1e6)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("bot.dispatch.handler.avg", dispatcher, d -> d.stats().avgHandlerMicros() / 1e6)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("bot.dispatch.handler.max", dispatcher, d -> d.stats().maxHandlerMicros() / 1e6)
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    private void stateGauge(String name, Map<?, ?> map) {
+        Gauge.builder("bot.state.size", map, Map::size)
+                .tag("map", name)
+                .register(meterRegistry);
+    }
+
+    /** Все вызовы Telegram API проходят здесь, время и ошибки пишутся в {@code telegram.execute}. */
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) throws TelegramApiException {
+        var timers = executeTimers.computeIfAbsent(method.getMethod(), this::newExecuteTimers);
+        long started = System.nanoTime();
+        try {
+            T result = super.execute(method);
+            timers.success().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (TelegramApiException | RuntimeException e) {
+            timers.error().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private ExecuteTimers newExecuteTimers(String method) {
+        return new ExecuteTimers(executeTimer(method, "success"), executeTimer(method, "error"));
+    }
+
+    private Timer executeTimer(String method, String outcome) {
+        return Timer.builder("telegram.execute")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public UpdateDispatcher.Stats dispatchStats() {
+        return dispatcher.stats();
+    }
+
+    /**
+     * Принимает апдейт из long polling. Поток получения апдейтов не ждёт места в очереди:
+     * повторно Telegram этот апдейт не пришлёт, поэтому при заполненной очереди чату
+     * сообщается, что команда не выполнена.
+     */
     @Override
     public void onUpdateReceived(Update update) {
+        long chatId = chatIdOf(update);
+        if (!dispatcher.dispatch(chatId, () -> handleUpdate(update)) && chatId != 0) {
+            send(chatId, "⏳ Бот ещё выполняет предыдущие команды этого чата, последняя пропущена. Повторите позже.");
+        }
+    }
+
+    /**
+     * Принимает апдейт из вебхука. Поток запроса не ждёт места в очереди: если очередь
+     * чата заполнена, апдейт не принимается и Telegram доставит его повторно.
+     */
+    public boolean offerUpdate(Update update) {
+        return dispatcher.dispatch(chatIdOf(update), () -> handleUpdate(update));
+    }
+
+    private static long chatIdOf(Update update) {
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        return 0;
+    }
+
+    private void handleUpdate(Update update) {
         if (update.hasCallbackQuery()) {
             handleCallback(update.getCallbackQuery());
             return;
@@ -147,12 +403,12 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
         long userId = msg.getFrom().getId();
         String text = msg.getText();
 
-        String serverId = String.valueOf(selectedServerByChat.get(chatId));
+        ServerHandle server = selectedServerByChat.get(chatId);
 
         var actionInfo = pending.get(chatId);
         if (actionInfo != null) {
-            log.info("chat_id={} user_id={} username={} text={} serverId={} [pending action {}]", chatId, userId, msg.getFrom().getUserName(), text, serverId, actionInfo.action());
-            handlePending(chatId, userId, text, actionInfo, serverId);
+            log.info("chat_id={} user_id={} username={} text={} serverId={} [pending action {}]", chatId, userId, msg.getFrom().getUserName(), text, server, actionInfo.action());
+            handlePending(chatId, userId, text, actionInfo, server);
             return;
         }
 
@@ -160,70 +416,154 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        log.info("chat_id={} user_id={} username={} text={} serverId={}", chatId, userId, msg.getFrom().getUserName(), text, serverId);
+        log.info("chat_id={} user_id={} username={} text={} serverId={}", chatId, userId, msg.getFrom().getUserName(), text, server);
 
-        String cmd = stripBotUsername(text);
+        ChatCommand cmd = ChatCommand.of(stripBotUsername(text));
 
-        if (!cmd.equals("/set_server") && (serverId == null || serverId.isBlank() || "null".equalsIgnoreCase(serverId))) {
+        if (cmd.requiresServer() && server == null) {
             send(chatId, "Сервер не определен");
             sendServerPicker(chatId, userId);
             return;
         }
 
+        String serverId = server != null ? server.id() : null;
+        long now = System.currentTimeMillis();
+        // /say засчитывается, когда текст уходит на сервер, а здесь только проверяется, что место есть
+        long waitMs = cmd == ChatCommand.SAY
+                ? limiter.waitMillis(cmd, userId, chatId, serverId, now)
+                : limiter.tryAcquire(cmd, userId, chatId, serverId, now);
+        if (waitMs > 0) {
+            limitedCounters.get(cmd).increment();
+            send(chatId, limitMessage(cmd, waitMs));
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            handleCommand(cmd, chatId, userId, server, now);
+        } finally {
+            commandTimers.get(cmd).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** @param usedAt время, с которым вызов засчитан в ограничениях команды */
+    private void handleCommand(ChatCommand cmd, long chatId, long userId, ServerHandle server, long usedAt) {
         switch (cmd) {
-            case "/set_server" -> sendServerPicker(chatId, userId);
-            case "/status" -> handleStatus(chatId, serverId);
-            case "/say" -> {
-                pending.put(chatId, new PendingActionInfo(PendingAction.SAY_TEXT, userId, System.currentTimeMillis()));
+            case SET_SERVER -> sendServerPicker(chatId, userId);
+            case STATUS -> handleStatus(chatId, server);
+            case STATUS_ALL -> handleStatusAll(chatId);
+            case STATS -> {
+                var history = historySampler.history(server.id());
+                if (!historySampler.enabled()) {
+                    send(chatId, "Сбор истории выключен");
+                } else if (history == null) {
+                    send(chatId, "Данных по серверу " + server.title() + " пока нет");
+                } else {
+                    send(chatId, statusFormatter.formatHistory(server.title(), history, System.currentTimeMillis()));
+                }
+            }
+            case SUBSCRIBE -> {
+                if (subscribersByServer.computeIfAbsent(server.id(), k -> ConcurrentHashMap.newKeySet()).add(chatId)) {
+                    stateStore.subscribed(server.id(), chatId);
+                }
+                send(chatId, statusPoller.enabled()
+                        ? "Ок, буду сообщать об изменениях на сервере " + server.title()
+                        : "Ок, подписка сохранена, но фоновый опрос серверов выключен");
+            }
+            case UNSUBSCRIBE -> {
+                var subscribers = subscribersByServer.get(server.id());
+                if (subscribers != null && subscribers.remove(chatId)) {
+                    stateStore.unsubscribed(server.id(), chatId);
+                    send(chatId, "Ок, больше не сообщаю об изменениях на сервере " + server.title());
+                } else {
+                    send(chatId, "Чат не подписан на сервер " + server.title());
+                }
+            }
+            case RELOAD_SERVERS -> {
+                if (userId == botProps.superUser()) {
+                    try {
+                        send(chatId, registry.reload());
+                    } catch (Exception e) {
+                        log.warn("Servers reload error", e);
+                        send(chatId, "❌ Не удалось перезагрузить серверы: " + e.getMessage());
+                    }
+                } else {
+                    send(chatId, "Недостаточно прав.");
+                }
+            }
+            case SAY -> {
+                putPending(chatId, PendingAction.SAY_TEXT, userId);
                 send(chatId, "Введи текст для отправки в чат сервера (или /cancel)");
             }
-            case "/custom_command" -> {
+            case CUSTOM_COMMAND -> {
                 if (userId == botProps.superUser()) {
-                    pending.put(chatId, new PendingActionInfo(PendingAction.CUSTOM_COMMAND, userId, System.currentTimeMillis()));
+                    putPending(chatId, PendingAction.CUSTOM_COMMAND, userId);
                     send(chatId, "Какую команду выполнить? (/cancel для отмены)");
                 } else {
                     send(chatId, "Недостаточно прав.");
                 }
             }
-            case "/save" -> {
+            case BATCH -> {
+                if (userId == botProps.superUser()) {
+                    putPending(chatId, PendingAction.BATCH_COMMANDS, userId);
+                    send(chatId, "Введи команды, каждую с новой строки. Они выполнятся по порядку за один запрос (/cancel для отмены)");
+                } else {
+                    send(chatId, "Недостаточно прав.");
+                }
+            }
+            case BROADCAST -> {
+                if (userId == botProps.superUser()) {
+                    putPending(chatId, PendingAction.BROADCAST_COMMAND, userId);
+                    String ids = registry.all().stream().filter(ServerHandle::hasRcon)
+                            .map(ServerHandle::id).collect(Collectors.joining(", "));
+                    send(chatId, "Введи на первой строке серверы через запятую или * для всех (" + ids
+                            + "), на второй — команду (/cancel для отмены)");
+                } else {
+                    send(chatId, "Недостаточно прав.");
+                }
+            }
+            case SAVE -> {
                 if (authorizedUsers.contains(userId)) {
                     try {
-                        rcon.command(serverId, "save-all");
+                        rcon.command(server, sourceOf(chatId, userId), "save-all");
                         send(chatId, "Сохранение выполнено.");
                     } catch (Exception e) {
                         log.warn("RCON save command error", e);
+                        refundLimit(cmd, chatId, userId, server, usedAt);
                         send(chatId, "❌ " + getErrorMessage(e));
                     }
                 } else send(chatId, "Недостаточно прав.");
             }
-            case "/restart" -> {
+            case RESTART -> {
                 if (authorizedUsers.contains(userId)) {
                     try {
-                        rcon.command(serverId,"stop");
+                        rcon.command(server, sourceOf(chatId, userId), "stop");
                         send(chatId, "Сервер перезапускается. Подожди 5 минут");
                     } catch (Exception e) {
                         log.warn("RCON restart command error", e);
+                        refundLimit(cmd, chatId, userId, server, usedAt);
                         send(chatId, "❌ " + getErrorMessage(e));
                     }
                 } else send(chatId, "Недостаточно прав.");
             }
-            case "/toggledownfall" -> {
+            case TOGGLEDOWNFALL -> {
                 try {
-                    rcon.command(serverId,"weather clear");
+                    rcon.command(server, sourceOf(chatId, userId), "weather clear");
                     send(chatId, "Дождь отключен");
                 } catch (Exception e) {
                     log.warn("RCON toggledownfall command error", e);
+                    refundLimit(cmd, chatId, userId, server, usedAt);
                     send(chatId, "❌ " + getErrorMessage(e));
                 }
             }
-            case "/sleep" -> handleSleep(chatId, serverId);
-            default -> {
+            case SLEEP -> handleSleep(chatId, userId, server, usedAt);
+            case UNKNOWN -> {
                 send(chatId, "Неизвестная команда");
             }
         }
     }
 
-    private void handlePending(long chatId, long userId, String text, PendingActionInfo actionInfo, String serverId) {
+    private void handlePending(long chatId, long userId, String text, PendingActionInfo actionInfo, ServerHandle server) {
         if (actionInfo.initiatorUserId() != userId) {
             return;
         }
@@ -232,22 +572,37 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
         PendingAction action = actionInfo.action();
 
         if ("/cancel".equals(t)) {
-            pending.remove(chatId);
+            removePending(chatId);
             send(chatId, "Ок, отменено.");
             return;
         }
 
+        if (server == null && action != PendingAction.BROADCAST_COMMAND) {
+            // Сервер удалили из конфигурации, пока ожидался ввод
+            removePending(chatId);
+            send(chatId, "Сервер не определен");
+            return;
+        }
+
         if (action == PendingAction.SAY_TEXT) {
             if (t.isBlank() || t.contains("/")) {
                 send(chatId, "Недопустимый ввод. Попробуй ещё раз или /cancel");
                 return;
             }
-            pending.remove(chatId);
+            removePending(chatId);
+            long now = System.currentTimeMillis();
+            long waitMs = limiter.tryAcquire(ChatCommand.SAY, userId, chatId, server.id(), now);
+            if (waitMs > 0) {
+                limitedCounters.get(ChatCommand.SAY).increment();
+                send(chatId, limitMessage(ChatCommand.SAY, waitMs));
+                return;
+            }
             try {
-                rcon.command(serverId,"say " + t);
+                rcon.command(server, sourceOf(chatId, userId), "say " + t);
                 send(chatId, "Сообщение отправлено: " + t);
             } catch (Exception e) {
                 log.warn("RCON say command error", e);
+                refundLimit(ChatCommand.SAY, chatId, userId, server, now);
                 send(chatId, "❌ " + getErrorMessage(e));
             }
             return;
@@ -255,92 +610,247 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
 
         if (action == PendingAction.CUSTOM_COMMAND) {
             if (userId != botProps.superUser()) {
-                pending.remove(chatId);
+                removePending(chatId);
                 send(chatId, "Недостаточно прав.");
                 return;
             }
-            pending.remove(chatId);
-            try {
-                rcon.command(serverId, t);
-                send(chatId, "Выполнено успешно: " + t);
+            removePending(chatId);
+            try (var reply = new StreamingReply(outbound, chatId, outputExecutor)) {
+                rcon.stream(server, sourceOf(chatId, userId), t, reply);
+                if (reply.isEmpty()) {
+                    send(chatId, "Выполнено успешно: " + t);
+                }
             } catch (Exception e) {
                 log.warn("RCON custom command error", e);
                 send(chatId, "❌ " + getErrorMessage(e));
             }
+            return;
+        }
+
+        if (action == PendingAction.BATCH_COMMANDS) {
+            removePending(chatId);
+            if (userId != botProps.superUser()) {
+                send(chatId, "Недостаточно прав.");
+                return;
+            }
+            var commands = text.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isBlank())
+                    .toList();
+            if (commands.isEmpty()) {
+                send(chatId, "Нет команд для выполнения.");
+                return;
+            }
+            try {
+                send(chatId, formatBatch(rcon.batch(server, sourceOf(chatId, userId), commands)));
+            } catch (Exception e) {
+                log.warn("RCON batch command error", e);
+                send(chatId, "❌ " + getErrorMessage(e));
+            }
+        }
+
+        if (action == PendingAction.BROADCAST_COMMAND) {
+            if (userId != botProps.superUser()) {
+                removePending(chatId);
+                send(chatId, "Недостаточно прав.");
+                return;
+            }
+            handleBroadcast(chatId, sourceOf(chatId, userId), text);
+        }
+    }
+
+    /** Приоритет команд пользователя в очереди сервера определяется его ролью. */
+    private CommandSource sourceOf(long chatId, long userId) {
+        if (userId == botProps.superUser()) {
+            return new CommandSource(chatId, CommandPriority.ADMIN);
+        }
+        if (authorizedUsers.contains(userId)) {
+            return new CommandSource(chatId, CommandPriority.OPERATOR);
+        }
+        return new CommandSource(chatId, CommandPriority.PLAYER);
+    }
+
+    private void handleBroadcast(long chatId, CommandSource source, String text) {
+        var lines = text.lines().map(String::trim).filter(line -> !line.isBlank()).toList();
+        if (lines.size() < 2) {
+            send(chatId, "Нужны две строки: серверы и команда. Попробуй ещё раз или /cancel");
+            return;
+        }
+        List<ServerHandle> targets = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        if ("*".equals(lines.get(0))) {
+            registry.all().stream().filter(ServerHandle::hasRcon).forEach(targets::add);
+        } else {
+            for (String id : lines.get(0).split("[,\\s]+")) {
+                ServerHandle target = registry.get(id);
+                if (target == null || !target.hasRcon()) {
+                    unknown.add(id);
+                } else if (!targets.contains(target)) {
+                    targets.add(target);
+                }
+            }
+        }
+        if (!unknown.isEmpty() || targets.isEmpty()) {
+            send(chatId, "Неизвестные серверы: " + (unknown.isEmpty() ? "нет серверов с RCON" : String.join(", ", unknown))
+                    + ". Попробуй ещё раз или /cancel");
+            return;
+        }
+        removePending(chatId);
+        String command = lines.get(1);
+        send(chatId, formatBroadcast(command, rcon.broadcast(targets, source, command)));
+    }
+
+    private static String formatBroadcast(String command, List<BroadcastResult> results) {
+        StringBuilder sb = new StringBuilder("Рассылка: ").append(command).append("\n");
+        for (var result : results) {
+            String title = result.server().title();
+            switch (result.outcome()) {
+                case SUCCESS -> {
+                    sb.append("✅ ").append(title).append(" — ").append(result.took().toMillis()).append(" мс\n");
+                    String response = result.response() != null ? result.response().strip() : "";
+                    if (!response.isEmpty()) {
+                        sb.append("    ").append(response, 0, Math.min(response.length(), 200)).append("\n");
+                    }
+                }
+                case TIMEOUT -> sb.append("⏱ ").append(title).append(" — нет ответа: ").append(result.error()).append("\n");
+                case FAILED -> sb.append("❌ ").append(title).append(" — ").append(result.error()).append("\n");
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private static String formatBatch(List<RconReply> replies) {
+        StringBuilder sb = new StringBuilder("Пакет выполнен:\n");
+        for (var reply : replies) {
+            if (reply.completed()) {
+                sb.append("✅ ").append(reply.command())
+                        .append(" — ").append(reply.took().toMillis()).append(" мс\n");
+            } else {
+                sb.append("⚠️ ").append(reply.command()).append(" — нет ответа, соединение закрыто\n");
+            }
+            String response = reply.response().strip();
+            if (!response.isEmpty()) {
+                sb.append("    ").append(response, 0, Math.min(response.length(), 300)).append("\n");
+            }
         }
+        return sb.toString().trim();
     }
 
-    private void handleStatus(long chatId, String serverId) {
+    private void handleStatus(long chatId, ServerHandle server) {
+        if (!server.hasStatus()) {
+            send(chatId, "Для сервера " + server.title() + " статус не настроен");
+            return;
+        }
+        var polled = statusPoller.current(server.id());
+        if (polled != null) {
+            String breakerNote = statusFormatter.formatBreaker(server.breaker());
+            if (polled.online()) {
+                send(chatId, statusFormatter.format(polled.snapshot()) + breakerNote);
+            } else {
+                send(chatId, "❌ " + (polled.error() != null ? polled.error() : "Status сервер недоступен") + breakerNote);
+            }
+            return;
+        }
         try {
-            var data = statusClient.fetchStatus(serverId);
-            send(chatId, statusFormatter.format(data));
+            var data = statusClient.fetchCached(server);
+            send(chatId, statusFormatter.format(data) + statusFormatter.formatBreaker(server.breaker()));
         } catch (Exception e) {
             log.warn("Status fetch error", e);
             send(chatId, "❌ " + getErrorMessage(e));
         }
     }
 
-    private void handleSleep(long chatId, String serverId) {
-        String key = chatId + ":" + serverId;
-        long now = System.currentTimeMillis();
-        long cooldownMs = TimeUnit.MINUTES.toMillis(20);
-        
-        Long lastUsed = sleepLastUsed.get(key);
-        if (lastUsed != null) {
-            long timeSinceLastUse = now - lastUsed;
-            if (timeSinceLastUse < cooldownMs) {
-                long remainingSeconds = TimeUnit.MILLISECONDS.toSeconds(cooldownMs - timeSinceLastUse);
-                long remainingMinutes = remainingSeconds / 60;
-                long remainingSecondsMod = remainingSeconds % 60;
-                
-                String message;
-                if (remainingMinutes > 0) {
-                    message = String.format("Команда /sleep использовалась недавно. Подожди ещё %d мин. %d сек.", remainingMinutes, remainingSecondsMod);
+    private void handleStatusAll(long chatId) {
+        Map<String, StatusClient.FetchResult> results;
+        if (statusPoller.enabled()) {
+            results = new LinkedHashMap<>();
+            for (ServerHandle server : registry.withStatus()) {
+                var polled = statusPoller.current(server.id());
+                if (polled == null) {
+                    results.put(server.id(), new StatusClient.FetchResult(null, null));
+                } else if (polled.online()) {
+                    results.put(server.id(), new StatusClient.FetchResult(polled.snapshot(), null));
                 } else {
-                    message = String.format("Команда /sleep использовалась недавно. Подожди ещё %d сек.", remainingSecondsMod);
+                    results.put(server.id(), new StatusClient.FetchResult(null,
+                            polled.error() != null ? polled.error() : "Status сервер недоступен"));
                 }
-                send(chatId, message);
-                return;
             }
+        } else {
+            results = statusClient.fetchAll(registry.withStatus(), statusProps.fanOutDeadline());
         }
-        
+        send(chatId, statusFormatter.formatAll(results));
+    }
+
+    @EventListener
+    public void onStatusChanged(StatusChangedEvent event) {
+        var subscribers = subscribersByServer.get(event.serverId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        ServerHandle server = registry.get(event.serverId());
+        String title = server != null ? server.title() : event.serverId();
+        String text = "Сервер " + title + ":\n" + String.join("\n", event.changes());
+        for (long chatId : subscribers) {
+            send(chatId, text);
+        }
+    }
+
+    /** Чаты переходят на новые настройки изменённых серверов, выбор удалённых сбрасывается. */
+    @EventListener
+    public void onServersReloaded(ServersReloadedEvent event) {
+        for (var entry : selectedServerByChat.entrySet()) {
+            String serverId = entry.getValue().id();
+            if (event.removed().contains(serverId)) {
+                // Иначе выбор вернулся бы из журнала после перезапуска, если сервер снова появится
+                if (selectedServerByChat.remove(entry.getKey(), entry.getValue())) {
+                    stateStore.serverCleared(entry.getKey());
+                }
+            } else if (event.changed().contains(serverId)) {
+                selectedServerByChat.replace(entry.getKey(), entry.getValue(), registry.get(serverId));
+            }
+        }
+    }
+
+    private void handleSleep(long chatId, long userId, ServerHandle server, long usedAt) {
         try {
-            rcon.command(serverId, "time set day");
-            sleepLastUsed.put(key, now);
+            rcon.command(server, sourceOf(chatId, userId), "time set day");
             send(chatId, "Настало утро");
         } catch (Exception e) {
             log.warn("RCON sleep command error", e);
+            refundLimit(ChatCommand.SLEEP, chatId, userId, server, usedAt);
             send(chatId, "❌ " + getErrorMessage(e));
         }
     }
+
+    /** Неудачный вызов не должен занимать место в ограничении частоты. */
+    private void refundLimit(ChatCommand cmd, long chatId, long userId, ServerHandle server, long usedAt) {
+        limiter.refund(cmd, userId, chatId, server.id(), usedAt);
+    }
+
+    private static String limitMessage(ChatCommand cmd, long waitMs) {
+        long remainingSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMs + 999));
+        long remainingMinutes = remainingSeconds / 60;
+        long remainingSecondsMod = remainingSeconds % 60;
+        String command = "/" + cmd.name().toLowerCase();
+        if (remainingMinutes > 0) {
+            return String.format("Команда %s использовалась недавно. Подожди ещё %d мин. %d сек.", command, remainingMinutes, remainingSecondsMod);
+        }
+        return String.format("Команда %s использовалась недавно. Подожди ещё %d сек.", command, remainingSecondsMod);
+    }
     
     private String getErrorMessage(Exception e) {
         String message = e.getMessage();
         if (message != null && message.contains("недоступен")) {
             return message;
         }
-        if (message != null && message.contains("превышено время ожидания")) {
+        if (message != null && (message.contains("превышено время ожидания") || message.contains("не настроен"))) {
             return message;
         }
         return "Бэкенд недоступен: " + (message != null ? message : e.getClass().getSimpleName());
     }
 
     private void send(long chatId, String text) {
-        try {
-            execute(SendMessage.builder().chatId(String.valueOf(chatId)).text(text).build());
-        } catch (TelegramApiException e) {
-            log.warn("Telegram send error", e);
-        }
-    }
-
-    private boolean isCommandForBot(String text) {
-        return text != null && text.startsWith("/");
-    }
-
-    private String stripBotUsername(String text) {
-        int at = text.indexOf('@');
-        if (at > 0) return text.substring(0, at);
-        return text;
+        outbound.submit(chatId, text);
     }
 
     private static Set<Long> parseAuthorized(String s) {
@@ -353,73 +863,121 @@ public class MinecraftControlTelegramBot extends TelegramLongPollingBot {
     }
 
     private void sendServerPicker(long chatId, long userId) {
-        var b1 = InlineKeyboardButton.builder()
-                .text("ATM10")
-                .callbackData("set_server:MODERN")
-                .build();
-
-        var b2 = InlineKeyboardButton.builder()
-                .text("Классика")
-                .callbackData("set_server:CLASSIC")
+        if (registry.all().isEmpty()) {
+            send(chatId, "Серверы не настроены");
+            return;
+        }
+        var message = SendMessage.builder()
+                .chatId(String.valueOf(chatId))
+                .text("Выбери сервер:")
+                .replyMarkup(serverPickerPage(0))
                 .build();
+        outbound.submit(chatId, message, sent -> {
+            if (sent != null && sent.getMessageId() != null) {
+                long now = System.currentTimeMillis();
+                stateStore.pickerShown(sent.getMessageId(), chatId, userId, now);
+                putServerPicker(sent.getMessageId(), userId, chatId, now, TimeUnit.SECONDS.toMillis(ACTION_TIMEOUT_SECONDS));
+            }
+        });
+    }
 
-        var markup = InlineKeyboardMarkup.builder()
-                .keyboard(java.util.List.of(java.util.List.of(b1, b2)))
-                .build();
+    private void putServerPicker(int messageId, long ownerUserId, long chatId, long createdAt, long timeoutMs) {
+        TimerWheel.Timeout expiry = expiryWheel.schedule(
+                timeout -> expireServerPicker(messageId, timeout), timeoutMs, TimeUnit.MILLISECONDS);
+        serverPickerOwnersByMessage.put(messageId, new ServerPickerInfo(ownerUserId, chatId, createdAt, expiry));
+    }
 
-        try {
-            var sent = execute(SendMessage.builder()
-                    .chatId(String.valueOf(chatId))
-                    .text("Выбери сервер:")
-                    .replyMarkup(markup)
-                    .build());
-            if (sent != null && sent.getMessageId() != null) {
-                serverPickerOwnersByMessage.put(sent.getMessageId(), new ServerPickerInfo(userId, chatId, System.currentTimeMillis()));
+    /** Страница клавиатуры выбора сервера: по две кнопки в ряд и стрелки, если страниц больше одной. */
+    private InlineKeyboardMarkup serverPickerPage(int page) {
+        List<ServerHandle> servers = registry.all();
+        int pages = Math.max(1, (servers.size() + pickerPageSize - 1) / pickerPageSize);
+        page = Math.clamp(page, 0, pages - 1);
+        int from = page * pickerPageSize;
+        int to = Math.min(servers.size(), from + pickerPageSize);
+
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (int i = from; i < to; i += 2) {
+            List<InlineKeyboardButton> row = new ArrayList<>(2);
+            for (ServerHandle server : servers.subList(i, Math.min(to, i + 2))) {
+                row.add(InlineKeyboardButton.builder()
+                        .text(server.title())
+                        .callbackData("set_server:" + server.id())
+                        .build());
+            }
+            rows.add(row);
+        }
+        if (pages > 1) {
+            List<InlineKeyboardButton> navigation = new ArrayList<>(3);
+            if (page > 0) {
+                navigation.add(InlineKeyboardButton.builder().text("◀").callbackData("servers_page:" + (page - 1)).build());
+            }
+            navigation.add(InlineKeyboardButton.builder().text((page + 1) + "/" + pages).callbackData("servers_page:" + page).build());
+            if (page < pages - 1) {
+                navigation.add(InlineKeyboardButton.builder().text("▶").callbackData("servers_page:" + (page + 1)).build());
             }
-        } catch (TelegramApiException e) {
-            log.warn("Telegram send error", e);
+            rows.add(navigation);
         }
+        return InlineKeyboardMarkup.builder().keyboard(rows).build();
     }
 
     private void handleCallback(CallbackQuery cq) {
         long chatId = cq.getMessage().getChatId();
         long userId = cq.getFrom().getId();
         String data = cq.getData();
+        if (data == null || !(data.startsWith("set_server:") || data.startsWith("servers_page:"))) {
+            return;
+        }
 
-        if (data != null && data.startsWith("set_server:")) {
-            Integer messageId = cq.getMessage().getMessageId();
-            ServerPickerInfo pickerInfo = serverPickerOwnersByMessage.get(messageId);
+        Integer messageId = cq.getMessage().getMessageId();
+        ServerPickerInfo pickerInfo = serverPickerOwnersByMessage.get(messageId);
+        if (pickerInfo != null && pickerInfo.ownerUserId() != userId) {
+            answerCallback(cq, "Выбрать может только инициатор");
+            return;
+        }
 
-            if (pickerInfo != null && pickerInfo.ownerUserId() != userId) {
-                try {
-                    execute(AnswerCallbackQuery.builder()
-                            .callbackQueryId(cq.getId())
-                            .text("Выбрать может только инициатор")
-                            .showAlert(false)
-                            .build());
-                } catch (TelegramApiException e) {
-                    log.warn("AnswerCallbackQuery error (unauthorized)", e);
-                }
+        if (data.startsWith("servers_page:")) {
+            int page;
+            try {
+                page = Integer.parseInt(data.substring("servers_page:".length()));
+            } catch (NumberFormatException e) {
                 return;
             }
+            answerCallback(cq, null);
+            outbound.submit(chatId, EditMessageReplyMarkup.builder()
+                    .chatId(String.valueOf(chatId))
+                    .messageId(messageId)
+                    .replyMarkup(serverPickerPage(page))
+                    .build(), null);
+            return;
+        }
 
-            var id = data.substring("set_server:".length());
-            ServerId server = ServerId.valueOf(id);
-            selectedServerByChat.put(chatId, server);
-            send(chatId, "Ок, выбран сервер: " + server);
-            try {
-                serverPickerOwnersByMessage.remove(messageId);
-                execute(AnswerCallbackQuery.builder()
-                        .callbackQueryId(cq.getId())
-                        .build());
-                execute(EditMessageReplyMarkup.builder()
-                        .chatId(String.valueOf(cq.getMessage().getChatId()))
-                        .messageId(messageId)
-                        .replyMarkup(null)
-                        .build());
-            } catch (TelegramApiException e) {
-                log.warn("Failed to remove inline keyboard", e);
-            }
+        var id = data.substring("set_server:".length());
+        ServerHandle server = registry.get(id);
+        if (server == null) {
+            answerCallback(cq, "Сервер больше не настроен");
+            return;
         }
+        selectedServerByChat.put(chatId, server);
+        stateStore.serverSelected(chatId, server.id());
+        send(chatId, "Ок, выбран сервер: " + server.title());
+        ServerPickerInfo removed = serverPickerOwnersByMessage.remove(messageId);
+        if (removed != null) {
+            removed.expiry().cancel();
+            stateStore.pickerCleared(messageId);
+        }
+        answerCallback(cq, null);
+        outbound.submit(chatId, EditMessageReplyMarkup.builder()
+                .chatId(String.valueOf(chatId))
+                .messageId(messageId)
+                .replyMarkup(null)
+                .build(), null);
+    }
+
+    private void answerCallback(CallbackQuery cq, String text) {
+        outbound.submit(cq.getMessage().getChatId(), AnswerCallbackQuery.builder()
+                .callbackQueryId(cq.getId())
+                .text(text)
+                .showAlert(false)
+                .build(), null);
     }
 }
@@ -0,0 +1,276 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронная отправка сообщений с учётом лимитов Telegram.
+ * <p>
+ * У каждого чата своя очередь и своя маркерная корзина, плюс общая корзина на всех.
+ * В каждый момент у чата не больше одной отправки, поэтому порядок сообщений сохраняется.
+ * Идущие подряд простые тексты в один чат склеиваются в одно сообщение, пока оно
+ * помещается в лимит Telegram. На ответ 429 чат ставится на паузу на {@code retry_after}
+ * секунд, и сообщение отправляется повторно.
+ * <p>
+ * Все вызовы API, относящиеся к чату, включая правки, клавиатуры и ответы на нажатия кнопок,
+ * идут только через очередь, иначе они расходовали бы лимиты Telegram мимо корзин.
+ * Напрямую вызываются только настройка бота при запуске и получение апдейтов.
+ */
+public class OutboundQueue implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger("MinecraftControlBot");
+
+    static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String SEPARATOR = "\n\n";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AbsSender sender;
+    private final BotProperties.Outbound config;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final TokenBucket globalBucket;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter sent;
+    private final Counter coalesced;
+    private final Counter rateLimited;
+    private final Counter retried;
+    private final Counter dropped;
+
+    public OutboundQueue(AbsSender sender, BotProperties.Outbound config, MeterRegistry meterRegistry) {
+        this.sender = sender;
+        this.config = config;
+        this.globalBucket = new TokenBucket(config.globalRate(), config.globalRate(), System.nanoTime());
+        AtomicInteger counter = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(config.senders(), r -> {
+            Thread t = new Thread(r, "telegram-outbound-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.sent = outcome(meterRegistry, "sent");
+        this.coalesced = outcome(meterRegistry, "coalesced");
+        this.rateLimited = outcome(meterRegistry, "rate_limited");
+        this.retried = outcome(meterRegistry, "retried");
+        this.dropped = outcome(meterRegistry, "dropped");
+        Gauge.builder("telegram.outbound.queued", queued, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /** Ставит текст в очередь чата, не дожидаясь отправки. */
+    public void submit(long chatId, String text) {
+        enqueue(chatId, new Outgoing(SendMessage.builder().chatId(String.valueOf(chatId)).text(text).build(), null));
+    }
+
+    /**
+     * Ставит вызов API в очередь чата. Склеиваются только простые тексты: сообщения
+     * с клавиатурой, разметкой или обработчиком и остальные методы отправляются как есть.
+     *
+     * @param onSent вызывается в потоке отправки после успешного вызова, может быть {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> void submit(long chatId, BotApiMethod<T> method, Consumer<? super T> onSent) {
+        enqueue(chatId, new Outgoing(method, (Consumer<Serializable>) onSent));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(long chatId, Outgoing message) {
+        while (true) {
+            ChatQueue chat = chats.computeIfAbsent(chatId, id -> new ChatQueue(id, config, System.nanoTime()));
+            synchronized (chat) {
+                if (chat.retired) {
+                    continue;
+                }
+                if (chat.messages.size() >= config.maxQueuedPerChat()) {
+                    chat.messages.pollFirst();
+                    queued.decrementAndGet();
+                    dropped.increment();
+                    log.warn("Outbound queue for chat_id={} is full, dropping oldest message", chatId);
+                }
+                chat.messages.addLast(message);
+                queued.incrementAndGet();
+                if (!chat.scheduled) {
+                    chat.scheduled = true;
+                    schedule(chat, 0);
+                }
+                return;
+            }
+        }
+    }
+
+    private void schedule(ChatQueue chat, long delayNanos) {
+        scheduler.schedule(() -> drain(chat), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void drain(ChatQueue chat) {
+        long now = System.nanoTime();
+        long wait = Math.max(chat.pausedUntil - now, chat.bucket.nanosUntilAvailable(now));
+        if (wait <= 0) {
+            wait = globalBucket.nanosUntilAvailable(now);
+        }
+        if (wait > 0 || !globalBucket.tryAcquire(now)) {
+            schedule(chat, Math.max(wait, TimeUnit.MILLISECONDS.toNanos(10)));
+            return;
+        }
+        chat.bucket.tryAcquire(now);
+
+        Outgoing message;
+        int taken;
+        synchronized (chat) {
+            taken = 1;
+            message = chat.messages.pollFirst();
+            if (message.mergeable()) {
+                StringBuilder text = null;
+                while (!chat.messages.isEmpty() && chat.messages.peekFirst().mergeable()) {
+                    String next = chat.messages.peekFirst().text();
+                    int length = (text != null ? text.length() : message.text().length())
+                            + SEPARATOR.length() + next.length();
+                    if (length > MAX_MESSAGE_LENGTH) {
+                        break;
+                    }
+                    if (text == null) {
+                        text = new StringBuilder(message.text());
+                    }
+                    text.append(SEPARATOR).append(next);
+                    chat.messages.pollFirst();
+                    taken++;
+                }
+                if (text != null) {
+                    coalesced.increment(taken - 1);
+                    message = new Outgoing(SendMessage.builder()
+                            .chatId(String.valueOf(chat.chatId))
+                            .text(text.toString())
+                            .build(), null);
+                }
+            }
+        }
+        queued.addAndGet(-taken);
+
+        long retryIn = send(chat, message);
+        synchronized (chat) {
+            if (retryIn >= 0) {
+                chat.messages.addFirst(message);
+                queued.incrementAndGet();
+                schedule(chat, retryIn);
+            } else if (!chat.messages.isEmpty()) {
+                schedule(chat, 0);
+            } else {
+                chat.scheduled = false;
+                chat.retired = true;
+                chats.remove(chat.chatId, chat);
+            }
+        }
+    }
+
+    /** @return через сколько наносекунд повторить отправку, или -1 если повторять не нужно */
+    private long send(ChatQueue chat, Outgoing message) {
+        try {
+            Serializable result = sender.execute(message.method());
+            sent.increment();
+            chat.attempts = 0;
+            if (message.onSent() != null) {
+                message.onSent().accept(result);
+            }
+            return -1;
+        } catch (TelegramApiRequestException e) {
+            if (e.getErrorCode() != null && e.getErrorCode() == 429) {
+                rateLimited.increment();
+                int retryAfter = e.getParameters() != null && e.getParameters().getRetryAfter() != null
+                        ? e.getParameters().getRetryAfter() : 1;
+                long pause = TimeUnit.SECONDS.toNanos(retryAfter);
+                long now = System.nanoTime();
+                chat.pausedUntil = now + pause;
+                chat.bucket.drain(now);
+                globalBucket.drain(now);
+                log.warn("Telegram rate limit for chat_id={}, retry after {} s", chat.chatId, retryAfter);
+                return pause;
+            }
+            if (e.getErrorCode() != null && e.getErrorCode() >= 500) {
+                return retryLater(chat, e);
+            }
+            dropped.increment();
+            chat.attempts = 0;
+            log.warn("Telegram send error", e);
+            return -1;
+        } catch (TelegramApiException e) {
+            return retryLater(chat, e);
+        } catch (RuntimeException e) {
+            dropped.increment();
+            chat.attempts = 0;
+            log.warn("Telegram send error", e);
+            return -1;
+        }
+    }
+
+    private long retryLater(ChatQueue chat, TelegramApiException e) {
+        if (++chat.attempts >= MAX_ATTEMPTS) {
+            dropped.increment();
+            chat.attempts = 0;
+            log.warn("Telegram send error, giving up after {} attempts", MAX_ATTEMPTS, e);
+            return -1;
+        }
+        retried.increment();
+        log.debug("Telegram send error, retrying", e);
+        return RETRY_DELAY_NANOS * chat.attempts;
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("telegram.outbound.messages")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record Outgoing(BotApiMethod<?> method, Consumer<Serializable> onSent) {
+        boolean mergeable() {
+            return onSent == null && method instanceof SendMessage message
+                    && message.getReplyMarkup() == null && message.getParseMode() == null;
+        }
+
+        String text() {
+            return ((SendMessage) method).getText();
+        }
+    }
+
+    private static final class ChatQueue {
+        private final long chatId;
+        private final TokenBucket bucket;
+        private final ArrayDeque<Outgoing> messages = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+        private volatile long pausedUntil;
+        private int attempts;
+
+        private ChatQueue(long chatId, BotProperties.Outbound config, long now) {
+            this.chatId = chatId;
+            this.bucket = new TokenBucket(config.perChatBurst(), config.perChatRate(), now);
+        }
+    }
+}
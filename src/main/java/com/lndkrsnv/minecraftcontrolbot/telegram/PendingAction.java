@@ -2,5 +2,7 @@ package com.lndkrsnv.minecraftcontrolbot.telegram;
 
 public enum PendingAction {
     SAY_TEXT,
-    CUSTOM_COMMAND
+    CUSTOM_COMMAND,
+    BATCH_COMMANDS,
+    BROADCAST_COMMAND
 }
@@ -1,5 +0,0 @@
-package com.lndkrsnv.minecraftcontrolbot.telegram;
-
-public enum ServerId {
-    MODERN, CLASSIC
-}
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.service.RconOutput;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Показывает вывод RCON-команды в Telegram по мере его получения.
+ * <p>
+ * Текст копится в странице размером с сообщение Telegram; раз в секунду страница
+ * отправляется или дописывается правкой того же сообщения. Заполненная страница
+ * закрывается и следующая уходит новым сообщением. Общий объём ограничен
+ * {@link #MAX_PAGES} страницами, остальное отбрасывается с пометкой об обрезке.
+ * <p>
+ * Сообщения и правки уходят через {@link OutboundQueue}, как и остальные ответы бота, поэтому
+ * длинный вывод не обходит лимиты Telegram. Пока новое сообщение страницы ждёт отправки,
+ * правки копятся: после отправки страница дописывается один раз последним текстом.
+ */
+class StreamingReply implements RconOutput, AutoCloseable {
+    static final int PAGE_SIZE = 4000;
+    static final int MAX_PAGES = 8;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    private final OutboundQueue outbound;
+    private final long chatId;
+    private final ScheduledFuture<?> flusher;
+
+    // Заполняется потоком RCON, под блокировкой this
+    private final StringBuilder page = new StringBuilder(PAGE_SIZE);
+    private final ArrayDeque<String> fullPages = new ArrayDeque<>();
+    private int pagesStarted = 1;
+    private boolean truncated;
+    private boolean empty = true;
+
+    // Используется только при отправке, под блокировкой flushLock
+    private final Object flushLock = new Object();
+    private PageMessage message;
+    private String lastSent = "";
+
+    StreamingReply(OutboundQueue outbound, long chatId, ScheduledExecutorService scheduler) {
+        this.outbound = outbound;
+        this.chatId = chatId;
+        this.flusher = scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void append(CharSequence chunk) {
+        if (truncated || chunk.isEmpty()) {
+            return;
+        }
+        empty = false;
+        int offset = 0;
+        while (offset < chunk.length()) {
+            int take = Math.min(PAGE_SIZE - page.length(), chunk.length() - offset);
+            page.append(chunk, offset, offset + take);
+            offset += take;
+            if (page.length() == PAGE_SIZE) {
+                if (pagesStarted == MAX_PAGES) {
+                    truncated = true;
+                    return;
+                }
+                closePage();
+            }
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return empty;
+    }
+
+    /** Отправляет остаток вывода. */
+    @Override
+    public void close() {
+        flusher.cancel(false);
+        flush();
+        boolean wasTruncated;
+        synchronized (this) {
+            wasTruncated = truncated;
+        }
+        if (wasTruncated) {
+            outbound.submit(chatId, "… вывод обрезан");
+        }
+    }
+
+    /** Переносит заполненную страницу в очередь отправки, по возможности разрывая её по переводу строки. */
+    private void closePage() {
+        int cut = page.lastIndexOf("\n");
+        if (cut < PAGE_SIZE / 2) {
+            cut = PAGE_SIZE;
+        } else {
+            cut++;
+        }
+        fullPages.add(page.substring(0, cut));
+        page.delete(0, cut);
+        pagesStarted++;
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            while (true) {
+                String text;
+                boolean pageDone;
+                synchronized (this) {
+                    pageDone = !fullPages.isEmpty();
+                    text = pageDone ? fullPages.poll() : page.toString();
+                }
+                text = text.strip();
+                if (!text.isEmpty() && !text.equals(lastSent)) {
+                    if (message == null) {
+                        message = new PageMessage();
+                        PageMessage sending = message;
+                        outbound.submit(chatId, SendMessage.builder().chatId(String.valueOf(chatId)).text(text).build(),
+                                sent -> sending.sent(sent.getMessageId()));
+                    } else {
+                        message.update(text);
+                    }
+                    lastSent = text;
+                }
+                if (!pageDone) {
+                    return;
+                }
+                message = null;
+                lastSent = "";
+            }
+        }
+    }
+
+    private void submitEdit(int messageId, String text) {
+        outbound.submit(chatId, EditMessageText.builder()
+                .chatId(String.valueOf(chatId))
+                .messageId(messageId)
+                .text(text)
+                .build(), null);
+    }
+
+    /** Сообщение страницы: правки до его отправки не ставятся в очередь, запоминается только последний текст. */
+    private final class PageMessage {
+        private Integer id;
+        private String pending;
+
+        synchronized void update(String text) {
+            if (id != null) {
+                submitEdit(id, text);
+            } else {
+                pending = text;
+            }
+        }
+
+        /** Вызывается из потока отправки. */
+        synchronized void sent(int messageId) {
+            id = messageId;
+            if (pending != null) {
+                submitEdit(messageId, pending);
+                pending = null;
+            }
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.lndkrsnv.minecraftcontrolbot.telegram;
 
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+/**
+ * Сам приём апдейтов (long polling или вебхук) запускает {@link TelegramStartup},
+ * когда контекст уже поднят, чтобы апдейты не приходили в недоинициализированное приложение.
+ */
 @Configuration
 public class TelegramConfig {
-
     @Bean
-    public TelegramBotsApi telegramBotsApi(MinecraftControlTelegramBot bot) throws Exception {
-        TelegramBotsApi api = new TelegramBotsApi(DefaultBotSession.class);
-        api.registerBot(bot);
-        return api;
+    public TelegramBotsApi telegramBotsApi(BotProperties botProps) throws Exception {
+        BotProperties.Webhook webhook = botProps.webhook();
+        if (webhook.enabled()) {
+            if (webhook.url() == null || webhook.url().isBlank()) {
+                throw new IllegalStateException("Для режима вебхука нужно указать bot.webhook.url");
+            }
+            // Без секрета любой, кто достучится до адреса, пришлёт апдейт от имени суперпользователя
+            if (webhook.secretToken() == null || webhook.secretToken().isBlank()) {
+                throw new IllegalStateException("Для режима вебхука нужно указать bot.webhook.secret-token");
+            }
+        }
+        return new TelegramBotsApi(DefaultBotSession.class);
     }
-}
\ No newline at end of file
+}
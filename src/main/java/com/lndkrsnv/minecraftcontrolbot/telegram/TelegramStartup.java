@@ -1,56 +1,305 @@
 package com.lndkrsnv.minecraftcontrolbot.telegram;
 
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import com.lndkrsnv.minecraftcontrolbot.service.RconService;
+import com.lndkrsnv.minecraftcontrolbot.service.ServerHandle;
+import com.lndkrsnv.minecraftcontrolbot.service.ServerRegistry;
+import com.lndkrsnv.minecraftcontrolbot.service.StatusClient;
+import com.lndkrsnv.minecraftcontrolbot.state.ChatStateStore;
+import com.lndkrsnv.minecraftcontrolbot.state.LeaderElection;
+import com.lndkrsnv.minecraftcontrolbot.state.LeadershipChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
 import org.telegram.telegrambots.meta.api.objects.commands.scope.*;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
 
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-@Configuration
-public class TelegramStartup {
-
-    @Bean
-    public org.springframework.boot.ApplicationRunner telegramCommandsRunner(MinecraftControlTelegramBot bot) {
-        return args -> {
-            var commands = List.of(
-                    new BotCommand("/set_server", "Выбрать сервер"),
-                    new BotCommand("/status", "Статус сервера"),
-                    new BotCommand("/say", "Сказать в чат сервера"),
-                    new BotCommand("/save", "Сохранить мир"),
-                    new BotCommand("/restart", "Перезапустить сервер"),
-                    new BotCommand("/toggledownfall", "Отключить дождь"),
-                    new BotCommand("/sleep", "Поспать"),
-                    new BotCommand("/custom_command", "Выполнить произвольную команду")
-            );
-
-            setCommandsEverywhere(bot, commands);
-        };
-    }
-
-    private void setCommandsEverywhere(MinecraftControlTelegramBot bot, List<BotCommand> commands)
-            throws TelegramApiException {
-
-        bot.execute(SetMyCommands.builder()
-                .scope(new BotCommandScopeDefault())
-                .commands(commands)
-                .build());
-
-        bot.execute(SetMyCommands.builder()
-                .scope(new BotCommandScopeAllPrivateChats())
-                .commands(commands)
-                .build());
-
-        bot.execute(SetMyCommands.builder()
-                .scope(new BotCommandScopeAllGroupChats())
-                .commands(commands)
-                .build());
-
-        bot.execute(SetMyCommands.builder()
-                .scope(new BotCommandScopeAllChatAdministrators())
-                .commands(commands)
-                .build());
+/**
+ * Запуск бота после подъёма контекста.
+ * <p>
+ * Приём апдейтов и регистрация команд во всех областях идут параллельно. Команды не
+ * регистрируются повторно, если их список не менялся с прошлого запуска: хеш списка хранится
+ * в {@link ChatStateStore}. RCON-соединения и статус серверов прогреваются в фоне, чтобы первая
+ * команда пользователя не ждала DNS, TCP и авторизации. Время каждой фазы пишется в лог
+ * и в метрику {@code bot.startup}.
+ * <p>
+ * Апдейты принимает и команды регистрирует только ведущий экземпляр ({@link LeaderElection}).
+ * Ведомый прогревает соединения и ждёт: став ведущим, он перечитывает состояние чатов и
+ * начинает приём апдейтов, а потеряв роль, сразу прекращает его. Если начать приём не удалось,
+ * экземпляр отпускает роль, чтобы её забрал другой или он сам при следующем продлении аренды.
+ */
+@Component
+public class TelegramStartup implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger("MinecraftControlBot");
+    private static final String COMMANDS_HASH = "telegram.commands.hash";
+
+    static final List<BotCommand> COMMANDS = List.of(
+            new BotCommand("/set_server", "Выбрать сервер"),
+            new BotCommand("/status", "Статус сервера"),
+            new BotCommand("/status_all", "Статус всех серверов"),
+            new BotCommand("/stats", "Игроки и TPS за последние сутки"),
+            new BotCommand("/subscribe", "Сообщать об изменениях на сервере"),
+            new BotCommand("/unsubscribe", "Не сообщать об изменениях на сервере"),
+            new BotCommand("/say", "Сказать в чат сервера"),
+            new BotCommand("/save", "Сохранить мир"),
+            new BotCommand("/restart", "Перезапустить сервер"),
+            new BotCommand("/toggledownfall", "Отключить дождь"),
+            new BotCommand("/sleep", "Поспать"),
+            new BotCommand("/custom_command", "Выполнить произвольную команду"),
+            new BotCommand("/batch", "Выполнить несколько команд за один запрос"),
+            new BotCommand("/broadcast", "Выполнить команду на нескольких серверах"),
+            new BotCommand("/reload_servers", "Перечитать список серверов")
+    );
+
+    private static final List<BotCommandScope> SCOPES = List.of(
+            new BotCommandScopeDefault(),
+            new BotCommandScopeAllPrivateChats(),
+            new BotCommandScopeAllGroupChats(),
+            new BotCommandScopeAllChatAdministrators());
+
+    private final MinecraftControlTelegramBot bot;
+    private final TelegramBotsApi api;
+    private final BotProperties botProps;
+    private final ChatStateStore stateStore;
+    private final ServerRegistry registry;
+    private final RconService rcon;
+    private final StatusClient statusClient;
+    private final MeterRegistry meterRegistry;
+    private final LeaderElection election;
+    // Не виртуальные потоки: HTTP-клиент Telegram ждёт свободное соединение внутри synchronized,
+    // и на машине с одним-двумя ядрами параллельная регистрация команд занимала все их носители
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "bot-startup");
+        t.setDaemon(true);
+        return t;
+    });
+    private BotSession session;
+    private boolean started;
+    /** Номер аренды, с которым принимаются апдейты, 0 — не принимаются. */
+    private long activeEpoch;
+
+    public TelegramStartup(
+            MinecraftControlTelegramBot bot,
+            TelegramBotsApi api,
+            BotProperties botProps,
+            ChatStateStore stateStore,
+            ServerRegistry registry,
+            RconService rcon,
+            StatusClient statusClient,
+            MeterRegistry meterRegistry,
+            LeaderElection election
+    ) {
+        this.bot = bot;
+        this.api = api;
+        this.botProps = botProps;
+        this.stateStore = stateStore;
+        this.registry = registry;
+        this.rcon = rcon;
+        this.statusClient = statusClient;
+        this.meterRegistry = meterRegistry;
+        this.election = election;
+    }
+
+    @Override
+    public synchronized void run(ApplicationArguments args) {
+        long contextMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        record("context", TimeUnit.MILLISECONDS.toNanos(contextMs));
+
+        CompletableFuture<Long> warmUp = timed("warmup", this::warmUp);
+        warmUp.whenComplete((ms, error) -> log.info("Startup phase warmup finished in {} ms", ms));
+        started = true;
+        if (!election.isLeader()) {
+            log.info("Startup phases: context={} ms, waiting for leadership to receive updates", contextMs);
+            return;
+        }
+        bot.activate(stateStore.loaded());
+        activeEpoch = election.epoch();
+        CompletableFuture<Long> session = timed("session", this::startSession);
+        CompletableFuture<Long> commands = CompletableFuture.supplyAsync(this::registerCommands, executor);
+        try {
+            CompletableFuture.allOf(session, commands).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        long commandsMs = commands.join();
+        log.info("Startup phases: context={} ms, session={} ms, commands={}", contextMs, session.join(),
+                commandsMs < 0 ? "unchanged, skipped" : commandsMs + " ms");
+    }
+
+    @EventListener
+    public synchronized void onLeadershipChanged(LeadershipChangedEvent event) {
+        long epoch = election.epoch();
+        // До окончания запуска роль учтёт run()
+        if (!started || epoch == activeEpoch) {
+            return;
+        }
+        // Новый номер без перерыва в роли: пока аренда была у другого, состояние могло измениться
+        if (activeEpoch != 0) {
+            stopReceiving();
+            log.info("Stepped down, stopped receiving updates");
+        }
+        if (epoch == 0) {
+            return;
+        }
+        long takeoverStarted = System.nanoTime();
+        try {
+            bot.activate(stateStore.reload());
+            activeEpoch = epoch;
+            startSession();
+            registerCommands();
+        } catch (RuntimeException e) {
+            log.error("Failed to start receiving updates after taking over leadership, stepping down", e);
+            stopReceiving();
+            election.stepDown();
+            return;
+        }
+        log.info("Took over as leader in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - takeoverStarted));
+    }
+
+    private void stopReceiving() {
+        activeEpoch = 0;
+        if (session != null && session.isRunning()) {
+            session.stop();
+        }
+        bot.deactivate();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void startSession() {
+        BotProperties.Webhook webhook = botProps.webhook();
+        try {
+            if (!webhook.enabled()) {
+                if (session == null) {
+                    session = api.registerBot(bot);
+                } else if (!session.isRunning()) {
+                    session.start();
+                }
+                return;
+            }
+            bot.execute(SetWebhook.builder()
+                    .url(webhook.url())
+                    .secretToken(webhook.secretToken() == null || webhook.secretToken().isBlank() ? null : webhook.secretToken())
+                    .maxConnections(webhook.maxConnections())
+                    .dropPendingUpdates(webhook.dropPendingUpdates())
+                    .build());
+            log.info("Webhook registered at {}", webhook.url());
+        } catch (TelegramApiException e) {
+            throw new IllegalStateException("Не удалось начать приём апдейтов", e);
+        }
+    }
+
+    /** @return время регистрации в мс или -1, если список команд не менялся и регистрация пропущена */
+    private long registerCommands() {
+        long hash = commandsHash();
+        Long registered = stateStore.loaded().settings().get(COMMANDS_HASH);
+        if (registered != null && registered == hash) {
+            return -1;
+        }
+        long started = System.nanoTime();
+        List<CompletableFuture<Boolean>> calls = new ArrayList<>(SCOPES.size());
+        for (BotCommandScope scope : SCOPES) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return bot.execute(SetMyCommands.builder().scope(scope).commands(COMMANDS).build());
+                } catch (TelegramApiException e) {
+                    throw new IllegalStateException("Не удалось зарегистрировать команды для " + scope.getType(), e);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        long elapsed = System.nanoTime() - started;
+        record("commands", elapsed);
+        stateStore.settingSaved(COMMANDS_HASH, hash);
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    /** Хеш списка команд вместе с ботом, которому они принадлежат. */
+    private long commandsHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(botProps.username()).getBytes(StandardCharsets.UTF_8));
+            for (BotCommandScope scope : SCOPES) {
+                digest.update((byte) 0);
+                digest.update(scope.getType().getBytes(StandardCharsets.UTF_8));
+            }
+            for (BotCommand command : COMMANDS) {
+                digest.update((byte) 0);
+                digest.update(command.getCommand().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(command.getDescription().getBytes(StandardCharsets.UTF_8));
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Подключается ко всем серверам параллельно; ошибки только пишутся в лог. */
+    private void warmUp() {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (ServerHandle server : registry.all()) {
+            if (server.hasRcon()) {
+                tasks.add(CompletableFuture.runAsync(() -> rcon.warmUp(server), executor)
+                        .exceptionally(e -> {
+                            log.warn("RCON warm-up failed for serverId={}: {}", server.id(), e.getMessage());
+                            return null;
+                        }));
+            }
+            if (server.hasStatus()) {
+                tasks.add(CompletableFuture.runAsync(() -> statusClient.fetchCached(server), executor)
+                        .exceptionally(e -> {
+                            log.warn("Status warm-up failed for serverId={}: {}", server.id(), e.getMessage());
+                            return null;
+                        }));
+            }
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /** Выполняет фазу в отдельном потоке, результат — её длительность в мс. */
+    private CompletableFuture<Long> timed(String phase, Runnable task) {
+        return CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            task.run();
+            long elapsed = System.nanoTime() - started;
+            record(phase, elapsed);
+            return TimeUnit.NANOSECONDS.toMillis(elapsed);
+        }, executor);
+    }
+
+    private void record(String phase, long nanos) {
+        Timer.builder("bot.startup")
+                .description("Длительность фаз запуска бота")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
     }
 }
@@ -0,0 +1,103 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import com.lndkrsnv.minecraftcontrolbot.state.LeaderElection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Принимает апдейты от Telegram в режиме вебхука.
+ * <p>
+ * Тело запроса разбирается прямо из потока, без промежуточной строки, и сразу
+ * уходит в {@link UpdateDispatcher}. Если очередь чата заполнена, запрос получает 429
+ * и Telegram повторит доставку позже, поэтому потоки веб-сервера никогда не ждут обработчиков.
+ * Ведомый экземпляр апдейты не принимает и отвечает 503, Telegram повторит доставку.
+ * Запрос без заголовка с секретом {@code bot.webhook.secret-token} или с чужим секретом отклоняется.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "bot.webhook", name = "enabled", havingValue = "true")
+public class TelegramWebhookController {
+    private static final Logger log = LoggerFactory.getLogger("MinecraftControlBot");
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final MinecraftControlTelegramBot bot;
+    private final LeaderElection election;
+    private final ObjectReader updateReader = new ObjectMapper().readerFor(Update.class);
+    private final byte[] secret;
+
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter unauthorized;
+    private final Counter malformed;
+    private final Counter notLeader;
+
+    public TelegramWebhookController(MinecraftControlTelegramBot bot, BotProperties botProps, LeaderElection election,
+                                     MeterRegistry meterRegistry) {
+        this.bot = bot;
+        this.election = election;
+        String token = botProps.webhook().secretToken();
+        if (token == null || token.isBlank()) {
+            throw new IllegalStateException("Для режима вебхука нужно указать bot.webhook.secret-token");
+        }
+        this.secret = token.getBytes(StandardCharsets.UTF_8);
+        this.accepted = outcome(meterRegistry, "accepted");
+        this.rejected = outcome(meterRegistry, "rejected");
+        this.unauthorized = outcome(meterRegistry, "unauthorized");
+        this.malformed = outcome(meterRegistry, "malformed");
+        this.notLeader = outcome(meterRegistry, "not_leader");
+    }
+
+    @PostMapping("${bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> receive(HttpServletRequest request) {
+        if (!secretMatches(request.getHeader(SECRET_HEADER))) {
+            unauthorized.increment();
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!election.isLeader()) {
+            notLeader.increment();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        Update update;
+        try (InputStream body = request.getInputStream()) {
+            update = updateReader.readValue(body);
+        } catch (IOException e) {
+            malformed.increment();
+            log.warn("Failed to decode webhook update", e);
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!bot.offerUpdate(update)) {
+            rejected.increment();
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        accepted.increment();
+        return ResponseEntity.ok().build();
+    }
+
+    private boolean secretMatches(String header) {
+        return header != null && MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("telegram.webhook.updates")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
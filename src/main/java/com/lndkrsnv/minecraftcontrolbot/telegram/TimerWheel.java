@@ -0,0 +1,235 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Хешированное колесо таймеров для истечения ожидающих действий, выборов сервера и кулдаунов.
+ * <p>
+ * Добавление и отмена стоят O(1) и не блокируют вызывающий поток: новые и отменённые
+ * таймеры передаются единственному потоку колеса через очереди. На каждом тике поток
+ * обходит только одну ячейку колеса, поэтому стоимость не зависит от общего числа записей,
+ * а каждая запись истекает с точностью до одного тика.
+ * <p>
+ * Задачи выполняются в потоке колеса и должны быть короткими: всё, что ходит в сеть,
+ * нужно отдавать в асинхронную отправку.
+ */
+final class TimerWheel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    /** Задача таймера, получает свой {@link Timeout}, чтобы удалить только свою запись. */
+    @FunctionalInterface
+    interface Task {
+        void run(Timeout timeout);
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startedAt;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    private long tick;
+
+    /**
+     * @param tick      длительность тика, точность срабатывания
+     * @param wheelSize количество ячеек, округляется вверх до степени двойки
+     */
+    TimerWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startedAt = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Планирует задачу через {@code delay}. */
+    Timeout schedule(Task task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    Stats stats() {
+        return new Stats(pending.get(), expired.sum(), late.sum(), TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    @Override
+    public void close() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        long nextTick = startedAt + tickNanos;
+        while (!Thread.currentThread().isInterrupted()) {
+            long sleep = nextTick - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            removeCancelled();
+            transferAdded();
+            expire(wheel[(int) (tick & mask)], System.nanoTime());
+            tick++;
+            nextTick += tickNanos;
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            long ticks = Math.max(0, Math.ceilDiv(timeout.deadline - startedAt, tickNanos) - 1);
+            // Таймер, дедлайн которого уже прошёл, срабатывает на текущем тике
+            long target = Math.max(ticks, tick);
+            timeout.remainingRounds = (target - tick) / wheel.length;
+            wheel[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.expire()) {
+                    long lag = now - timeout.deadline;
+                    expired.increment();
+                    maxLagNanos.accumulate(lag);
+                    if (lag > tickNanos) {
+                        late.increment();
+                    }
+                    try {
+                        timeout.task.run(timeout);
+                    } catch (Exception e) {
+                        log.error("Timer task failed", e);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * @param pending      запланированные и ещё не сработавшие таймеры
+     * @param expired      сработавшие таймеры
+     * @param late         сработавшие позже чем через тик после дедлайна
+     * @param maxLagMillis максимальное опоздание
+     */
+    record Stats(int pending, long expired, long late, long maxLagMillis) {}
+
+    /** Запланированная задача. Отмена после срабатывания ничего не делает. */
+    static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel owner;
+        private final Task task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        // Поля ниже меняет только поток колеса
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimerWheel owner, Task task, long deadline) {
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** @return {@code true}, если таймер был отменён до срабатывания */
+        boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            owner.pending.decrementAndGet();
+            owner.cancelled.add(this);
+            return true;
+        }
+
+        private boolean expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return false;
+            }
+            owner.pending.decrementAndGet();
+            return true;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+/**
+ * Маркерная корзина: {@code capacity} маркеров, пополняется со скоростью {@code ratePerSecond}.
+ * Время передаётся снаружи в наносекундах {@link System#nanoTime()}.
+ */
+final class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double capacity, double ratePerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /** Сколько наносекунд ждать до появления маркера, 0 — если он есть. */
+    synchronized long nanosUntilAvailable(long now) {
+        refill(now);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    synchronized boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /** Обнуляет корзину, например после ответа 429 от Telegram. */
+    synchronized void drain(long now) {
+        refill(now);
+        tokens = 0;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
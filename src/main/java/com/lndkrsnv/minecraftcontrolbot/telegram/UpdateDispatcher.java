@@ -0,0 +1,165 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Раздаёт апдейты по потокам-обработчикам.
+ * <p>
+ * У каждого чата своя очередь, и в каждый момент у чата выполняется не больше одного обработчика,
+ * поэтому апдейты чата обрабатываются строго по порядку — на этом держится логика ожидающих
+ * действий ({@code /say}, {@code /custom_command}). Разные чаты обрабатываются параллельно:
+ * чат, ждущий недоступный сервер, занимает один поток, а остальные чаты идут на свободных.
+ * После каждого апдейта чат встаёт в конец общей очереди, так что при занятых потоках
+ * чаты обслуживаются по кругу.
+ * <p>
+ * Очередь чата ограничена {@link BotProperties.Dispatch#queueCapacity()}: апдейт сверх неё
+ * не принимается, и вызывающий сам решает, что с ним делать. Вызывающий поток никогда не ждёт.
+ */
+public class UpdateDispatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    private final BotProperties.Dispatch config;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder handlerNanos = new LongAdder();
+    private final LongAccumulator maxHandlerNanos = new LongAccumulator(Math::max, 0);
+
+    public UpdateDispatcher(BotProperties.Dispatch config) {
+        this.config = config;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.workers(), config.workers(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "update-dispatch-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Ставит обработчик в очередь чата без ожидания.
+     *
+     * @return {@code false}, если очередь чата заполнена и апдейт не принят
+     */
+    public boolean dispatch(long chatId, Runnable handler) {
+        if (workers.isShutdown()) {
+            rejected.increment();
+            return false;
+        }
+        Task task = new Task(handler, System.nanoTime());
+        while (true) {
+            ChatQueue chat = chats.computeIfAbsent(chatId, ChatQueue::new);
+            synchronized (chat) {
+                if (chat.retired) {
+                    continue;
+                }
+                if (chat.tasks.size() >= config.queueCapacity()) {
+                    rejected.increment();
+                    log.warn("Update queue of chat_id={} is full, rejecting update", chatId);
+                    return false;
+                }
+                chat.tasks.addLast(task);
+                queued.incrementAndGet();
+                dispatched.increment();
+                if (!chat.scheduled) {
+                    chat.scheduled = true;
+                    workers.execute(() -> drain(chat));
+                }
+                return true;
+            }
+        }
+    }
+
+    public Stats stats() {
+        long count = dispatched.sum();
+        return new Stats(count, rejected.sum(), queued.get(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(queueWaitNanos.sum() / count),
+                TimeUnit.NANOSECONDS.toMicros(maxQueueWaitNanos.get()),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(handlerNanos.sum() / count),
+                TimeUnit.NANOSECONDS.toMicros(maxHandlerNanos.get()));
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    /** Выполняет один апдейт чата и, если есть ещё, ставит чат в конец общей очереди. */
+    private void drain(ChatQueue chat) {
+        Task task;
+        synchronized (chat) {
+            task = chat.tasks.pollFirst();
+        }
+        queued.decrementAndGet();
+        run(task);
+        synchronized (chat) {
+            if (!chat.tasks.isEmpty()) {
+                workers.execute(() -> drain(chat));
+            } else {
+                chat.scheduled = false;
+                chat.retired = true;
+                chats.remove(chat.chatId, chat);
+            }
+        }
+    }
+
+    private void run(Task task) {
+        long started = System.nanoTime();
+        long waited = started - task.enqueuedNanos();
+        queueWaitNanos.add(waited);
+        maxQueueWaitNanos.accumulate(waited);
+        try {
+            task.handler().run();
+        } catch (Exception e) {
+            log.error("Update handler failed", e);
+        } finally {
+            long took = System.nanoTime() - started;
+            handlerNanos.add(took);
+            maxHandlerNanos.accumulate(took);
+        }
+    }
+
+    /**
+     * @param dispatched         принятые в обработку апдейты
+     * @param rejected           не принятые из-за переполнения очереди чата
+     * @param queued             апдейты, ждущие обработки сейчас
+     * @param avgQueueWaitMicros среднее время в очереди
+     * @param maxQueueWaitMicros максимальное время в очереди
+     * @param avgHandlerMicros   среднее время обработки
+     * @param maxHandlerMicros   максимальное время обработки
+     */
+    public record Stats(long dispatched, long rejected, int queued,
+                        long avgQueueWaitMicros, long maxQueueWaitMicros,
+                        long avgHandlerMicros, long maxHandlerMicros) {}
+
+    private record Task(Runnable handler, long enqueuedNanos) {}
+
+    private static final class ChatQueue {
+        private final long chatId;
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        /** Очередь снята с карты, новые апдейты нужно ставить в новую. */
+        private boolean retired;
+
+        private ChatQueue(long chatId) {
+            this.chatId = chatId;
+        }
+    }
+}
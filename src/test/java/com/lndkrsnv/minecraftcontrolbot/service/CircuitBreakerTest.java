@@ -0,0 +1,105 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.lndkrsnv.minecraftcontrolbot.service.CircuitBreaker.State.CLOSED;
+import static com.lndkrsnv.minecraftcontrolbot.service.CircuitBreaker.State.HALF_OPEN;
+import static com.lndkrsnv.minecraftcontrolbot.service.CircuitBreaker.State.OPEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    private final List<String> transitions = new CopyOnWriteArrayList<>();
+    private final CircuitBreaker breaker = new CircuitBreaker("S1", 3, TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS),
+            (serverId, from, to) -> transitions.add(from + "->" + to));
+
+    @Test
+    void opensOnlyAfterThresholdFailuresInARow() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.rejected());
+        assertEquals(List.of("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    void letsExactlyOneProbeThroughAndClosesOnSuccess() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(HALF_OPEN, breaker.state());
+        breaker.onSuccess();
+
+        assertEquals(CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    void failedProbeReopensForAnotherPeriod() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.secondsUntilProbe());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), transitions);
+    }
+
+    @Test
+    void ignoredProbeCanBeRetriedImmediately() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onIgnored();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void probeThatNeverReportsDoesNotBlockForever() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_MILLIS + 10);
+        // Пробный запрос завершился Error, и о нём никто не сообщил
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CLOSED, breaker.state());
+        assertEquals(List.of("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(OPEN, breaker.state());
+    }
+}
@@ -0,0 +1,133 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.lndkrsnv.minecraftcontrolbot.service.CommandPriority.ADMIN;
+import static com.lndkrsnv.minecraftcontrolbot.service.CommandPriority.BACKGROUND;
+import static com.lndkrsnv.minecraftcontrolbot.service.CommandPriority.OPERATOR;
+import static com.lndkrsnv.minecraftcontrolbot.service.CommandPriority.PLAYER;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairCommandQueueTest {
+
+    private final FairCommandQueue<Command> queue = new FairCommandQueue<>(16);
+
+    @Test
+    void takesHigherPriorityFirst() throws InterruptedException {
+        offer("background", 0, BACKGROUND);
+        offer("player", 1, PLAYER);
+        offer("operator", 2, OPERATOR);
+        offer("admin", 3, ADMIN);
+
+        assertEquals(List.of("admin", "operator", "player", "background"), takeAll());
+    }
+
+    @Test
+    void servesChatsOfOnePriorityInTurn() throws InterruptedException {
+        offer("a1", 1, PLAYER);
+        offer("a2", 1, PLAYER);
+        offer("a3", 1, PLAYER);
+        offer("b1", 2, PLAYER);
+        offer("b2", 2, PLAYER);
+        offer("c1", 3, PLAYER);
+
+        assertEquals(List.of("a1", "b1", "c1", "a2", "b2", "a3"), takeAll());
+    }
+
+    @Test
+    void promotesWaitingCommandOnlyUpwards() throws InterruptedException {
+        Command history = offer("history", 0, BACKGROUND);
+        offer("player", 1, PLAYER);
+        Command operator = offer("operator", 2, OPERATOR);
+
+        queue.promote(history, ADMIN);
+        queue.promote(operator, BACKGROUND);
+
+        assertEquals(ADMIN, history.priority());
+        assertEquals(OPERATOR, operator.priority());
+        assertArrayEquals(new int[]{1, 1, 1, 0}, queue.sizes());
+        assertEquals(List.of("history", "operator", "player"), takeAll());
+    }
+
+    @Test
+    void removedCommandIsNotTaken() throws InterruptedException {
+        offer("a1", 1, PLAYER);
+        Command cancelled = offer("a2", 1, PLAYER);
+        offer("a3", 1, PLAYER);
+
+        assertTrue(queue.remove(cancelled));
+        assertFalse(queue.remove(cancelled));
+        // Уже удалённую команду поднять нельзя
+        queue.promote(cancelled, ADMIN);
+
+        assertEquals(2, queue.size());
+        assertEquals(List.of("a1", "a3"), takeAll());
+    }
+
+    @Test
+    void rejectsOverCapacityAndDrainsAfterClose() throws InterruptedException {
+        var small = new FairCommandQueue<Command>(2);
+        assertTrue(small.offer(new Command("a", 1, PLAYER)));
+        assertTrue(small.offer(new Command("b", 2, PLAYER)));
+        assertFalse(small.offer(new Command("c", 3, ADMIN)));
+
+        small.close();
+
+        assertFalse(small.offer(new Command("d", 4, ADMIN)));
+        assertEquals("a", small.take().name());
+        assertEquals("b", small.take().name());
+        assertNull(small.take());
+    }
+
+    private Command offer(String name, long chatId, CommandPriority priority) {
+        Command command = new Command(name, chatId, priority);
+        assertTrue(queue.offer(command));
+        return command;
+    }
+
+    private List<String> takeAll() throws InterruptedException {
+        List<String> taken = new ArrayList<>();
+        while (queue.size() > 0) {
+            taken.add(queue.take().name());
+        }
+        return taken;
+    }
+
+    private static final class Command implements FairCommandQueue.Entry {
+        private final String name;
+        private final long chatId;
+        private CommandPriority priority;
+
+        private Command(String name, long chatId, CommandPriority priority) {
+            this.name = name;
+            this.chatId = chatId;
+            this.priority = priority;
+        }
+
+        String name() {
+            return name;
+        }
+
+        @Override
+        public long chatId() {
+            return chatId;
+        }
+
+        @Override
+        public CommandPriority priority() {
+            return priority;
+        }
+
+        @Override
+        public void priority(CommandPriority priority) {
+            this.priority = priority;
+        }
+    }
+}
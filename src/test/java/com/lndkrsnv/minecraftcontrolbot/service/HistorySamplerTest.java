@@ -0,0 +1,46 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistorySamplerTest {
+
+    @Test
+    void parsesOverallLineOfNeoForgeTps() {
+        String response = """
+                Dim minecraft:overworld (minecraft:overworld): Mean tick time: 12.345 ms. Mean TPS: 20.000
+                Dim minecraft:the_nether (minecraft:the_nether): Mean tick time: 0.512 ms. Mean TPS: 20.000
+                Overall: Mean tick time: 61.234 ms. Mean TPS: 16.331""";
+
+        assertEquals(16.331, HistorySampler.parseTps(response));
+    }
+
+    @Test
+    void takesLastDimensionWhenThereIsNoOverallLine() {
+        String response = """
+                Dim 0 (overworld): Mean tick time: 40.1 ms. Mean TPS: 19.5
+                Dim 1 (the_end): Mean tick time: 0.3 ms. Mean TPS: 18.25""";
+
+        assertEquals(18.25, HistorySampler.parseTps(response));
+    }
+
+    @Test
+    void parsesOneMinuteValueOfPaperTpsWithColorCodes() {
+        assertEquals(19.5, HistorySampler.parseTps("§6TPS from last 1m, 5m, 15m: §a*19.5, §a19.98, §a20.0"));
+    }
+
+    @Test
+    void acceptsDecimalComma() {
+        assertEquals(19.5, HistorySampler.parseTps("Overall: Mean TPS: 19,5"));
+    }
+
+    @Test
+    void returnsNanWhenResponseHasNoTps() {
+        assertTrue(Double.isNaN(HistorySampler.parseTps(null)));
+        assertTrue(Double.isNaN(HistorySampler.parseTps("")));
+        assertTrue(Double.isNaN(HistorySampler.parseTps("Unknown or incomplete command, see below for error")));
+        assertTrue(Double.isNaN(HistorySampler.parseTps("TPS: n/a")));
+    }
+}
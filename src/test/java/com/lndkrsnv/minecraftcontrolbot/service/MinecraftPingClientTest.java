@@ -0,0 +1,115 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MinecraftPingClientTest {
+
+    private static final String STATUS_JSON = """
+            {"version":{"name":"1.21.1","protocol":767},
+             "players":{"max":20,"online":2,"sample":[{"name":"Steve","id":"uuid-1"},{"name":"Alex","id":"uuid-2"}]},
+             "description":{"text":"§aAll the ","extra":[{"text":"Mods 10"}]}}
+            """;
+
+    private final MinecraftPingClient client = new MinecraftPingClient(JsonMapper.builder().build(), Duration.ofSeconds(2));
+
+    @Test
+    void readsStatusFromFakeServer() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            CompletableFuture<String> handshakeHost = CompletableFuture.supplyAsync(() -> serveOnce(server, STATUS_JSON));
+
+            StatusResponse status = client.ping("127.0.0.1", server.getLocalPort());
+
+            assertEquals("127.0.0.1", handshakeHost.get(2, TimeUnit.SECONDS));
+            assertEquals("1.21.1", status.version().name());
+            assertEquals(767, status.version().protocol());
+            assertEquals(2, status.players().online());
+            assertEquals(20, status.players().max());
+            assertEquals("Alex", status.players().sample().get(1).name());
+            assertEquals("All the Mods 10", status.description());
+        }
+    }
+
+    @Test
+    void readsLargeStatusSpanningSeveralReads() throws Exception {
+        String motd = "x".repeat(100_000);
+        try (ServerSocket server = new ServerSocket(0)) {
+            CompletableFuture.supplyAsync(() -> serveOnce(server, "{\"description\":\"" + motd + "\"}"));
+
+            StatusResponse status = client.ping("127.0.0.1", server.getLocalPort());
+
+            assertEquals(motd, status.description());
+        }
+    }
+
+    @Test
+    void timesOutWhenServerIsSilent() throws Exception {
+        var fastClient = new MinecraftPingClient(JsonMapper.builder().build(), Duration.ofMillis(200));
+        try (ServerSocket server = new ServerSocket(0)) {
+            assertThrows(SocketTimeoutException.class, () -> fastClient.ping("127.0.0.1", server.getLocalPort()));
+        }
+    }
+
+    private static String serveOnce(ServerSocket server, String json) {
+        try (Socket socket = server.accept()) {
+            var in = new DataInputStream(socket.getInputStream());
+            readVarInt(in);
+            assertEquals(0x00, readVarInt(in));
+            readVarInt(in);
+            byte[] host = new byte[readVarInt(in)];
+            in.readFully(host);
+            in.readUnsignedShort();
+            assertEquals(1, readVarInt(in));
+            assertEquals(1, readVarInt(in));
+            assertEquals(0x00, readVarInt(in));
+
+            byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+            var body = new ByteArrayOutputStream();
+            writeVarInt(body, 0x00);
+            writeVarInt(body, payload.length);
+            body.write(payload);
+            OutputStream out = socket.getOutputStream();
+            var packet = new ByteArrayOutputStream();
+            writeVarInt(packet, body.size());
+            body.writeTo(packet);
+            out.write(packet.toByteArray());
+            out.flush();
+            return new String(host, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,186 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RconConnectionTest {
+
+    private static final String PASSWORD = "secret";
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    private final ServerSocket server = newServerSocket();
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void matchesRepliesByRequestId() throws Exception {
+        CompletableFuture<Void> served = serve(Map.of());
+        try (RconConnection rcon = open()) {
+            assertEquals("ok: list", rcon.command("list"));
+            assertEquals("ok: time query day", rcon.command("time query day"));
+
+            // Ответ с чужим id означает, что соединение рассинхронизировано
+            IOException e = assertThrows(IOException.class, () -> rcon.command("wrong-id"));
+            assertTrue(e.getMessage().startsWith("Unexpected RCON response id"), e.getMessage());
+        }
+        served.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void joinsReplySplitIntoSeveralPackets() throws Exception {
+        String list = "x".repeat(10_000);
+        CompletableFuture<Void> served = serve(Map.of("list", list));
+        try (RconConnection rcon = open()) {
+            assertEquals(list, rcon.command("list"));
+            // Соединение остаётся пригодным для следующей команды
+            assertEquals("ok: seed", rcon.command("seed"));
+        }
+        served.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void decodesCharacterSplitBetweenPackets() throws Exception {
+        // Первая часть ответа обрывается посреди двухбайтовой «я»
+        String reply = "x" + "я".repeat(3000);
+        CompletableFuture<Void> served = serve(Map.of("list", reply));
+        try (RconConnection rcon = open()) {
+            StringBuilder streamed = new StringBuilder();
+            rcon.stream("list", streamed::append);
+
+            assertEquals(reply, streamed.toString());
+            assertFalse(streamed.toString().contains("�"), "символ на границе пакетов не должен портиться");
+        }
+        served.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void batchReturnsRepliesReceivedBeforeStop() throws Exception {
+        CompletableFuture<Void> served = serve(Map.of());
+        RconConnection rcon = open();
+
+        var e = assertThrows(RconConnection.PartialReplyException.class,
+                () -> rcon.batch(List.of("save-all", "stop", "list")));
+
+        List<RconReply> replies = e.replies();
+        assertEquals(3, replies.size());
+        assertEquals(new RconReply("save-all", "ok: save-all", replies.get(0).took(), true), replies.get(0));
+        assertEquals(new RconReply("stop", "Stopping the server", Duration.ZERO, false), replies.get(1));
+        assertEquals(new RconReply("list", "", Duration.ZERO, false), replies.get(2));
+        assertFalse(rcon.alive(), "после обрыва соединение должно быть закрыто");
+        served.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rejectsWrongPassword() throws Exception {
+        CompletableFuture<Void> served = serve(Map.of());
+
+        assertThrows(RconConnection.RconAuthenticationException.class,
+                () -> RconConnection.open("127.0.0.1", server.getLocalPort(), "wrong", TIMEOUT));
+        served.get(2, TimeUnit.SECONDS);
+    }
+
+    private RconConnection open() throws IOException {
+        return RconConnection.open("127.0.0.1", server.getLocalPort(), PASSWORD, TIMEOUT);
+    }
+
+    /**
+     * Отвечает на одно соединение как RconClient сервера Minecraft: читает пакет одним {@code read}
+     * и рвёт соединение, если в прочитанном не ровно один пакет; длинный ответ режет по 4096 байт.
+     * Завершается ошибкой, если клиент отправил несколько пакетов одной записью.
+     */
+    private CompletableFuture<Void> serve(Map<String, String> replies) {
+        return CompletableFuture.runAsync(() -> {
+            try (Socket socket = server.accept()) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                byte[] buf = new byte[1460];
+                while (true) {
+                    int read = in.read(buf, 0, buf.length);
+                    if (read < 0) {
+                        return;
+                    }
+                    assertEquals(readIntLE(buf, 0), read - 4, "клиент отправил не ровно один пакет");
+                    int id = readIntLE(buf, 4);
+                    int type = readIntLE(buf, 8);
+                    String payload = new String(buf, 12, read - 14, StandardCharsets.UTF_8);
+                    if (type == 3) {
+                        writePacket(out, payload.equals(PASSWORD) ? id : -1, 2, new byte[0]);
+                        if (!payload.equals(PASSWORD)) {
+                            return;
+                        }
+                    } else if (type != 2) {
+                        writePacket(out, id, 0, ("Unknown request " + Integer.toHexString(type)).getBytes(StandardCharsets.UTF_8));
+                    } else if (payload.equals("stop")) {
+                        writePacket(out, id, 0, "Stopping the server".getBytes(StandardCharsets.UTF_8));
+                        return;
+                    } else if (payload.equals("wrong-id")) {
+                        writePacket(out, id + 100, 0, new byte[0]);
+                    } else {
+                        byte[] reply = replies.getOrDefault(payload, "ok: " + payload).getBytes(StandardCharsets.UTF_8);
+                        int offset = 0;
+                        do {
+                            int length = Math.min(4096, reply.length - offset);
+                            writePacket(out, id, 0, Arrays.copyOfRange(reply, offset, offset + length));
+                            offset += length;
+                        } while (offset < reply.length);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static void writePacket(OutputStream out, int id, int type, byte[] body) throws IOException {
+        byte[] packet = new byte[14 + body.length];
+        writeIntLE(packet, 0, 10 + body.length);
+        writeIntLE(packet, 4, id);
+        writeIntLE(packet, 8, type);
+        System.arraycopy(body, 0, packet, 12, body.length);
+        out.write(packet);
+        out.flush();
+    }
+
+    private static void writeIntLE(byte[] b, int offset, int value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >>> 8);
+        b[offset + 2] = (byte) (value >>> 16);
+        b[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] b, int offset) {
+        return (b[offset] & 0xFF)
+                | (b[offset + 1] & 0xFF) << 8
+                | (b[offset + 2] & 0xFF) << 16
+                | (b[offset + 3] & 0xFF) << 24;
+    }
+
+    private static ServerSocket newServerSocket() {
+        try {
+            return new ServerSocket(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
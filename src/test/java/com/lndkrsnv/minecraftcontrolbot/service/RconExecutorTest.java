@@ -0,0 +1,69 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RconExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RconExecutor executor = new RconExecutor(new RconProperties.Executor(1, 4, null), meterRegistry);
+
+    @AfterEach
+    void stop() {
+        executor.close();
+    }
+
+    @Test
+    void workerSurvivesInterruptThatArrivesAfterItsCommand() throws Exception {
+        assertEquals("first", executor.submit("S1", () -> "first").get(1, TimeUnit.SECONDS));
+        Thread worker = worker("rcon-S1-1");
+
+        // Так приходит прерывание от отмены по таймауту, опоздавшее к уже закончившейся команде
+        worker.interrupt();
+        Thread.sleep(50);
+
+        assertEquals("second", executor.submit("S1", () -> "second").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void retiredLaneFinishesAcceptedCommandsAndStopsItsWorker() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> running = executor.submit("S1", () -> {
+            release.await();
+            return "running";
+        });
+        Future<String> queued = executor.submit("S1", () -> "queued");
+        Thread worker = worker("rcon-S1-1");
+
+        executor.retire("S1");
+        assertFalse(executor.stats().containsKey("S1"), "удалённый сервер не должен оставаться в статистике");
+        assertEquals(0, meterRegistry.find("rcon.executor.in_flight").tag("server", "S1").meters().size());
+
+        release.countDown();
+        assertEquals("running", running.get(1, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(1, TimeUnit.SECONDS));
+        worker.join(1000);
+        assertFalse(worker.isAlive(), "поток закрытой очереди должен завершиться");
+
+        // Изменённый сервер получает новую очередь при следующей команде
+        assertEquals("next", executor.submit("S1", () -> "next").get(1, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.find("rcon.executor.in_flight").tag("server", "S1").meters().size());
+    }
+
+    private static Thread worker(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,100 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.CircuitBreakerProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.RconProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.ServersProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ServerRegistryTest {
+
+    private final List<ServersReloadedEvent> events = new CopyOnWriteArrayList<>();
+    private ServerRegistry registry;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void stop() {
+        registry.shutdown();
+    }
+
+    @Test
+    void reportsAddedRemovedAndChangedServers() throws IOException {
+        Path file = dir.resolve("servers.yaml");
+        Files.writeString(file, """
+                rcon:
+                  servers:
+                    keep: {host: keep.local, port: 25575, password: p}
+                    edit: {host: edit.local, port: 25575, password: p}
+                    drop: {host: drop.local, port: 25575, password: p}
+                """);
+        registry = registry(file);
+        ServerHandle keep = registry.get("keep");
+        ServerHandle edit = registry.get("edit");
+
+        Files.writeString(file, """
+                rcon:
+                  servers:
+                    keep: {host: keep.local, port: 25575, password: p}
+                    edit: {host: edit.local, port: 25576, password: p}
+                    fresh: {host: fresh.local, port: 25575, password: p}
+                """);
+        registry.reload();
+
+        assertEquals(List.of(new ServersReloadedEvent(List.of("fresh"), List.of("drop"), List.of("edit"))), events);
+        assertEquals(List.of("keep", "edit", "fresh"), registry.all().stream().map(ServerHandle::id).toList());
+        assertNull(registry.get("drop"));
+        // Чаты, выбравшие неизменившийся сервер, продолжают ссылаться на актуальный handle
+        assertSame(keep, registry.get("keep"), "handle неизменившегося сервера должен сохраниться");
+        assertNotSame(edit, registry.get("edit"));
+        assertEquals(25576, registry.get("edit").rcon().port());
+    }
+
+    @Test
+    void unchangedFileIsNotReported() throws IOException {
+        Path file = dir.resolve("servers.yaml");
+        Files.writeString(file, """
+                rcon:
+                  servers:
+                    S1: {host: s1.local, port: 25575, password: p, title: Первый}
+                status:
+                  servers:
+                    S1: {url: "http://s1.local/status"}
+                """);
+        registry = registry(file);
+        ServerHandle s1 = registry.get("S1");
+
+        assertEquals("Список серверов не изменился", registry.reload());
+
+        assertEquals(List.of(), events);
+        assertSame(s1, registry.get("S1"));
+        assertEquals("Первый", s1.title());
+    }
+
+    private ServerRegistry registry(Path file) {
+        return new ServerRegistry(
+                new RconProperties(null, null, null, null, null),
+                new StatusProperties(null, null, null, null),
+                new ServersProperties(file.toString(), Duration.ofHours(1), 0),
+                new CircuitBreakers(new CircuitBreakerProperties(0, null), new SimpleMeterRegistry()),
+                new StandardEnvironment(),
+                event -> events.add((ServersReloadedEvent) event));
+    }
+}
@@ -0,0 +1,151 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.config.CircuitBreakerProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.StatusProperties;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StatusClientTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private final HttpServer server = startServer();
+    private StatusClient client;
+
+    @AfterEach
+    void stop() {
+        gate.countDown();
+        server.stop(0);
+        handlers.shutdownNow();
+        client.shutdown();
+    }
+
+    @Test
+    void servesFreshResponseFromCacheUntilTtlExpires() throws InterruptedException {
+        client = client(new StatusProperties.Cache(Duration.ofMillis(300), false, null));
+        ServerHandle s1 = handle("S1");
+
+        StatusSnapshot first = client.fetchCached(s1);
+        assertSame(first, client.fetchCached(s1));
+        assertEquals(1, requests.get());
+
+        Thread.sleep(350);
+        StatusSnapshot second = client.fetchCached(s1);
+
+        assertEquals(2, requests.get());
+        assertEquals("ответ 2", second.response().description());
+        assertEquals(new StatusClient.CacheStats(1, 0, 2, 0), client.cacheStats());
+    }
+
+    @Test
+    void returnsStaleResponseAndRefreshesInBackground() throws InterruptedException {
+        client = client(new StatusProperties.Cache(Duration.ofMillis(100), true, Duration.ofSeconds(10)));
+        ServerHandle s1 = handle("S1");
+        StatusSnapshot first = client.fetchCached(s1);
+        Thread.sleep(150);
+
+        // Сервер не отвечает, но устаревший ответ отдаётся без ожидания
+        gate = new CountDownLatch(1);
+        assertSame(first, client.fetchCached(s1));
+        assertSame(first, client.fetchCached(s1));
+        // Второй устаревший вызов присоединился к уже идущему обновлению
+        assertEquals(1, client.cacheStats().coalesced());
+        waitUntil(() -> requests.get() == 2);
+
+        gate.countDown();
+        waitUntil(() -> client.fetchCached(s1) != first);
+        assertEquals("ответ 2", client.fetchCached(s1).response().description());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneRequest() throws Exception {
+        client = client(new StatusProperties.Cache(Duration.ofSeconds(10), false, null));
+        ServerHandle s1 = handle("S1");
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<StatusSnapshot>> calls = IntStream.range(0, 4)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> client.fetchCached(s1), handlers))
+                .toList();
+        waitUntil(() -> client.cacheStats().coalesced() == 3);
+        gate.countDown();
+
+        StatusSnapshot snapshot = calls.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<StatusSnapshot> call : calls) {
+            assertSame(snapshot, call.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, requests.get());
+        assertEquals(4, client.cacheStats().misses());
+    }
+
+    private StatusClient client(StatusProperties.Cache cache) {
+        return new StatusClient(new StatusProperties(null, cache, null, null),
+                JsonMapper.builder().build(), new SimpleMeterRegistry());
+    }
+
+    private ServerHandle handle(String serverId) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/status/" + serverId;
+        CircuitBreakers breakers = new CircuitBreakers(new CircuitBreakerProperties(0, null), new SimpleMeterRegistry());
+        return new ServerHandle(serverId, serverId, null,
+                new StatusProperties.Server(url, null, null, 0), breakers.forServer(serverId));
+    }
+
+    private HttpServer startServer() {
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            http.createContext("/status/", this::respond);
+            http.setExecutor(handlers);
+            http.start();
+            return http;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int n = requests.incrementAndGet();
+            gate.await(5, TimeUnit.SECONDS);
+            byte[] body = ("{\"description\":\"ответ " + n + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("условие не выполнилось за 5 секунд");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lndkrsnv.minecraftcontrolbot.service;
+
+import com.lndkrsnv.minecraftcontrolbot.status.PlayerSample;
+import com.lndkrsnv.minecraftcontrolbot.status.PlayersInfo;
+import com.lndkrsnv.minecraftcontrolbot.status.StatusResponse;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.exc.JacksonIOException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatusDecoderTest {
+
+    private final StatusDecoder decoder = new StatusDecoder(JsonMapper.builder().build());
+
+    @Test
+    void reusesValuesSeenInEarlierResponses() {
+        StatusResponse first = decode("""
+                {"version":{"name":"1.21.1","protocol":767},"players":{"max":20,"online":1,
+                 "sample":[{"name":"Steve","id":"uuid-1"}]},"description":"Привет"}
+                """);
+        StatusResponse second = decode("""
+                {"version":{"name":"1.21.1","protocol":767},"players":{"max":20,"online":1,
+                 "sample":[{"name":"Steve","id":"uuid-1"}]},"description":"Привет"}
+                """);
+
+        assertSame(first.version(), second.version());
+        assertSame(first.description(), second.description());
+        assertSame(first.players().sample().get(0), second.players().sample().get(0));
+    }
+
+    @Test
+    void clearsInternerWhenItOverflows() {
+        PlayerSample steve = new PlayerSample("Steve", "uuid-1");
+        assertSame(steve, decoder.dedupe(withSample(steve)).players().sample().get(0));
+        assertSame(steve, decoder.dedupe(withSample(new PlayerSample("Steve", "uuid-1"))).players().sample().get(0));
+
+        // Переполнение очищает таблицу целиком, а не растит её без предела
+        for (int i = 0; i < StatusDecoder.MAX_INTERNED; i++) {
+            decoder.dedupe(withSample(new PlayerSample("player" + i, "uuid-" + i)));
+        }
+
+        PlayerSample again = new PlayerSample("Steve", "uuid-1");
+        assertNotSame(steve, decoder.dedupe(withSample(again)).players().sample().get(0));
+        assertSame(again, decoder.dedupe(withSample(new PlayerSample("Steve", "uuid-1"))).players().sample().get(0));
+    }
+
+    @Test
+    void errorShowsOnlyStartOfInvalidBody() {
+        String head = "<html>" + "ж".repeat(StatusDecoder.SNIPPET_BYTES);
+        String body = head + "<tail-marker>";
+
+        var e = assertThrows(IllegalStateException.class, () -> decode(body));
+
+        String snippet = e.getMessage().substring(e.getMessage().indexOf("): ") + 3);
+        assertTrue(snippet.startsWith("<html>жжж"), e.getMessage());
+        assertFalse(snippet.contains("tail-marker"), "в сообщение должно попадать только начало тела");
+        assertTrue(snippet.getBytes(StandardCharsets.UTF_8).length <= StatusDecoder.SNIPPET_BYTES + 3,
+                "фрагмент не должен быть длиннее " + StatusDecoder.SNIPPET_BYTES + " байт");
+    }
+
+    @Test
+    void readErrorIsNotReportedAsInvalidPayload() {
+        InputStream broken = new SequenceInputStream(
+                new ByteArrayInputStream("{\"description\":\"обор".getBytes(StandardCharsets.UTF_8)),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                });
+
+        assertThrows(JacksonIOException.class, () -> decoder.decode(broken));
+    }
+
+    private StatusResponse decode(String json) {
+        return decoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static StatusResponse withSample(PlayerSample player) {
+        return new StatusResponse(null, null, new PlayersInfo(20, 1, List.of(player)), null);
+    }
+}
@@ -0,0 +1,164 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalStateBackendTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysStateAfterRestart() {
+        Path file = dir.resolve("state.log");
+        ChatStateStore store = open(file, 1024 * 1024);
+        store.serverSelected(1, "A");
+        store.serverSelected(2, "B");
+        store.serverSelected(1, "C");
+        store.serverSelected(4, "D");
+        store.serverCleared(4);
+        store.subscribed("A", 1);
+        store.subscribed("A", 2);
+        store.unsubscribed("A", 1);
+        store.pendingSet(3, "SAY", 7, 100);
+        store.settingSaved("hash", 42);
+        store.close();
+
+        ChatStateStore.Snapshot snapshot = open(file, 1024 * 1024).loaded();
+
+        assertEquals(Map.of(1L, "C", 2L, "B"), snapshot.selectedServers());
+        assertEquals(Map.of("A", Set.of(2L)), snapshot.subscribers());
+        assertEquals(new ChatStateStore.PendingState("SAY", 7, 100), snapshot.pending().get(3L));
+        assertEquals(42L, snapshot.settings().get("hash"));
+    }
+
+    @Test
+    void followerSkipsTornTailWithoutTouchingFile() throws IOException {
+        Path file = dir.resolve("state.log");
+        ChatStateStore store = open(file, 1024 * 1024);
+        store.serverSelected(1, "A");
+        store.close();
+        // Заголовок записи длиной 100 байт, от которой ведущий успел записать только 3
+        Files.write(file, new byte[]{100, 0, 0, 0, 1, 2, 3, 4, 9, 9, 9}, StandardOpenOption.APPEND);
+        byte[] before = Files.readAllBytes(file);
+
+        ChatStateStore follower = open(file, 1024 * 1024, () -> 0);
+        assertEquals(Map.of(1L, "A"), follower.loaded().selectedServers());
+        follower.serverSelected(2, "B");
+        follower.close();
+
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    void newLeaderReplacesLogWithTornTail() throws IOException {
+        Path file = dir.resolve("state.log");
+        ChatStateStore store = open(file, 1024 * 1024, () -> 1);
+        store.serverSelected(1, "A");
+        store.close();
+        Files.write(file, new byte[]{100, 0, 0, 0, 1, 2, 3, 4, 9, 9, 9}, StandardOpenOption.APPEND);
+
+        store = open(file, 1024 * 1024, () -> 2);
+        assertEquals(Map.of(1L, "A"), store.loaded().selectedServers());
+        store.serverSelected(2, "B");
+        store.close();
+
+        assertEquals(Map.of(1L, "A", 2L, "B"), open(file, 1024 * 1024, () -> 0).loaded().selectedServers());
+    }
+
+    @Test
+    void formerLeaderCannotWriteIntoLogOfNewLeader() throws InterruptedException {
+        Path file = dir.resolve("state.log");
+        // Прежний ведущий не заметил потерю аренды и продолжает писать с номером 1
+        ChatStateStore former = open(file, 1024 * 1024, () -> 1);
+        former.serverSelected(1, "A");
+        waitUntil(() -> open(file, 1024 * 1024, () -> 0).loaded().selectedServers().containsKey(1L));
+
+        ChatStateStore current = open(file, 1024 * 1024, () -> 2);
+        assertEquals(Map.of(1L, "A"), current.loaded().selectedServers());
+        current.serverSelected(2, "B");
+        current.close();
+        former.serverSelected(3, "stale");
+        former.close();
+
+        assertEquals(Map.of(1L, "A", 2L, "B"), open(file, 1024 * 1024, () -> 0).loaded().selectedServers());
+    }
+
+    @Test
+    void stopsAtRecordWithBadChecksum() throws IOException {
+        Path file = dir.resolve("state.log");
+        ChatStateStore store = open(file, 1024 * 1024);
+        store.serverSelected(1, "A");
+        store.serverSelected(2, "B");
+        store.close();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(file, bytes);
+
+        assertEquals(Map.of(1L, "A"), open(file, 1024 * 1024).loaded().selectedServers());
+    }
+
+    @Test
+    void compactsLogToLiveState() throws IOException {
+        Path file = dir.resolve("state.log");
+        ChatStateStore store = open(file, 1024);
+        for (int i = 0; i < 1000; i++) {
+            store.serverSelected(i % 3, "S" + i);
+        }
+        store.close();
+
+        // 1000 записей по ~30 байт без сжатия заняли бы ~30 КБ
+        assertTrue(Files.size(file) < 4 * 1024, "журнал не сжат: " + Files.size(file));
+        assertEquals(Map.of(0L, "S999", 1L, "S997", 2L, "S998"), open(file, 1024).loaded().selectedServers());
+    }
+
+    @Test
+    void keepsWritingWhenCompactionFails() throws IOException {
+        Path file = dir.resolve("state.log");
+        // Снимок не удастся создать: на месте временного файла каталог
+        Files.createDirectories(dir.resolve("state.log.tmp"));
+        ChatStateStore store = open(file, 1024);
+        for (int i = 0; i < 1000; i++) {
+            store.serverSelected(i % 3, "S" + i);
+        }
+        store.close();
+
+        assertTrue(Files.size(file) > 1024);
+        assertEquals(Map.of(0L, "S999", 1L, "S997", 2L, "S998"), open(file, 1024).loaded().selectedServers());
+    }
+
+    private static ChatStateStore open(Path file, long compactAfterBytes) {
+        return open(file, compactAfterBytes, () -> 1);
+    }
+
+    private static ChatStateStore open(Path file, long compactAfterBytes, LongSupplier fence) {
+        return new ChatStateStore(new JournalStateBackend(
+                new BotProperties.Persistence(file.toString(), Duration.ofMillis(10), compactAfterBytes), fence), fence);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("условие не выполнилось за 5 секунд");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.lndkrsnv.minecraftcontrolbot.state;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderElectionTest {
+
+    private static final Duration TTL = Duration.ofMillis(300);
+
+    private final InMemoryLeaseStore leases = new InMemoryLeaseStore();
+    private final List<LeaderElection> started = new ArrayList<>();
+    private final List<Boolean> eventsA = new CopyOnWriteArrayList<>();
+    private final List<Boolean> eventsB = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void stop() {
+        started.forEach(LeaderElection::stop);
+    }
+
+    @Test
+    void firstInstanceLeadsAndSecondFollows() throws InterruptedException {
+        LeaderElection a = election("a", leases, eventsA::add);
+        LeaderElection b = election("b", leases, eventsB::add);
+
+        assertTrue(a.isLeader());
+        assertEquals(1, a.epoch());
+        assertFalse(b.isLeader());
+        assertEquals(0, b.epoch());
+
+        // Продления ведущего не отдают аренду ведомому и не меняют её номер
+        Thread.sleep(TTL.toMillis() * 2);
+        assertEquals(1, a.epoch());
+        assertEquals(0, b.epoch());
+        assertEquals(List.of(), eventsA);
+        assertEquals(List.of(), eventsB);
+    }
+
+    @Test
+    void takesOverExpiredLeaseWithNewEpoch() throws InterruptedException {
+        // Ведущий не запущен, то есть не продлевает аренду, как упавший процесс
+        LeaderElection a = new LeaderElection(cluster("a"), leases, event -> {}, new SimpleMeterRegistry());
+        LeaderElection b = election("b", leases, eventsB::add);
+        assertTrue(a.isLeader());
+
+        waitUntil(b::isLeader);
+
+        assertEquals(2, b.epoch());
+        waitUntil(() -> !eventsB.isEmpty());
+        assertEquals(List.of(true), eventsB);
+        assertEquals(0, leases.tryAcquire(LeaderElection.LEASE, "a", TTL));
+    }
+
+    @Test
+    void releasedLeaseIsTakenWithNewEpoch() throws InterruptedException {
+        LeaderElection a = election("a", leases, eventsA::add);
+        LeaderElection b = election("b", leases, eventsB::add);
+
+        a.stepDown();
+
+        assertFalse(a.isLeader());
+        waitUntil(() -> b.isLeader() || a.isLeader());
+        // Отпустивший аренду экземпляр тоже мог забрать её первым, но уже с новым номером
+        assertEquals(2, Math.max(a.epoch(), b.epoch()));
+        waitUntil(() -> !eventsA.isEmpty());
+        assertEquals(false, eventsA.get(0));
+    }
+
+    @Test
+    void stepsDownWhenLeaseCannotBeRenewed() throws InterruptedException {
+        List<String> roles = new CopyOnWriteArrayList<>();
+        FailingLeaseStore failing = new FailingLeaseStore(leases);
+        LeaderElection a = election("a", failing, leader -> roles.add("a:" + leader));
+        LeaderElection b = election("b", leases, leader -> roles.add("b:" + leader));
+        assertTrue(a.isLeader());
+
+        failing.failing = true;
+        waitUntil(b::isLeader);
+
+        // Ведущий уходит раньше, чем истекает аренда, поэтому два ведущих не работают одновременно
+        assertEquals(0, a.epoch());
+        assertEquals(2, b.epoch());
+        waitUntil(() -> roles.size() == 2);
+        assertEquals(List.of("a:false", "b:true"), roles);
+    }
+
+    @Test
+    void newLeaderReloadsStateAndFormerLeaderWritesAreDropped() throws InterruptedException {
+        InMemoryStateBackend backend = new InMemoryStateBackend();
+        LeaderElection a = election("a", leases, eventsA::add);
+        LeaderElection b = election("b", leases, eventsB::add);
+        ChatStateStore storeA = new ChatStateStore(backend, a::epoch);
+        ChatStateStore storeB = new ChatStateStore(backend, b::epoch);
+
+        storeA.serverSelected(1, "S1");
+        storeB.serverSelected(2, "ignored");
+        a.stop();
+        waitUntil(b::isLeader);
+        storeA.serverSelected(3, "ignored");
+
+        assertEquals(Map.of(1L, "S1"), storeB.reload().selectedServers());
+        storeB.serverSelected(2, "S2");
+        assertEquals(Map.of(1L, "S1", 2L, "S2"), storeB.reload().selectedServers());
+    }
+
+    @Test
+    void leaseEpochGrowsOnlyWhenOwnerChanges() throws IOException, InterruptedException {
+        assertEpochs(new InMemoryLeaseStore());
+        assertEpochs(new FileLeaseStore(dir.resolve("leases")));
+    }
+
+    @Test
+    void corruptLeaseFileDoesNotRestartEpoch() throws IOException {
+        Path leaseDir = dir.resolve("leases");
+        FileLeaseStore store = new FileLeaseStore(leaseDir);
+        assertEquals(1, store.tryAcquire("leader", "a", TTL));
+        store.release("leader", "a");
+        Files.writeString(leaseDir.resolve("leader.lease"), "a\n" + (System.currentTimeMillis() + 60_000));
+
+        assertThrows(IllegalStateException.class, () -> store.tryAcquire("leader", "b", TTL));
+        assertThrows(IllegalStateException.class, () -> store.release("leader", "a"));
+    }
+
+    private static void assertEpochs(LeaseStore store) throws InterruptedException {
+        assertEquals(1, store.tryAcquire("leader", "a", TTL));
+        assertEquals(1, store.tryAcquire("leader", "a", TTL));
+        assertEquals(0, store.tryAcquire("leader", "b", TTL));
+
+        store.release("leader", "b");
+        assertEquals(1, store.tryAcquire("leader", "a", TTL));
+        store.release("leader", "a");
+        assertEquals(2, store.tryAcquire("leader", "b", TTL));
+
+        // Истёкшую аренду прежний владелец забирает уже с новым номером
+        Thread.sleep(TTL.toMillis() + 50);
+        assertEquals(3, store.tryAcquire("leader", "b", TTL));
+    }
+
+    private LeaderElection election(String instanceId, LeaseStore store, Consumer<Boolean> events) {
+        LeaderElection election = new LeaderElection(cluster(instanceId), store,
+                event -> events.accept(((LeadershipChangedEvent) event).leader()), new SimpleMeterRegistry());
+        election.start();
+        started.add(election);
+        return election;
+    }
+
+    private static BotProperties.Cluster cluster(String instanceId) {
+        return new BotProperties.Cluster(true, instanceId, null, TTL);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("условие не выполнилось за 5 секунд");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /** Хранилище аренд, которое по флагу становится недоступным. */
+    private static final class FailingLeaseStore implements LeaseStore {
+        private final LeaseStore delegate;
+        volatile boolean failing;
+
+        private FailingLeaseStore(LeaseStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long tryAcquire(String name, String owner, Duration ttl) {
+            if (failing) {
+                throw new IllegalStateException("хранилище аренд недоступно");
+            }
+            return delegate.tryAcquire(name, owner, ttl);
+        }
+
+        @Override
+        public void release(String name, String owner) {
+            delegate.release(name, owner);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties;
+import com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties.Rule;
+import com.lndkrsnv.minecraftcontrolbot.state.ChatStateStore;
+import com.lndkrsnv.minecraftcontrolbot.state.LeaderElection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties.Scope.CHAT;
+import static com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties.Scope.CHAT_SERVER;
+import static com.lndkrsnv.minecraftcontrolbot.config.LimitsProperties.Scope.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandLimiterTest {
+
+    /** Журнал не отдаёт вызовы, вышедшие из окна, поэтому время считается от текущего. */
+    private static final long T = System.currentTimeMillis();
+    private static final Rule TWO_PER_SECOND = new Rule(USER, 2, Duration.ofSeconds(1));
+    private static final Rule TWO_PER_MINUTE_IN_CHAT = new Rule(CHAT, 2, Duration.ofMinutes(1));
+    private static final Rule COOLDOWN = new Rule(CHAT_SERVER, 1, Duration.ofMinutes(20));
+
+    private static final BotProperties BOT_PROPS = new BotProperties(null, null, 0, null, null, null, null, null, null, null);
+
+    private final ChatStateStore stateStore = new ChatStateStore(BOT_PROPS,
+            new LeaderElection(BOT_PROPS, event -> {}, new SimpleMeterRegistry()));
+
+    @Test
+    void allowsPermitsWithinAnySlidingPeriod() {
+        CommandLimiter limiter = limiter(ChatCommand.SAY, TWO_PER_SECOND);
+
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 1000));
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 1, 20, null, T + 1100));
+        assertEquals(800, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 1200));
+        // Другого пользователя окно первого не касается
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 2, 10, null, T + 1200));
+
+        // Первый вызов вышел из окна, второй ещё в нём
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 2000));
+        assertEquals(50, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 2050));
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 2100));
+    }
+
+    @Test
+    void checkDoesNotChargeCall() {
+        CommandLimiter limiter = limiter(ChatCommand.SLEEP, COOLDOWN);
+
+        assertEquals(0, limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 1000));
+        assertEquals(0, limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 1000));
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SLEEP, 1, 10, "S1", T + 1000));
+
+        assertEquals(Duration.ofMinutes(20).toMillis() - 500, limiter.waitMillis(ChatCommand.SLEEP, 2, 10, "S1", T + 1500));
+        assertEquals(0, limiter.waitMillis(ChatCommand.SLEEP, 2, 10, "S2", T + 1500));
+        assertEquals(0, limiter.waitMillis(ChatCommand.STATUS, 2, 10, "S1", T + 1500));
+    }
+
+    @Test
+    void refundRemovesOwnCallNotNewestInSharedWindow() {
+        CommandLimiter limiter = limiter(ChatCommand.SAY, TWO_PER_MINUTE_IN_CHAT);
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 1, 10, null, T + 1000));
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 2, 10, null, T + 2000));
+
+        limiter.refund(ChatCommand.SAY, 1, 10, null, T + 1000);
+
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SAY, 3, 10, null, T + 3000));
+        // Если бы снялась более поздняя метка второго пользователя, окно освободилось бы раньше
+        assertEquals(2000 + 60_000 - 3100, limiter.tryAcquire(ChatCommand.SAY, 3, 10, null, T + 3100));
+        assertEquals(T + 3000, stateStore.reload().limits().get("say.chat.2.PT1M:10:"));
+    }
+
+    @Test
+    void refundOfLastCallClearsJournalAndUnknownCallIsIgnored() {
+        CommandLimiter limiter = limiter(ChatCommand.SLEEP, COOLDOWN);
+        assertEquals(0, limiter.tryAcquire(ChatCommand.SLEEP, 1, 10, "S1", T + 1000));
+
+        limiter.refund(ChatCommand.SLEEP, 1, 10, "S1", T + 999);
+        assertTrue(limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 1500) > 0);
+        assertEquals(T + 1000, stateStore.reload().limits().get("sleep.chat-server.1.PT20M:10:S1"));
+
+        limiter.refund(ChatCommand.SLEEP, 1, 10, "S1", T + 1000);
+        assertEquals(0, limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 1500));
+        assertFalse(stateStore.reload().limits().containsKey("sleep.chat-server.1.PT20M:10:S1"));
+    }
+
+    @Test
+    void restoresCallsByRuleContentAfterRulesAreReordered() {
+        Rule hourly = new Rule(CHAT_SERVER, 3, Duration.ofHours(1));
+        CommandLimiter before = new CommandLimiter(new LimitsProperties(Map.of("sleep", List.of(COOLDOWN, hourly))), stateStore);
+        assertEquals(0, before.tryAcquire(ChatCommand.SLEEP, 1, 10, "S1", T + 1000));
+        Map<String, Long> journal = stateStore.reload().limits();
+
+        CommandLimiter after = new CommandLimiter(new LimitsProperties(Map.of("sleep", List.of(hourly, COOLDOWN))), stateStore);
+        journal.forEach((key, usedAt) -> assertTrue(after.restore(key, usedAt, T + 2000), key));
+
+        assertEquals(Duration.ofMinutes(20).toMillis() - 1000, after.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 2000));
+        assertEquals(2, after.size());
+    }
+
+    @Test
+    void skipsCallsOfRemovedRulesAndExpiredCalls() {
+        CommandLimiter limiter = limiter(ChatCommand.SLEEP, COOLDOWN);
+
+        assertTrue(limiter.restore("sleep.chat-server.1.PT20M:10:S1", T + 1000, T + 2000));
+        assertFalse(limiter.restore("sleep.chat-server.1.PT10M:10:S1", T + 1000, T + 2000));
+        assertFalse(limiter.restore("sleep.0:10:S1", T + 1000, T + 2000));
+        assertFalse(limiter.restore("sleep.chat-server.1.PT20M:10:S2", T + 1000, T + 1000 + Duration.ofMinutes(20).toMillis()));
+
+        assertTrue(limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S1", T + 2000) > 0);
+        assertEquals(0, limiter.waitMillis(ChatCommand.SLEEP, 1, 10, "S2", T + 2000));
+    }
+
+    @Test
+    void rejectsDuplicateRule() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CommandLimiter(new LimitsProperties(Map.of("sleep", List.of(COOLDOWN, COOLDOWN))), stateStore));
+    }
+
+    private CommandLimiter limiter(ChatCommand command, Rule rule) {
+        String name = command.name().toLowerCase();
+        return new CommandLimiter(new LimitsProperties(Map.of(name, List.of(rule))), stateStore);
+    }
+}
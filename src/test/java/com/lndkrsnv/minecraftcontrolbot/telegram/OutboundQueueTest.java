@@ -0,0 +1,161 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+
+    private final JsonMapper json = JsonMapper.builder().build();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private final List<Long> callTimes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private HttpServer server;
+    private DefaultAbsSender sender;
+    private OutboundQueue queue;
+
+    @BeforeEach
+    void startFakeTelegram() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bot", this::handle);
+        server.start();
+
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/bot");
+        sender = new DefaultAbsSender(options, "test-token") {};
+        queue = new OutboundQueue(sender, new BotProperties.Outbound(10, 10, 30, 0, 1), registry);
+    }
+
+    @AfterEach
+    void stop() {
+        queue.close();
+        server.stop(0);
+    }
+
+    @Test
+    void retriesAfterRateLimitAndKeepsOrder() throws Exception {
+        queue.submit(1, "first");
+        queue.submit(1, "second");
+        queue.submit(1, "third");
+
+        waitUntil(() -> String.join("\n\n", delivered).equals("first\n\nsecond\n\nthird"));
+
+        assertTrue(registry.get("telegram.outbound.messages").tag("outcome", "rate_limited").counter().count() >= 1);
+        assertTrue(requests.get() <= 1 + 3, "сообщения должны отправляться после паузы, а не в цикле");
+    }
+
+    @Test
+    void coalescesPlainTextsButNotMessagesWithCallback() throws Exception {
+        requests.set(1); // без ответа 429
+        CompletableFuture<Integer> sentId = new CompletableFuture<>();
+        queue.submit(2, SendMessage.builder().chatId("2").text("picker").build(), m -> sentId.complete(m.getMessageId()));
+        for (int i = 0; i < 5; i++) {
+            queue.submit(2, "line " + i);
+        }
+
+        waitUntil(() -> delivered.stream().filter(t -> t.startsWith("line")).mapToInt(t -> t.split("\n\n").length).sum() == 5);
+
+        assertEquals("picker", delivered.getFirst());
+        assertTrue(sentId.get(2, TimeUnit.SECONDS) > 0);
+        assertTrue(registry.get("telegram.outbound.messages").tag("outcome", "coalesced").counter().count() >= 1);
+    }
+
+    @Test
+    void streamingReplySendsPageOnceAndEditsItThroughQueue() throws Exception {
+        requests.set(1);
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        try {
+            var reply = new StreamingReply(queue, 3, flusher);
+            reply.append("line 1\n");
+            waitUntil(() -> calls.contains("sendmessage:line 1"));
+            reply.append("line 2");
+            reply.close();
+
+            waitUntil(() -> calls.size() == 2);
+            assertEquals(List.of("sendmessage:line 1", "editmessagetext:line 1\nline 2"), calls);
+        } finally {
+            flusher.shutdownNow();
+        }
+    }
+
+    @Test
+    void pacesEditsByChatRateLikeMessages() throws Exception {
+        requests.set(1);
+        queue.close();
+        queue = new OutboundQueue(sender, new BotProperties.Outbound(2, 1, 30, 0, 1), registry);
+        for (int i = 0; i < 3; i++) {
+            queue.submit(4, EditMessageText.builder().chatId("4").messageId(1).text("edit " + i).build(), null);
+        }
+
+        waitUntil(() -> calls.size() == 3);
+
+        assertEquals(List.of("editmessagetext:edit 0", "editmessagetext:edit 1", "editmessagetext:edit 2"), calls);
+        long elapsed = callTimes.getLast() - callTimes.getFirst();
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(900), "правки должны идти не чаще лимита чата: " + elapsed);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = path.substring(path.lastIndexOf('/') + 1);
+        String text = json.readTree(exchange.getRequestBody().readAllBytes()).path("text").asString();
+        String body;
+        int status = 200;
+        if (requests.getAndIncrement() == 0) {
+            body = """
+                    {"ok":false,"error_code":429,"description":"Too Many Requests: retry after 1","parameters":{"retry_after":1}}""";
+            status = 429;
+        } else {
+            calls.add(method + ":" + text);
+            callTimes.add(System.nanoTime());
+            if (method.equals("sendmessage")) {
+                delivered.add(text);
+            }
+            body = """
+                    {"ok":true,"result":{"message_id":%d,"date":0,"chat":{"id":1,"type":"private"},"text":"ok"}}"""
+                    .formatted(delivered.size());
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("условие не выполнилось за 5 секунд");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
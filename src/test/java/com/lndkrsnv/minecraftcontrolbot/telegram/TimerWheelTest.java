@@ -0,0 +1,79 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    // 4 ячейки по 10 мс: полный оборот колеса — 40 мс
+    private final TimerWheel wheel = new TimerWheel("test-timer-wheel", 10, TimeUnit.MILLISECONDS, 4);
+
+    @AfterEach
+    void stop() {
+        wheel.close();
+    }
+
+    @Test
+    void firesInDeadlineOrderAcrossSeveralRotations() throws Exception {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long started = System.nanoTime();
+        List<Long> firedAfter = new CopyOnWriteArrayList<>();
+        for (var delay : List.of(130, 20, 70)) {
+            wheel.schedule(t -> {
+                fired.add("t" + delay);
+                firedAfter.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("t20", "t70", "t130"), fired);
+        // Таймер на 130 мс ждёт три полных оборота колеса, а не срабатывает на первом
+        assertTrue(firedAfter.getLast() >= 130, "сработал раньше дедлайна: " + firedAfter);
+        assertEquals(0, wheel.stats().pending());
+        assertEquals(3, wheel.stats().expired());
+    }
+
+    @Test
+    void cancelledTimerDoesNotFire() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(t -> fired.countDown(), 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(fired.await(150, TimeUnit.MILLISECONDS));
+        assertEquals(0, wheel.stats().pending());
+        assertEquals(0, wheel.stats().expired());
+    }
+
+    @Test
+    void cancelAfterExpiryReturnsFalse() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(t -> fired.countDown(), 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(t -> {
+            throw new IllegalStateException("boom");
+        }, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(t -> fired.countDown(), 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertEquals(2, wheel.stats().expired());
+    }
+}
@@ -0,0 +1,105 @@
+package com.lndkrsnv.minecraftcontrolbot.telegram;
+
+import com.lndkrsnv.minecraftcontrolbot.config.BotProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateDispatcherTest {
+
+    private final UpdateDispatcher dispatcher = new UpdateDispatcher(new BotProperties.Dispatch(4, 3));
+
+    @AfterEach
+    void stop() {
+        dispatcher.close();
+    }
+
+    @Test
+    void keepsOrderWithinChat() throws InterruptedException {
+        List<Integer> first = new CopyOnWriteArrayList<>();
+        List<Integer> second = new CopyOnWriteArrayList<>();
+        List<Integer> expected = IntStream.range(0, 200).boxed().toList();
+
+        for (int i : expected) {
+            // Очередь чата короче пакета, поэтому ставим, как только освободится место
+            waitUntil(() -> dispatcher.dispatch(1, () -> first.add(i)));
+            waitUntil(() -> dispatcher.dispatch(2, () -> second.add(i)));
+        }
+        waitUntil(() -> first.size() == expected.size() && second.size() == expected.size());
+
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+    }
+
+    @Test
+    void stalledChatDoesNotHoldOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        assertTrue(dispatcher.dispatch(1, () -> await(release)));
+
+        // При хешировании по четырём потокам чат 5 ждал бы вместе с чатом 1
+        for (long chatId = 2; chatId <= 9; chatId++) {
+            long id = chatId;
+            assertTrue(dispatcher.dispatch(chatId, () -> handled.add(id)));
+        }
+        waitUntil(() -> handled.size() == 8);
+
+        release.countDown();
+    }
+
+    @Test
+    void rejectsUpdateWhenChatQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        assertTrue(dispatcher.dispatch(1, () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Boolean> accepted = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String name = "u" + i;
+            accepted.add(dispatcher.dispatch(1, () -> handled.add(name)));
+        }
+        // Переполнение одного чата не мешает другому
+        assertTrue(dispatcher.dispatch(2, () -> handled.add("other")));
+
+        assertEquals(List.of(true, true, true, false), accepted);
+        assertEquals(1, dispatcher.stats().rejected());
+        release.countDown();
+        waitUntil(() -> handled.size() == 4);
+        assertEquals(List.of("u0", "u1", "u2"), handled.stream().filter(h -> !h.equals("other")).toList());
+        assertFalse(handled.contains("u3"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("условие не выполнилось за 5 секунд");
+            }
+            Thread.sleep(10);
+        }
+    }
+}